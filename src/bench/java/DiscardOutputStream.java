@@ -0,0 +1,26 @@
+import java.io.OutputStream;
+
+/**
+ * Flujo que descarta lo que recibe y solo cuenta los bytes, para medir la generación de respuestas sin socket.
+ */
+public class DiscardOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    /**
+     * @return Los bytes recibidos hasta ahora.
+     */
+    public long count() {
+        return count;
+    }
+}
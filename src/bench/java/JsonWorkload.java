@@ -0,0 +1,46 @@
+import bench.Workload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura del campo {@code Dinosaurio} de un cuerpo y construcción de respuestas JSON.
+ */
+public class JsonWorkload implements Workload {
+
+    private static final String BODY = "{\"id\": 12, \"Dinosaurio\": \"Tyrannosaurus rex\", \"nota\": \"caf\\u00e9\"}";
+
+    private String operation;
+    private final StringBuilder text = new StringBuilder(BODY);
+    private final byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+    private final List<Dinosaurio> page = new ArrayList<>();
+
+    @Override
+    public void setUp(String operation, int size) {
+        this.operation = operation;
+        for (int i = 1; i <= size; i++) {
+            page.add(new Dinosaurio(i, "Dinosaurio n\u00famero " + i));
+        }
+    }
+
+    @Override
+    public Object run() {
+        switch (operation) {
+            case "extractValue":
+                return RestServiceImpl.extractValue(text, "Dinosaurio");
+            case "findString":
+                return JsonReader.findString(bytes, 0, bytes.length, "Dinosaurio");
+            case "record":
+                return page.get(0).writeJson(new JsonWriter(128)).toByteArray();
+            case "page":
+                JsonWriter json = new JsonWriter(page.size() * 64 + 2).beginArray();
+                for (Dinosaurio record : page) {
+                    record.writeJson(json);
+                }
+                return json.endArray().toByteArray();
+            default:
+                throw new IllegalArgumentException("Operacion desconocida: " + operation);
+        }
+    }
+}
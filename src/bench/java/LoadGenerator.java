@@ -0,0 +1,237 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga por loopback: abre {@code concurrencia} conexiones persistentes, cada una enviando
+ * solicitudes GET sin pausa durante el tiempo indicado, y reporta el rendimiento y los percentiles de latencia.
+ * Con {@code --embedded} arranca el servidor en el mismo proceso ({@code --port 0} elige un puerto libre).
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar LoadGenerator [--host localhost] [--port 8080] [--path /api/dinosaurio/1]
+ *      [--concurrency 1,8,64] [--duration 10] [--seed 1000] [--embedded]
+ * </pre>
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 8080;
+        String path = "/api/dinosaurio/1";
+        String concurrency = "1,8,64";
+        int duration = 10;
+        int seed = 0;
+        boolean embedded = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--path": path = args[++i]; break;
+                case "--concurrency": concurrency = args[++i]; break;
+                case "--duration": duration = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Integer.parseInt(args[++i]); break;
+                case "--embedded": embedded = true; break;
+                default:
+                    System.err.println("Argumento desconocido: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        SimpleWebServer server = null;
+        if (embedded) {
+            // Las propiedades server.* y cache.* siguen aplicando; el almacen es en memoria salvo que se indique store.dir
+            server = SimpleWebServer.Builder.fromSystemProperties()
+                    .storeDir(System.getProperty("store.dir", ""))
+                    .port(port)
+                    .build()
+                    .start();
+            port = server.port();
+        }
+        if (seed > 0) {
+            seed(host, port, seed);
+        }
+
+        System.out.println("conexiones  solicitudes/s        p50        p90        p99      p99.9        max  errores");
+        for (String level : concurrency.split(",")) {
+            run(host, port, path, Integer.parseInt(level.trim()), duration);
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private static void run(String host, int port, String path, int connections, int seconds) throws InterruptedException {
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    loop(host, port, request, deadline, latency, errors);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + i);
+            thread.start();
+        }
+        long start = System.nanoTime();
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "%10d %14.0f %10s %10s %10s %10s %10s %8d",
+                connections, latency.count() / elapsed,
+                micros(latency.percentile(0.5)), micros(latency.percentile(0.9)), micros(latency.percentile(0.99)),
+                micros(latency.percentile(0.999)), micros(latency.max()), errors.sum()));
+    }
+
+    private static void loop(String host, int port, byte[] request, long deadline, LatencyHistogram latency, LongAdder errors) {
+        Connection connection = null;
+        while (System.nanoTime() < deadline) {
+            try {
+                if (connection == null) connection = new Connection(host, port);
+                long start = System.nanoTime();
+                int status = connection.exchange(request);
+                if (status < 0) {
+                    // El servidor cerro la conexion (tiempo de inactividad o maximo de solicitudes): se abre otra
+                    connection.close();
+                    connection = null;
+                    continue;
+                }
+                latency.record(System.nanoTime() - start);
+                if (status >= 400) errors.increment();
+                if (!connection.open) {
+                    connection.close();
+                    connection = null;
+                }
+            } catch (IOException e) {
+                errors.increment();
+                if (connection != null) connection.close();
+                connection = null;
+            }
+        }
+        if (connection != null) connection.close();
+    }
+
+    /**
+     * Conexión persistente que envía una solicitud y lee su respuesta con {@code Content-Length}, descartando el cuerpo.
+     */
+    private static final class Connection {
+        private final Socket socket = new Socket();
+        private final OutputStream out;
+        private final InputStream in;
+        private boolean open = true;
+
+        Connection(String host, int port) throws IOException {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), 5000);
+            socket.setSoTimeout(10_000);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        }
+
+        /**
+         * @return El código de estado, o -1 si el servidor cerró la conexión antes de responder.
+         */
+        int exchange(byte[] request) throws IOException {
+            String status;
+            try {
+                out.write(request);
+                out.flush();
+                status = readLine(in);
+            } catch (SocketException e) {
+                return -1;
+            }
+            if (status == null) return -1;
+            long length = 0;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    length = Long.parseLong(value);
+                } else if (name.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) {
+                    open = false;
+                }
+            }
+            while (length > 0) {
+                long skipped = in.skip(length);
+                if (skipped <= 0) {
+                    if (in.read() < 0) throw new EOFException("Respuesta incompleta");
+                    skipped = 1;
+                }
+                length -= skipped;
+            }
+            return Integer.parseInt(status.substring(9, 12));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nada que hacer
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') line.write(b);
+        }
+        if (b < 0 && line.size() == 0) return null;
+        return line.toString("US-ASCII");
+    }
+
+    private static void seed(String host, int port, int records) throws IOException {
+        Connection connection = new Connection(host, port);
+        for (int i = 0; i < records; i++) {
+            byte[] body = ("{\"Dinosaurio\": \"Dino" + i + "\"}").getBytes(StandardCharsets.US_ASCII);
+            byte[] request = ("POST /api/dinosaurio HTTP/1.1\r\nHost: " + host + "\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\n\r\n" + new String(body, StandardCharsets.US_ASCII))
+                    .getBytes(StandardCharsets.US_ASCII);
+            int status = connection.exchange(request);
+            if (status < 0 || !connection.open) {
+                connection.close();
+                connection = new Connection(host, port);
+                if (status < 0) status = connection.exchange(request);
+            }
+            if (status == 429) {
+                // Limite de escrituras del servidor (server.rateLimit.write): se espera y se repite
+                sleep(1000);
+                i--;
+                continue;
+            }
+            if (status != 201 && status != 200) throw new IOException("No se pudo crear el registro " + i + ": " + status);
+        }
+        connection.close();
+        System.out.println("Registros creados: " + records);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+    }
+}
@@ -0,0 +1,57 @@
+import bench.Workload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Análisis de una solicitud completa con un {@link HttpRequestParser} reutilizado, como en una conexión persistente.
+ */
+public class ParserWorkload implements Workload {
+
+    private static final String BROWSER_HEADERS =
+            "Host: localhost:8080\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Language: es-CO,es;q=0.8,en-US;q=0.5,en;q=0.3\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cookie: sesion=0123456789abcdef0123456789abcdef\r\n" +
+            "If-None-Match: \"1a2b3c-4d\"\r\n";
+    private static final String BODY = "{\"Dinosaurio\": \"Tyrannosaurus rex\"}";
+
+    private final HttpRequestParser parser = new HttpRequestParser();
+    private ByteBuffer request;
+
+    @Override
+    public void setUp(String operation, int size) {
+        String text;
+        switch (operation) {
+            case "get":
+                text = "GET /api/dinosaurio?limit=20&after=40 HTTP/1.1\r\n" + BROWSER_HEADERS + "\r\n";
+                break;
+            case "post":
+                text = "POST /api/dinosaurio HTTP/1.1\r\n" + BROWSER_HEADERS +
+                        "Content-Type: application/json\r\n" +
+                        "Content-Length: " + BODY.length() + "\r\n\r\n" + BODY;
+                break;
+            case "chunked":
+                text = "POST /api/dinosaurio HTTP/1.1\r\n" + BROWSER_HEADERS +
+                        "Content-Type: application/json\r\n" +
+                        "Transfer-Encoding: chunked\r\n\r\n" +
+                        Integer.toHexString(10) + "\r\n" + BODY.substring(0, 10) + "\r\n" +
+                        Integer.toHexString(BODY.length() - 10) + "\r\n" + BODY.substring(10) + "\r\n" +
+                        "0\r\n\r\n";
+                break;
+            default:
+                throw new IllegalArgumentException("Solicitud desconocida: " + operation);
+        }
+        request = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public Object run() {
+        request.rewind();
+        parser.feed(request);
+        return parser.next();
+    }
+}
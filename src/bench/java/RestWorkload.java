@@ -0,0 +1,72 @@
+import bench.Workload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Una solicitud GET, PUT o DELETE de un registro con {@link RestServiceImpl} sobre un almacén en memoria
+ * con {@code size} registros. Los ids se eligen al azar (GET y PUT) o en orden (DELETE).
+ */
+public class RestWorkload implements Workload {
+
+    private static final int TARGETS = 4096;
+
+    private InMemoryDinosaurioRepository repository;
+    private RestServiceImpl service;
+    private String method;
+    private final DiscardOutputStream out = new DiscardOutputStream();
+    private int[] ids;
+    private HttpRequestParser.Request putRequest;
+    private int next;
+    private int nextDelete = 1;
+
+    @Override
+    public void setUp(String method, int size) {
+        this.method = method;
+        repository = new InMemoryDinosaurioRepository();
+        List<String> names = new ArrayList<>(1000);
+        for (int created = 0; created < size; created += names.size()) {
+            names.clear();
+            for (int i = 0; i < Math.min(1000, size - created); i++) {
+                names.add("Dino" + (created + i));
+            }
+            repository.createAll(names);
+        }
+        service = new RestServiceImpl(repository);
+
+        Random random = new Random(42);
+        ids = new int[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+            ids[i] = 1 + random.nextInt(size);
+        }
+        String body = "{\"Dinosaurio\": \"Velociraptor\"}";
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.feed(ByteBuffer.wrap(("PUT /api/dinosaurio/1 HTTP/1.1\r\nContent-Length: " + body.length() + "\r\n\r\n" + body)
+                .getBytes(StandardCharsets.US_ASCII)));
+        putRequest = parser.next();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        int i = next++ & (TARGETS - 1);
+        switch (method) {
+            case "GET":
+                service.handleGetById(out, ids[i]);
+                break;
+            case "PUT":
+                service.handlePut(new HttpRequestReader(putRequest), out, ids[i]);
+                break;
+            case "DELETE":
+                // Los registros nuevos reciben ids mayores, asi que el siguiente id en orden siempre existe
+                service.handleDelete(null, out, nextDelete++);
+                repository.create("Dino");
+                break;
+            default:
+                throw new IllegalArgumentException("Metodo desconocido: " + method);
+        }
+        return out.count();
+    }
+}
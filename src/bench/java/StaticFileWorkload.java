@@ -0,0 +1,59 @@
+import bench.Workload;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link SimpleWebServer#serveStaticFile} de un servidor sin arrancar hacia un flujo que descarta la respuesta. El archivo pequeño es
+ * {@code index.html}; el grande se crea en el webroot al preparar la prueba y se borra al terminar.
+ */
+public class StaticFileWorkload implements Workload {
+
+    private final SimpleWebServer server = SimpleWebServer.builder().build();
+    private final DiscardOutputStream out = new DiscardOutputStream();
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private String resource;
+    private Path largeFile;
+
+    @Override
+    public void setUp(String file, int size) throws Exception {
+        switch (file) {
+            case "small":
+                resource = "/index.html";
+                break;
+            case "small-gzip":
+                resource = "/index.html";
+                headers.put("Accept-Encoding", "gzip, deflate");
+                break;
+            case "large":
+                // Mayor que cache.maxFileSize: se envia desde el disco en cada solicitud
+                largeFile = Paths.get("src/webroot", "bench-" + size + ".bin");
+                byte[] content = new byte[size];
+                new java.util.Random(7).nextBytes(content);
+                Files.write(largeFile, content);
+                resource = "/" + largeFile.getFileName();
+                break;
+            default:
+                throw new IllegalArgumentException("Archivo desconocido: " + file);
+        }
+        if (!Files.exists(Paths.get("src/webroot", resource))) {
+            throw new IllegalStateException("Ejecute los benchmarks desde la raiz del proyecto");
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        server.serveStaticFile(resource, headers, out);
+        return out.count();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (largeFile != null) {
+            Files.deleteIfExists(largeFile);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+/**
+ * Operación medida por un benchmark. JMH no admite clases de benchmark en el paquete por defecto, que es donde
+ * vive el servidor, así que las implementaciones están en ese paquete (con acceso a sus clases) y los benchmarks
+ * las usan a través de esta interfaz. Cada bifurcación de JMH usa una sola implementación, de modo que la
+ * llamada es monomórfica y el JIT la integra.
+ */
+public interface Workload {
+
+    /**
+     * Prepara los datos de la operación.
+     *
+     * @param operation La variante de la operación (por ejemplo {@code "GET"}).
+     * @param size El tamaño de los datos (registros o bytes, según la operación).
+     * @throws Exception Si no se pueden preparar los datos.
+     */
+    void setUp(String operation, int size) throws Exception;
+
+    /**
+     * Ejecuta una vez la operación.
+     *
+     * @return Un resultado para consumir en el {@code Blackhole}, de modo que el JIT no elimine el trabajo.
+     * @throws Exception Si la operación falla.
+     */
+    Object run() throws Exception;
+
+    /**
+     * Libera lo preparado en {@link #setUp}.
+     *
+     * @throws Exception Si no se puede liberar.
+     */
+    default void tearDown() throws Exception {
+    }
+
+    /**
+     * Crea una implementación del paquete por defecto por su nombre y la prepara.
+     *
+     * @param className El nombre de la clase.
+     * @param operation La variante de la operación.
+     * @param size El tamaño de los datos.
+     * @return La operación lista para ejecutarse.
+     * @throws Exception Si la clase no existe o no se puede preparar.
+     */
+    static Workload create(String className, String operation, int size) throws Exception {
+        Workload workload = (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+        workload.setUp(operation, size);
+        return workload;
+    }
+}
@@ -0,0 +1,350 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registro de acceso asíncrono: una línea por solicitud con cliente, método, ruta, estado, bytes y latencia.
+ * Los hilos que atienden solicitudes solo copian esos campos a una ranura de un buffer circular sin bloqueos
+ * (una cola acotada de varios productores con un número de secuencia por ranura); un hilo escritor vacía el
+ * buffer por lotes, da formato a las líneas y las escribe al archivo en bloques grandes. Cuando el archivo supera
+ * {@code maxBytes} se rota a {@code .1}, {@code .2}, ... conservando {@code maxFiles} archivos anteriores.
+ *
+ * <p>Si el buffer está lleno la solicitud se descarta del registro y se cuenta en {@link #dropped()}, o bien el
+ * productor espera a que haya espacio, según el {@link Overflow} configurado.</p>
+ *
+ * <p>Un error al escribir o rotar no detiene al escritor: las líneas de ese lote se cuentan como descartadas,
+ * el error en {@link #writeErrors()}, y el archivo se vuelve a abrir en el lote siguiente. Así el buffer se
+ * sigue vaciando y los productores que esperan espacio no se quedan bloqueados con el disco lleno.</p>
+ */
+final class AccessLog implements Closeable {
+
+    /**
+     * Qué hacer cuando el buffer está lleno.
+     */
+    enum Overflow {
+        DROP, BLOCK;
+
+        static Overflow parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Lo acumulado se escribe al llenarse el buffer o, con el buffer circular vacio, cada este intervalo
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path path;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final Overflow overflow;
+
+    // Ranuras preasignadas: el productor que reserva la posicion p escribe en p & mask y publica p + 1
+    private final int mask;
+    private final Entry[] entries;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel file;
+    private long fileSize;
+    // Lineas en el buffer de escritura, que se cuentan como escritas o descartadas al volcarlo
+    private int buffered;
+    private boolean failing;
+    private long lastFlush = System.nanoTime();
+    private long cachedSecond = -1;
+    private String cachedTimestamp;
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param path El archivo del registro; su directorio se crea si no existe.
+     * @param capacity Solicitudes que caben en el buffer; se redondea a una potencia de dos.
+     * @param overflow Qué hacer cuando el buffer está lleno.
+     * @param maxBytes Tamaño a partir del cual se rota el archivo.
+     * @param maxFiles Archivos rotados que se conservan.
+     */
+    AccessLog(Path path, int capacity, Overflow overflow, long maxBytes, int maxFiles) {
+        this.path = path;
+        this.overflow = overflow;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.entries = new Entry[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+        this.writer = new Thread(this::writeLoop, "access-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Abre el archivo y arranca el hilo escritor.
+     *
+     * @throws IOException Si no se puede abrir el archivo.
+     */
+    void start() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        openFile();
+        writer.start();
+    }
+
+    /**
+     * Registra una solicitud atendida. No hace E/S ni reserva memoria.
+     *
+     * @param client La dirección del cliente, o {@code null}.
+     * @param method El método.
+     * @param target La ruta solicitada.
+     * @param status El código de estado de la respuesta, 0 si no se envió ninguna.
+     * @param bytes Bytes de la respuesta, con la cabecera.
+     * @param nanos Tiempo de atención.
+     */
+    void record(InetAddress client, String method, String target, int status, long bytes, long nanos) {
+        long position;
+        while (true) {
+            position = tail.get();
+            long sequence = sequences.get((int) position & mask);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (sequence < position) {
+                // Lleno: la ranura todavia tiene una entrada de la vuelta anterior
+                if (overflow == Overflow.DROP || closed) {
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.parkNanos(10_000);
+            }
+        }
+        Entry entry = entries[(int) position & mask];
+        entry.time = System.currentTimeMillis();
+        entry.client = client;
+        entry.method = method;
+        entry.target = target;
+        entry.status = status;
+        entry.bytes = bytes;
+        entry.nanos = nanos;
+        sequences.lazySet((int) position & mask, position + 1);
+    }
+
+    /**
+     * @return Solicitudes que no se registraron porque el buffer estaba lleno.
+     */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Líneas escritas al archivo.
+     */
+    long written() {
+        return written.sum();
+    }
+
+    /**
+     * @return Lotes que no se pudieron escribir; sus líneas se cuentan en {@link #dropped()}.
+     */
+    long writeErrors() {
+        return writeErrors.sum();
+    }
+
+    /**
+     * Espera a que el escritor vacíe el buffer, escribe lo pendiente y cierra el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (writer.isAlive()) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = closed;
+            try {
+                if (drain() > 0) continue;
+                if (buffer.position() > 0 && (stopping || System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS)) {
+                    flushBuffer();
+                }
+            } catch (RuntimeException e) {
+                // Un error inesperado no debe dejar el buffer sin vaciar
+                failed(e, buffered);
+                buffer.clear();
+                buffered = 0;
+            }
+            if (stopping) break;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // Formatea las entradas publicadas; el buffer de escritura solo se vuelca aqui si se llena
+    private int drain() {
+        int drained = 0;
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) return drained;
+            Entry entry = entries[slot];
+            format(entry);
+            entry.client = null;
+            entry.method = null;
+            entry.target = null;
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+            drained++;
+            append();
+        }
+    }
+
+    private void format(Entry entry) {
+        line.setLength(0);
+        line.append(entry.client != null ? entry.client.getHostAddress() : "-")
+                .append(" - - [").append(timestamp(entry.time)).append("] \"")
+                .append(entry.method).append(' ').append(entry.target).append("\" ")
+                .append(entry.status).append(' ').append(entry.bytes).append(' ')
+                .append(TimeUnit.NANOSECONDS.toMicros(entry.nanos)).append('\n');
+    }
+
+    private String timestamp(long millis) {
+        long second = millis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = Instant.ofEpochSecond(second).toString();
+        }
+        return cachedTimestamp;
+    }
+
+    private void append() {
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length) {
+            flushBuffer();
+        }
+        if (bytes.length > buffer.capacity()) {
+            write(ByteBuffer.wrap(bytes), 1);
+        } else {
+            buffer.put(bytes);
+            buffered++;
+        }
+    }
+
+    private void flushBuffer() {
+        buffer.flip();
+        write(buffer, buffered);
+        buffer.clear();
+        buffered = 0;
+        lastFlush = System.nanoTime();
+    }
+
+    // Escribe un lote; si falla, sus lineas se descartan y el archivo se reabre en el siguiente
+    private void write(ByteBuffer data, int lines) {
+        try {
+            if (file == null) {
+                openFile();
+            }
+            if (fileSize > 0 && fileSize + data.remaining() > maxBytes) {
+                rotate();
+            }
+            while (data.hasRemaining()) {
+                fileSize += file.write(data);
+            }
+            written.add(lines);
+            failing = false;
+        } catch (IOException e) {
+            failed(e, lines);
+            closeFile();
+        }
+    }
+
+    // Solo se informa el primer error de una racha, para no llenar la salida con el disco lleno
+    private void failed(Exception error, int lines) {
+        writeErrors.increment();
+        dropped.add(lines);
+        if (!failing) {
+            failing = true;
+            error.printStackTrace();
+        }
+    }
+
+    private void closeFile() {
+        if (file == null) return;
+        try {
+            file.close();
+        } catch (IOException e) {
+            // El archivo ya fallo; se abre de nuevo en el siguiente lote
+        }
+        file = null;
+    }
+
+    private void rotate() throws IOException {
+        file.close();
+        file = null;
+        if (maxFiles > 0) {
+            Files.deleteIfExists(rotated(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path older = rotated(i);
+                if (Files.exists(older)) {
+                    Files.move(older, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(path);
+        }
+        openFile();
+    }
+
+    private Path rotated(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void openFile() throws IOException {
+        file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = file.size();
+    }
+
+    /**
+     * Campos de una solicitud, reutilizados en cada vuelta del buffer.
+     */
+    private static final class Entry {
+        long time;
+        InetAddress client;
+        String method;
+        String target;
+        int status;
+        long bytes;
+        long nanos;
+    }
+}
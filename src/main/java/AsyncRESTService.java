@@ -0,0 +1,85 @@
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Servicio REST asíncrono: cada método recibe la solicitud ya analizada y devuelve la respuesta en una
+ * {@link CompletionStage}, sin escribir en el socket. Las escrituras al almacén pueden terminar en otro hilo
+ * (el del fsync) mientras la conexión o el bucle de eventos siguen atendiendo.
+ *
+ * <p>Los servicios que implementan {@link RESTService} se registran con {@link #adapt}.</p>
+ */
+public interface AsyncRESTService {
+
+    /**
+     * @param request La solicitud a {@code /api/{nombre}}.
+     * @param clientSocket El socket del cliente.
+     * @return La respuesta.
+     */
+    CompletionStage<HttpResponse> handleGet(HttpRequestParser.Request request, Socket clientSocket);
+
+    /**
+     * Por defecto llama a {@link #handleGet}, que recibe la ruta completa con el id, como antes de existir este método.
+     *
+     * @param request La solicitud a {@code /api/{nombre}/{id}}.
+     * @param clientSocket El socket del cliente.
+     * @param id El id de la ruta.
+     * @return La respuesta.
+     */
+    default CompletionStage<HttpResponse> handleGetById(HttpRequestParser.Request request, Socket clientSocket, int id) {
+        return handleGet(request, clientSocket);
+    }
+
+    /**
+     * @param request La solicitud, con el cuerpo completo.
+     * @return La respuesta.
+     */
+    CompletionStage<HttpResponse> handlePost(HttpRequestParser.Request request);
+
+    /**
+     * @param request La solicitud, con el cuerpo completo.
+     * @param id El id de la ruta.
+     * @return La respuesta.
+     */
+    CompletionStage<HttpResponse> handlePut(HttpRequestParser.Request request, int id);
+
+    /**
+     * @param request La solicitud.
+     * @param id El id de la ruta.
+     * @return La respuesta.
+     */
+    CompletionStage<HttpResponse> handleDelete(HttpRequestParser.Request request, int id);
+
+    /**
+     * Adapta un servicio bloqueante: cada método devuelve una etapa ya completada cuya respuesta llama al
+     * servicio original en el momento de escribirse, con el mismo lector y flujo de salida de siempre. Los GET de
+     * un solo registro llegan a {@link RESTService#handleGet} con la ruta completa, que incluye el id.
+     *
+     * @param service El servicio.
+     * @return El servicio asíncrono equivalente.
+     */
+    static AsyncRESTService adapt(RESTService service) {
+        return new AsyncRESTService() {
+            @Override
+            public CompletionStage<HttpResponse> handleGet(HttpRequestParser.Request request, Socket clientSocket) {
+                return CompletableFuture.completedFuture(
+                        out -> service.handleGet(request.tokens, new HttpRequestReader(request), out, clientSocket));
+            }
+
+            @Override
+            public CompletionStage<HttpResponse> handlePost(HttpRequestParser.Request request) {
+                return CompletableFuture.completedFuture(out -> service.handlePost(new HttpRequestReader(request), out));
+            }
+
+            @Override
+            public CompletionStage<HttpResponse> handlePut(HttpRequestParser.Request request, int id) {
+                return CompletableFuture.completedFuture(out -> service.handlePut(new HttpRequestReader(request), out, id));
+            }
+
+            @Override
+            public CompletionStage<HttpResponse> handleDelete(HttpRequestParser.Request request, int id) {
+                return CompletableFuture.completedFuture(out -> service.handleDelete(new HttpRequestReader(request), out, id));
+            }
+        };
+    }
+}
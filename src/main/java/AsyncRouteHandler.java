@@ -0,0 +1,20 @@
+import java.net.Socket;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Manejador de una ruta que no escribe la respuesta, sino que la devuelve en una {@link CompletionStage}.
+ * Mientras la etapa no termina (por ejemplo, esperando el fsync del almacén) el hilo que despachó la solicitud
+ * queda libre; con el motor {@code nio} el trabajador vuelve al pool y la respuesta se escribe al completarse.
+ * Si la etapa termina con error se responde 500.
+ */
+@FunctionalInterface
+public interface AsyncRouteHandler {
+
+    /**
+     * @param route La ruta que coincidió, con los parámetros extraídos de la plantilla.
+     * @param request La solicitud analizada; su cuerpo ya está completo.
+     * @param clientSocket El socket del cliente.
+     * @return La respuesta cuando esté lista.
+     */
+    CompletionStage<HttpResponse> handle(Router.Match route, HttpRequestParser.Request request, Socket clientSocket);
+}
@@ -0,0 +1,54 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserva acotada de arreglos de bytes de un tamaño fijo, compartida entre hilos.
+ * Evita reservar un buffer nuevo por cada conexión o solicitud; los arreglos de otro tamaño
+ * (por ejemplo los que crecieron para una cabecera grande) simplemente se descartan al devolverlos.
+ */
+final class ByteArrayPool {
+
+    private final int arraySize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param arraySize Tamaño de cada arreglo.
+     * @param maxPooled Número máximo de arreglos libres que se conservan.
+     */
+    ByteArrayPool(int arraySize, int maxPooled) {
+        this.arraySize = arraySize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return Un arreglo libre de la reserva, o uno nuevo si no hay.
+     */
+    byte[] acquire() {
+        byte[] array = free.poll();
+        if (array == null) {
+            return new byte[arraySize];
+        }
+        pooled.decrementAndGet();
+        return array;
+    }
+
+    /**
+     * Devuelve un arreglo a la reserva. El llamador no debe volver a usarlo.
+     *
+     * @param array El arreglo.
+     */
+    void release(byte[] array) {
+        if (array.length != arraySize) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(array);
+    }
+
+    int arraySize() {
+        return arraySize;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Rango de bytes solicitado con el encabezado {@code Range} (RFC 7233).
+ * Solo se atienden rangos simples; una lista de varios rangos se ignora y se responde el archivo completo.
+ */
+public final class ByteRange {
+
+    /** Rango que no se puede satisfacer con el tamaño del archivo (respuesta 416). */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    final long start;
+    final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return El número de bytes del rango.
+     */
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Interpreta el encabezado Range para un archivo de {@code size} bytes.
+     *
+     * @param header Valor del encabezado, por ejemplo {@code bytes=0-499}, {@code bytes=500-} o {@code bytes=-500}.
+     * @param size El tamaño del archivo.
+     * @return El rango, {@link #UNSATISFIABLE}, o {@code null} si el encabezado se ignora y se envía el archivo completo.
+     */
+    public static ByteRange parse(String header, long size) {
+        if (header == null || !header.startsWith("bytes=")) return null;
+        String spec = header.substring(6).trim();
+        if (spec.indexOf(',') >= 0) return null;
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Sufijo: los ultimos N bytes
+                if (last.isEmpty()) return null;
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) return UNSATISFIABLE;
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                long requestedEnd = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (requestedEnd < start) return null; // Sintacticamente invalido
+                end = Math.min(requestedEnd, size - 1);
+            }
+            if (start >= size || start < 0) return UNSATISFIABLE;
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
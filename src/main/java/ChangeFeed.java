@@ -0,0 +1,323 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flujo de cambios de la colección para clientes suscritos con Server-Sent Events ({@code text/event-stream}).
+ * Cada cambio se codifica una sola vez como evento ({@code created}, {@code updated} o {@code deleted}, con el
+ * registro en {@code data}) y se guarda en un buffer circular compartido; cada suscriptor solo tiene un cursor
+ * con el último evento que envió, así que publicar no copia nada por suscriptor y un suscriptor inactivo no
+ * ocupa más que su cursor.
+ *
+ * <p>Los ids de los eventos llevan la época del servidor, de modo que un cliente que se reconecta con
+ * {@code Last-Event-ID} continúa donde quedó si el evento sigue en el buffer. Si no (se perdió, o es de otra
+ * ejecución del servidor) recibe un evento {@code reset}, que indica que debe volver a pedir la colección.
+ * Un suscriptor lento al que el buffer le da la vuelta recibe también {@code reset} y salta al evento más
+ * reciente, o se desconecta, según el {@link Overflow} configurado.</p>
+ *
+ * <p>Sin {@link PushSink} (motor {@code blocking}) cada suscriptor ocupa un hilo del pool mientras está
+ * conectado, así que esos suscriptores se limitan; los que pasan del límite reciben 503 con {@code Retry-After}
+ * en lugar de dejar al servidor sin hilos para las demás solicitudes.</p>
+ */
+public final class ChangeFeed implements Closeable {
+
+    /**
+     * Qué hacer con un suscriptor que se quedó atrás más que la capacidad del buffer.
+     */
+    public enum Overflow {
+        DROP, DISCONNECT;
+
+        static Overflow parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final byte[] HEADER = ("HTTP/1.1 200 OK\r\n" +
+            "Content-Type: text/event-stream; charset=utf-8\r\n" +
+            "Cache-Control: no-store\r\n" +
+            "Connection: close\r\n" +
+            "\r\n" +
+            "retry: 2000\n\n").getBytes(StandardCharsets.US_ASCII);
+    private static final String BUSY_HEADERS = "Retry-After: 5\r\nConnection: close\r\n";
+    private static final byte[] BUSY_HEADER = ResponseHeaders.errorHeader(503, "Service Unavailable", BUSY_HEADERS);
+    private static final byte[] BUSY_BODY = ResponseHeaders.errorBody(503, "Service Unavailable");
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESET = "event: reset\ndata: {}\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+    // Bytes de eventos que se escriben por llamada antes de ceder la conexion
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private final int mask;
+    private final AtomicReferenceArray<Frame> frames;
+    private final Overflow overflow;
+    private final Set<Subscription> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder lapped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final int maxBlockingSubscribers;
+    // Suscriptores que ocupan un hilo, o lo van a ocupar si la conexion no admite PushSink
+    private final AtomicInteger blockingSubscribers = new AtomicInteger();
+    // Ultimo evento publicado; se escribe despues de su marco, asi que quien lo lee ve el marco
+    private volatile long last;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity Eventos que se conservan; se redondea a una potencia de dos.
+     * @param overflow Qué hacer con los suscriptores lentos.
+     */
+    public ChangeFeed(int capacity, Overflow overflow) {
+        this(capacity, overflow, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity Eventos que se conservan; se redondea a una potencia de dos.
+     * @param overflow Qué hacer con los suscriptores lentos.
+     * @param maxBlockingSubscribers Suscriptores que pueden ocupar un hilo a la vez; {@link Integer#MAX_VALUE}
+     *                               si las conexiones no ocupan hilos.
+     */
+    public ChangeFeed(int capacity, Overflow overflow, int maxBlockingSubscribers) {
+        this.maxBlockingSubscribers = maxBlockingSubscribers;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.frames = new AtomicReferenceArray<>(size);
+        this.overflow = overflow;
+    }
+
+    /**
+     * Publica un cambio y avisa a los suscriptores. Los publicadores se serializan entre sí; los suscriptores
+     * leen sin bloqueos.
+     *
+     * @param type {@code created}, {@code updated} o {@code deleted}.
+     * @param record El registro después del cambio (o el eliminado).
+     */
+    public void publish(String type, Dinosaurio record) {
+        if (closed) return;
+        synchronized (this) {
+            long seq = last + 1;
+            JsonWriter json = record.writeJson(new JsonWriter(128));
+            byte[] data = json.toByteArray();
+            byte[] prefix = ("id: " + epoch + "-" + seq + "\nevent: " + type + "\ndata: ").getBytes(StandardCharsets.US_ASCII);
+            byte[] frame = new byte[prefix.length + data.length + 2];
+            System.arraycopy(prefix, 0, frame, 0, prefix.length);
+            System.arraycopy(data, 0, frame, prefix.length, data.length);
+            frame[frame.length - 2] = '\n';
+            frame[frame.length - 1] = '\n';
+            frames.set((int) seq & mask, new Frame(seq, frame));
+            last = seq;
+        }
+        published.increment();
+        for (Subscription subscriber : subscribers) {
+            subscriber.signal();
+        }
+    }
+
+    /**
+     * Crea una suscripción que empieza después del evento {@code lastEventId}, o en el próximo evento si es
+     * {@code null}. Se activa al escribirse como respuesta.
+     *
+     * @param lastEventId El valor del encabezado {@code Last-Event-ID}, o {@code null}.
+     * @return La respuesta con el flujo de eventos.
+     */
+    public Subscription subscribe(String lastEventId) {
+        long current = last;
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return new Subscription(current, false);
+        }
+        int dash = lastEventId.lastIndexOf('-');
+        long seq = -1;
+        if (dash > 0 && lastEventId.substring(0, dash).equals(epoch)) {
+            try {
+                seq = Long.parseLong(lastEventId.substring(dash + 1));
+            } catch (NumberFormatException e) {
+                seq = -1;
+            }
+        }
+        // El siguiente evento que necesita el cliente tiene que seguir en el buffer
+        boolean available = seq >= 0 && seq <= current && current - seq <= mask + 1;
+        return available ? new Subscription(seq, false) : new Subscription(current, true);
+    }
+
+    /**
+     * @return Suscriptores conectados.
+     */
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return Eventos publicados.
+     */
+    public long published() {
+        return published.sum();
+    }
+
+    /**
+     * @return Veces que un suscriptor se quedó atrás más que la capacidad del buffer.
+     */
+    public long lapped() {
+        return lapped.sum();
+    }
+
+    /**
+     * @return Suscripciones rechazadas con 503 por el límite de suscriptores que ocupan un hilo.
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Termina todos los flujos abiertos.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscriber : subscribers) {
+            subscriber.signal();
+        }
+    }
+
+    /**
+     * Un evento ya codificado con su número de secuencia.
+     */
+    private static final class Frame {
+        final long seq;
+        final byte[] bytes;
+
+        Frame(long seq, byte[] bytes) {
+            this.seq = seq;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Respuesta {@code text/event-stream} de un suscriptor. Con un destino {@link PushSink} (motor {@code nio})
+     * la conexión queda abierta sin ocupar ningún hilo y los eventos se escriben desde el bucle de la conexión;
+     * si no, el hilo que escribe la respuesta espera los eventos hasta que el cliente se desconecta. La conexión
+     * se cierra al terminar el flujo.
+     */
+    public final class Subscription implements HttpResponse, PushSink.Source {
+        // Ultimo evento enviado
+        private long cursor;
+        private boolean reset;
+        private long lastWrite = System.nanoTime();
+        private volatile Runnable wakeup;
+
+        private Subscription(long cursor, boolean reset) {
+            this.cursor = cursor;
+            this.reset = reset;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            // El lugar se reserva antes de la cabecera, que ya decide entre 200 y 503
+            if (blockingSubscribers.incrementAndGet() > maxBlockingSubscribers) {
+                blockingSubscribers.decrementAndGet();
+                rejected.increment();
+                out.write(BUSY_HEADER);
+                out.write(BUSY_BODY);
+                return;
+            }
+            Runnable push;
+            try {
+                out.write(HEADER);
+                push = out instanceof PushSink ? ((PushSink) out).push(this) : null;
+            } catch (IOException | RuntimeException e) {
+                blockingSubscribers.decrementAndGet();
+                throw e;
+            }
+            if (push != null) {
+                blockingSubscribers.decrementAndGet();
+                wakeup = push;
+                subscribers.add(this);
+                push.run();
+                return;
+            }
+            Thread thread = Thread.currentThread();
+            wakeup = () -> LockSupport.unpark(thread);
+            subscribers.add(this);
+            try {
+                while (pull(out)) {
+                    out.flush();
+                    if (!pending()) {
+                        LockSupport.parkNanos(this, HEARTBEAT_NANOS);
+                    }
+                    if (Thread.interrupted()) break;
+                }
+                out.flush();
+            } finally {
+                closed();
+                blockingSubscribers.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean pull(OutputStream out) throws IOException {
+            if (closed) return false;
+            long end = last;
+            int written = 0;
+            if (end - cursor > mask + 1 && !lap(end)) return false;
+            while (written < MAX_BATCH_BYTES) {
+                if (reset) {
+                    out.write(RESET);
+                    written += RESET.length;
+                    reset = false;
+                }
+                if (cursor >= end) break;
+                Frame frame = frames.get((int) (cursor + 1) & mask);
+                if (frame == null || frame.seq != cursor + 1) {
+                    // El marco se sobrescribio mientras se leia
+                    if (!lap(end = last)) return false;
+                    continue;
+                }
+                out.write(frame.bytes);
+                written += frame.bytes.length;
+                cursor++;
+            }
+            long now = System.nanoTime();
+            if (written > 0) {
+                lastWrite = now;
+            } else if (now - lastWrite >= HEARTBEAT_NANOS) {
+                // Un comentario periodico detecta a los clientes que se fueron sin cerrar la conexion
+                out.write(HEARTBEAT);
+                lastWrite = now;
+            }
+            if (cursor < last) {
+                signal();
+            }
+            return true;
+        }
+
+        // Un suscriptor lento salta al ultimo evento y recibe reset, o se desconecta
+        private boolean lap(long end) {
+            lapped.increment();
+            if (overflow == Overflow.DISCONNECT) return false;
+            cursor = end;
+            reset = true;
+            return true;
+        }
+
+        private boolean pending() {
+            return closed || reset || cursor < last;
+        }
+
+        private void signal() {
+            Runnable task = wakeup;
+            if (task != null) task.run();
+        }
+
+        @Override
+        public void closed() {
+            subscribers.remove(this);
+        }
+    }
+}
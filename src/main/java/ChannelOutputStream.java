@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Flujo de salida con buffer para el canal de un socket bloqueante. Lo escrito se copia a buffers directos de
+ * una reserva compartida y se envía con una sola escritura de varios buffers (writev), de modo que la cabecera y
+ * el cuerpo de una respuesta (o varias respuestas en pipeline) salen en una llamada al sistema, sin reservar
+ * memoria por respuesta. Los archivos grandes se envían con {@link FileChannel#transferTo} (sendfile) sin pasar
+ * por el heap. Los bytes escritos se cuentan en {@link Metrics#bytesSent} del servidor.
+ */
+public class ChannelOutputStream extends OutputStream implements FileRegionSink {
+
+    // Lo acumulado se envia al vaciar el flujo o al llenarse todos los buffers
+    private static final int MAX_BUFFERS = 16;
+    private static final DirectBufferPool POOL = new DirectBufferPool(16 * 1024, 512);
+
+    private final GatheringByteChannel channel;
+    private final Metrics metrics;
+    private final ByteBuffer[] buffers = new ByteBuffer[MAX_BUFFERS];
+    // Buffers en uso; el primero se conserva entre respuestas mientras la conexion siga abierta
+    private int count;
+
+    /**
+     * @param channel El canal del socket, en modo bloqueante.
+     * @param metrics Las métricas del servidor.
+     */
+    ChannelOutputStream(GatheringByteChannel channel, Metrics metrics) {
+        this.channel = channel;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        current().put((byte) b);
+        metrics.bytesSent.increment();
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        metrics.bytesSent.add(len);
+        while (len > 0) {
+            ByteBuffer buffer = current();
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (count == 0 || buffers[0].position() == 0) return;
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            remaining += buffers[i].flip().remaining();
+        }
+        // En modo bloqueante cada llamada escribe al menos parte; se repite hasta enviarlo todo
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, 0, count);
+        }
+        buffers[0].clear();
+        for (int i = 1; i < count; i++) {
+            POOL.release(buffers[i]);
+            buffers[i] = null;
+        }
+        count = 1;
+    }
+
+    @Override
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+        try (FileChannel source = file) {
+            // Lo que ya esta en el buffer (por ejemplo el encabezado) debe salir antes que el archivo
+            flush();
+            long end = position + count;
+            while (position < end) {
+                long n = source.transferTo(position, end - position, channel);
+                if (n <= 0 && position >= source.size()) {
+                    throw new IOException("El archivo se trunco durante el envio");
+                }
+                position += n;
+                metrics.bytesSent.add(n);
+            }
+        }
+    }
+
+    /**
+     * Envía lo pendiente y devuelve los buffers a la reserva. No cierra el canal, que es del socket.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            for (int i = 0; i < count; i++) {
+                POOL.release(buffers[i]);
+                buffers[i] = null;
+            }
+            count = 0;
+        }
+    }
+
+    // El buffer con espacio libre; si ya estan todos llenos se envian primero
+    private ByteBuffer current() throws IOException {
+        if (count > 0 && buffers[count - 1].hasRemaining()) {
+            return buffers[count - 1];
+        }
+        if (count == MAX_BUFFERS) {
+            flush();
+            return buffers[0];
+        }
+        return buffers[count++] = POOL.acquire();
+    }
+}
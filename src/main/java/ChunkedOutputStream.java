@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codifica un cuerpo de respuesta con {@code Transfer-Encoding: chunked}. Los datos se acumulan en un buffer
+ * de tamaño fijo y cada vez que se llena se envía como un trozo, así que la memoria usada no depende del tamaño
+ * total del cuerpo. {@link #close()} envía el trozo final pero no cierra el flujo de la conexión.
+ */
+final class ChunkedOutputStream extends OutputStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+    private boolean finished;
+
+    /**
+     * @param out El flujo de la conexión, ya con el encabezado de la respuesta escrito.
+     * @param chunkSize Tamaño máximo de cada trozo.
+     */
+    ChunkedOutputStream(OutputStream out, int chunkSize) {
+        this.out = out;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) throw new IOException("El cuerpo ya termino");
+        if (count == buffer.length) {
+            writeChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) throw new IOException("El cuerpo ya termino");
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Envía lo acumulado como un trozo y vacía el flujo de la conexión.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeChunk();
+        out.flush();
+    }
+
+    /**
+     * Envía lo pendiente y el trozo final. El flujo de la conexión queda abierto para la siguiente respuesta.
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) return;
+        writeChunk();
+        finished = true;
+        out.write(LAST_CHUNK);
+    }
+
+    private void writeChunk() throws IOException {
+        if (count == 0) return;
+        out.write((Integer.toHexString(count) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(buffer, 0, count);
+        out.write(CRLF);
+        count = 0;
+    }
+}
@@ -0,0 +1,118 @@
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Respuesta completa de la colección ya serializada y codificada en UTF-8 para una versión del almacén.
+ * Es inmutable: los lectores la comparten sin bloqueos y la envían tal cual, sin volver a serializar ni
+ * a reservar memoria. La ETag fuerte se deriva de la versión y de una época propia de cada almacén, de modo que
+ * no se repite entre reinicios. Las variantes comprimidas se calculan la primera vez que un cliente las pide
+ * y se reutilizan mientras la versión no cambie.
+ */
+final class CollectionSnapshot {
+
+    final long version;
+    final String etag;
+    final byte[] header;
+    final byte[] body;
+    final byte[] notModified;
+    private final boolean compressible;
+    private volatile Encoded gzip;
+    private volatile Encoded deflate;
+
+    private CollectionSnapshot(long version, String etag, byte[] body) {
+        this.version = version;
+        this.etag = etag;
+        this.body = body;
+        this.compressible = Compression.ENABLED && body.length >= Compression.MIN_SIZE;
+        String vary = compressible ? "Vary: Accept-Encoding\r\n" : "";
+        this.header = ("HTTP/1.1 200 OK\r\n" +
+                "Content-Type: application/json; charset=utf-8\r\n" +
+                "Content-Length: " + body.length + "\r\n" +
+                "ETag: " + etag + "\r\n" +
+                vary +
+                "\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.notModified = ("HTTP/1.1 304 Not Modified\r\n" +
+                "ETag: " + etag + "\r\n" +
+                vary +
+                "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Respuesta de la colección comprimida con una codificación.
+     */
+    static final class Encoded {
+        final String etag;
+        final byte[] header;
+        final byte[] body;
+        final byte[] notModified;
+
+        private Encoded(String etag, String encoding, byte[] body) {
+            this.etag = etag;
+            this.body = body;
+            this.header = ("HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: application/json; charset=utf-8\r\n" +
+                    "Content-Length: " + body.length + "\r\n" +
+                    "Content-Encoding: " + encoding + "\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Vary: Accept-Encoding\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+            this.notModified = ("HTTP/1.1 304 Not Modified\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Vary: Accept-Encoding\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * @param encoding La codificación negociada con {@link Compression#negotiate}, o {@code null}.
+     * @return La respuesta comprimida, o {@code null} si se debe enviar sin comprimir.
+     */
+    Encoded encoded(String encoding) {
+        if (encoding == null || !compressible) return null;
+        boolean isGzip = encoding.equals("gzip");
+        Encoded encoded = isGzip ? gzip : deflate;
+        if (encoded == null) {
+            // Si dos lectores llegan a la vez ambos comprimen; cualquiera de los resultados sirve
+            String tag = etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+            encoded = new Encoded(tag, encoding, Compression.compress(encoding, body, 0, body.length));
+            if (isGzip) {
+                gzip = encoded;
+            } else {
+                deflate = encoded;
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Serializa la colección. La versión debe leerse antes que los registros: si entre ambas lecturas ocurre
+     * una escritura, la instantánea queda marcada con la versión anterior y el siguiente lector la reconstruye.
+     *
+     * @param epoch Identificador de la instancia del almacén.
+     * @param version La versión leída antes de obtener los registros.
+     * @param records Los registros en orden de id.
+     * @return La instantánea.
+     */
+    static CollectionSnapshot build(String epoch, long version, List<Dinosaurio> records) {
+        JsonWriter json = new JsonWriter(records.size() * 64 + 2).beginArray();
+        for (Dinosaurio record : records) {
+            record.writeJson(json);
+        }
+        return new CollectionSnapshot(version, "\"" + epoch + "-" + version + "\"", json.endArray().toByteArray());
+    }
+
+    /**
+     * @param ifNoneMatch Valor del encabezado If-None-Match, o {@code null}.
+     * @return {@code true} si el cliente ya tiene esta versión.
+     */
+    boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.equals(etag) || candidate.equals("*")) return true;
+            // Las variantes comprimidas tienen la misma version con el sufijo de su codificacion
+            if (candidate.startsWith(etag.substring(0, etag.length() - 1) + "-")) return true;
+        }
+        return false;
+    }
+}
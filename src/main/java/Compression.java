@@ -0,0 +1,243 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+
+/**
+ * Compresión de respuestas con {@code gzip} o {@code deflate} según el encabezado {@code Accept-Encoding}.
+ * Los {@link Deflater} se reutilizan desde una reserva compartida, porque crear uno reserva memoria nativa
+ * en cada uso. Ambos formatos envuelven el mismo flujo deflate: gzip con CRC32 y deflate (zlib) con Adler-32.
+ * Los cuerpos menores que {@code server.compression.minSize} no se comprimen.
+ */
+final class Compression {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("server.compression", "true"));
+    static final int MIN_SIZE = Integer.getInteger("server.compression.minSize", 1024);
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    // Cabecera zlib para el nivel por defecto (CMF=0x78, FLG=0x9c)
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9c};
+    private static final int MAX_POOLED = 64;
+
+    private static final ConcurrentLinkedQueue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private Compression() {
+    }
+
+    /**
+     * Elige la codificación de la respuesta. Se prefiere gzip; una codificación con {@code q=0} se descarta.
+     *
+     * @param acceptEncoding Valor del encabezado Accept-Encoding, o {@code null}.
+     * @return {@code "gzip"}, {@code "deflate"} o {@code null} para enviar sin comprimir.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (!ENABLED || acceptEncoding == null) return null;
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            int semicolon = part.indexOf(';');
+            String coding = (semicolon >= 0 ? part.substring(0, semicolon) : part).trim().toLowerCase(Locale.ROOT);
+            if (semicolon >= 0 && isZeroQuality(part.substring(semicolon + 1))) continue;
+            if (coding.equals("gzip") || coding.equals("x-gzip") || coding.equals("*")) {
+                gzip = true;
+            } else if (coding.equals("deflate")) {
+                deflate = true;
+            }
+        }
+        return gzip ? "gzip" : deflate ? "deflate" : null;
+    }
+
+    private static boolean isZeroQuality(String params) {
+        for (String param : params.split(";")) {
+            String p = param.trim();
+            if (p.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param contentType El tipo MIME de la respuesta.
+     * @return {@code true} si es texto y vale la pena comprimirlo.
+     */
+    static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("application/javascript") || contentType.startsWith("application/x-ndjson")
+                || contentType.startsWith("image/svg+xml");
+    }
+
+    /**
+     * Comprime un bloque completo. No cuenta en las estadísticas: quien envía la respuesta llama a
+     * {@link Metrics#compressed}.
+     *
+     * @param encoding {@code "gzip"} o {@code "deflate"}.
+     * @param data Los datos.
+     * @param off Posición inicial.
+     * @param len Número de bytes.
+     * @return Los datos comprimidos con su cabecera y su suma de verificación.
+     */
+    static byte[] compress(String encoding, byte[] data, int off, int len) {
+        boolean gzip = encoding.equals("gzip");
+        Checksum checksum = gzip ? new CRC32() : new Adler32();
+        checksum.update(data, off, len);
+        byte[] header = gzip ? GZIP_HEADER : ZLIB_HEADER;
+
+        Deflater deflater = acquire();
+        try {
+            deflater.setInput(data, off, len);
+            deflater.finish();
+            byte[] out = new byte[header.length + len / 2 + 64];
+            System.arraycopy(header, 0, out, 0, header.length);
+            int count = header.length;
+            while (!deflater.finished()) {
+                if (count == out.length) out = Arrays.copyOf(out, out.length * 2);
+                count += deflater.deflate(out, count, out.length - count);
+            }
+            if (out.length < count + 8) out = Arrays.copyOf(out, count + 8);
+            count = writeTrailer(gzip, checksum, len, out, count);
+            return Arrays.copyOf(out, count);
+        } finally {
+            release(deflater);
+        }
+    }
+
+    /**
+     * Crea un flujo que comprime lo que se escribe en él a medida que llega, para respuestas en streaming.
+     * Al cerrarlo se escribe el final del formato, se registra la respuesta en {@code metrics} y no se cierra
+     * {@code out}.
+     *
+     * @param encoding {@code "gzip"} o {@code "deflate"}.
+     * @param out El flujo que recibe los datos comprimidos.
+     * @param metrics Las métricas del servidor que envía la respuesta.
+     * @return El flujo compresor.
+     * @throws IOException Si ocurre un error al escribir la cabecera.
+     */
+    static OutputStream compressingStream(String encoding, OutputStream out, Metrics metrics) throws IOException {
+        return new CompressingOutputStream(encoding.equals("gzip"), out, metrics);
+    }
+
+    private static int writeTrailer(boolean gzip, Checksum checksum, long length, byte[] out, int pos) {
+        long value = checksum.getValue();
+        if (gzip) {
+            // CRC32 y tamaño original, en little endian
+            for (int i = 0; i < 4; i++) out[pos++] = (byte) (value >>> (8 * i));
+            for (int i = 0; i < 4; i++) out[pos++] = (byte) (length >>> (8 * i));
+        } else {
+            // Adler-32 en big endian
+            for (int i = 3; i >= 0; i--) out[pos++] = (byte) (value >>> (8 * i));
+        }
+        return pos;
+    }
+
+    private static Deflater acquire() {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        pooled.decrementAndGet();
+        return deflater;
+    }
+
+    private static void release(Deflater deflater) {
+        deflater.reset();
+        if (pooled.incrementAndGet() > MAX_POOLED) {
+            pooled.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        DEFLATERS.offer(deflater);
+    }
+
+    /**
+     * Compresor incremental con un {@link Deflater} de la reserva; lo devuelve al cerrarse.
+     */
+    private static final class CompressingOutputStream extends FilterOutputStream {
+        private final boolean gzip;
+        private final Checksum checksum;
+        private final Metrics metrics;
+        private final byte[] buffer = new byte[8 * 1024];
+        private Deflater deflater = acquire();
+        private long length;
+        private long written;
+
+        CompressingOutputStream(boolean gzip, OutputStream out, Metrics metrics) throws IOException {
+            super(out);
+            this.gzip = gzip;
+            this.metrics = metrics;
+            this.checksum = gzip ? new CRC32() : new Adler32();
+            byte[] header = gzip ? GZIP_HEADER : ZLIB_HEADER;
+            out.write(header);
+            written = header.length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (deflater == null) throw new IOException("El flujo ya se cerro");
+            checksum.update(b, off, len);
+            length += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain(Deflater.NO_FLUSH);
+            }
+        }
+
+        /**
+         * Envía lo comprimido hasta ahora para que el cliente pueda ir procesándolo.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (deflater != null) {
+                drain(Deflater.SYNC_FLUSH);
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (deflater == null) return;
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(Deflater.NO_FLUSH);
+                }
+                byte[] trailer = new byte[8];
+                int n = writeTrailer(gzip, checksum, length, trailer, 0);
+                out.write(trailer, 0, n);
+                written += n;
+                metrics.compressed(length, written);
+            } finally {
+                release(deflater);
+                deflater = null;
+            }
+        }
+
+        private void drain(int flush) throws IOException {
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, flush);
+                if (n > 0) {
+                    out.write(buffer, 0, n);
+                    written += n;
+                }
+            } while (n == buffer.length);
+        }
+    }
+}
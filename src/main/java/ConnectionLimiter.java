@@ -0,0 +1,94 @@
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control de admisión de conexiones: limita las conexiones abiertas en total y por dirección de cliente.
+ * Se consulta al aceptar el socket, antes de leer o analizar nada, para que rechazar cueste solo una escritura.
+ * Los contadores por dirección se eliminan cuando llegan a cero, así que el mapa solo crece con los clientes
+ * conectados.
+ */
+final class ConnectionLimiter {
+
+    private final int maxConnections;
+    private final int maxPerClient;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ConcurrentHashMap<InetAddress, AtomicInteger> perClient = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConnections Conexiones abiertas máximas en total.
+     * @param maxPerClient Conexiones abiertas máximas por dirección.
+     */
+    ConnectionLimiter(int maxConnections, int maxPerClient) {
+        this.maxConnections = maxConnections;
+        this.maxPerClient = maxPerClient;
+    }
+
+    /**
+     * Intenta admitir una conexión. Si se admite, debe liberarse con {@link #release} al cerrarla.
+     *
+     * @param address La dirección del cliente.
+     * @return 0 si se admite, 503 si se alcanzó el máximo total o 429 si el cliente ya tiene demasiadas.
+     */
+    int tryAcquire(InetAddress address) {
+        if (total.incrementAndGet() > maxConnections) {
+            total.decrementAndGet();
+            return 503;
+        }
+        AtomicInteger[] admitted = {null};
+        perClient.compute(address, (key, count) -> {
+            if (count == null) count = new AtomicInteger();
+            if (count.get() < maxPerClient) {
+                count.incrementAndGet();
+                admitted[0] = count;
+            }
+            return count.get() == 0 ? null : count;
+        });
+        if (admitted[0] == null) {
+            total.decrementAndGet();
+            return 429;
+        }
+        return 0;
+    }
+
+    /**
+     * @param address La dirección de una conexión admitida que se cerró.
+     */
+    void release(InetAddress address) {
+        perClient.computeIfPresent(address, (key, count) -> count.decrementAndGet() == 0 ? null : count);
+        total.decrementAndGet();
+    }
+
+    /**
+     * @return Conexiones admitidas abiertas.
+     */
+    int open() {
+        return total.get();
+    }
+
+    /**
+     * @return Direcciones con alguna conexión abierta.
+     */
+    int clients() {
+        return perClient.size();
+    }
+
+    /**
+     * Respuesta para una conexión rechazada, con {@code Retry-After} y {@code Connection: close}.
+     *
+     * @param status 429 o 503.
+     * @return La respuesta lista para enviar.
+     */
+    static byte[] rejection(int status) {
+        String reason = status == 429 ? "Too Many Requests" : "Service Unavailable";
+        String body = "{\"error\": \"" + reason + "\"}";
+        return ("HTTP/1.1 " + status + " " + reason + "\r\n" +
+                "Content-Type: application/json\r\n" +
+                "Content-Length: " + body.length() + "\r\n" +
+                "Retry-After: 1\r\n" +
+                "Connection: close\r\n" +
+                "\r\n" +
+                body).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Registro inmutable de un dinosaurio almacenado por el servicio REST.
+ */
+public final class Dinosaurio {
+
+    private final int id;
+    private final String name;
+
+    /**
+     * @param id El identificador único del registro.
+     * @param name El nombre del dinosaurio.
+     */
+    public Dinosaurio(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Crea una copia del registro con otro nombre.
+     *
+     * @param newName El nuevo nombre.
+     * @return El registro actualizado.
+     */
+    public Dinosaurio withName(String newName) {
+        return new Dinosaurio(id, newName);
+    }
+
+    /**
+     * Escribe el registro en el formato JSON que devuelve la API, con el nombre correctamente escapado.
+     *
+     * @param json El escritor de destino.
+     * @return El mismo escritor.
+     */
+    public JsonWriter writeJson(JsonWriter json) {
+        return json.beginObject()
+                .name("id").value(id)
+                .name("status").value("Dino received")
+                .name("Dinosaurio").value(name)
+                .endObject();
+    }
+
+    /**
+     * Representa el registro en el formato JSON que devuelve la API.
+     *
+     * @return El objeto JSON como cadena.
+     */
+    public String toJson() {
+        return writeJson(new JsonWriter(64 + name.length())).toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
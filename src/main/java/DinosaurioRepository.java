@@ -0,0 +1,151 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Almacén de registros de dinosaurios indexado por id.
+ * Las implementaciones deben ser seguras para el acceso concurrente desde varios hilos.
+ *
+ * <p>Las variantes {@code *Async} de las escrituras devuelven el resultado cuando el cambio es definitivo (por
+ * ejemplo, tras el fsync) sin bloquear al que llama; por defecto ejecutan la variante síncrona.</p>
+ */
+public interface DinosaurioRepository {
+
+    /**
+     * Crea un registro con un id nuevo.
+     *
+     * @param name El nombre del dinosaurio.
+     * @return El registro creado.
+     */
+    Dinosaurio create(String name);
+
+    /**
+     * @param id El id del registro.
+     * @return El registro, o {@code null} si no existe.
+     */
+    Dinosaurio findById(int id);
+
+    /**
+     * Cambia el nombre de un registro existente.
+     *
+     * @param id El id del registro.
+     * @param name El nuevo nombre.
+     * @return El registro actualizado, o {@code null} si no existe.
+     */
+    Dinosaurio update(int id, String name);
+
+    /**
+     * @param id El id del registro.
+     * @return El registro eliminado, o {@code null} si no existía.
+     */
+    Dinosaurio delete(int id);
+
+    /**
+     * Como {@link #create}, sin esperar a que el cambio sea definitivo.
+     *
+     * @param name El nombre del dinosaurio.
+     * @return El registro creado, o un error si no se pudo guardar.
+     */
+    default CompletionStage<Dinosaurio> createAsync(String name) {
+        return completed(() -> create(name));
+    }
+
+    /**
+     * Como {@link #update}, sin esperar a que el cambio sea definitivo.
+     *
+     * @param id El id del registro.
+     * @param name El nuevo nombre.
+     * @return El registro actualizado, o {@code null} si no existe.
+     */
+    default CompletionStage<Dinosaurio> updateAsync(int id, String name) {
+        return completed(() -> update(id, name));
+    }
+
+    /**
+     * Como {@link #delete}, sin esperar a que el cambio sea definitivo.
+     *
+     * @param id El id del registro.
+     * @return El registro eliminado, o {@code null} si no existía.
+     */
+    default CompletionStage<Dinosaurio> deleteAsync(int id) {
+        return completed(() -> delete(id));
+    }
+
+    /**
+     * Crea varios registros en un solo lote, con ids consecutivos en el orden recibido.
+     *
+     * @param names Los nombres.
+     * @return Los registros creados.
+     */
+    List<Dinosaurio> createAll(List<String> names);
+
+    /**
+     * Elimina varios registros en un solo lote; los ids que no existen se ignoran.
+     *
+     * @param ids Los ids.
+     * @param count Cuántos ids del arreglo se usan.
+     * @return Los registros eliminados.
+     */
+    List<Dinosaurio> deleteAll(int[] ids, int count);
+
+    /**
+     * @return Todos los registros ordenados por id.
+     */
+    List<Dinosaurio> findAll();
+
+    /**
+     * Página por cursor: los registros con id mayor que {@code afterId}, en orden de id.
+     *
+     * @param afterId El último id de la página anterior (0 para la primera página).
+     * @param limit Número máximo de registros.
+     * @return La página.
+     */
+    List<Dinosaurio> findPage(int afterId, int limit);
+
+    /**
+     * Página por desplazamiento, en orden de id.
+     *
+     * @param offset Número de registros que se saltan.
+     * @param limit Número máximo de registros.
+     * @return La página.
+     */
+    List<Dinosaurio> findRange(int offset, int limit);
+
+    /**
+     * Registros cuyo nombre empieza por {@code prefix} (sin distinguir mayúsculas), en orden de nombre.
+     *
+     * @param prefix El prefijo del nombre.
+     * @param offset Número de registros que se saltan.
+     * @param limit Número máximo de registros.
+     * @return Los registros encontrados.
+     */
+    List<Dinosaurio> findByNamePrefix(String prefix, int offset, int limit);
+
+    /**
+     * @return El número de registros.
+     */
+    int size();
+
+    /**
+     * Versión del contenido: cambia después de cada creación, actualización o eliminación.
+     * Permite a los lectores saber si una representación guardada de la colección sigue vigente.
+     *
+     * @return La versión actual.
+     */
+    long version();
+
+    /**
+     * @param write Una escritura síncrona.
+     * @return Una etapa completada con su resultado, o con la excepción que lanzó.
+     */
+    static <T> CompletionStage<T> completed(Supplier<T> write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(write.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,46 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reserva acotada de {@link ByteBuffer} directos de un tamaño fijo, compartida entre hilos, para las respuestas.
+ * Los buffers directos se escriben al socket sin que la JVM los copie antes a uno temporal, y reservarlos es caro,
+ * así que se reutilizan. Los buffers de otro tamaño o del heap simplemente se descartan al devolverlos, y devolver
+ * no reserva memoria (a diferencia de una cola enlazada).
+ */
+final class DirectBufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+
+    /**
+     * @param bufferSize Capacidad de cada buffer.
+     * @param maxPooled Número máximo de buffers libres que se conservan.
+     */
+    DirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return Un buffer vacío de la reserva, o uno nuevo si no hay.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Devuelve un buffer a la reserva. El llamador no debe volver a usarlo.
+     *
+     * @param buffer El buffer.
+     */
+    void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize) return;
+        buffer.clear();
+        free.offer(buffer);
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Almacén persistente: mantiene los registros en un {@link InMemoryDinosaurioRepository} y escribe cada
+ * creación, actualización y eliminación en un {@link WriteAheadLog} antes de confirmarla.
+ * Periódicamente guarda una instantánea compacta de todos los registros y descarta el log que esta cubre,
+ * de modo que el tiempo de recuperación queda acotado. Al arrancar carga la instantánea y reproduce la cola del log.
+ *
+ * <p>La escritura en el log y el cambio en memoria ocurren bajo el mismo candado para que el orden del log sea el
+ * orden en que se aplicaron los cambios; la espera del fsync ocurre fuera del candado, lo que permite agrupar
+ * varias escrituras concurrentes en un solo fsync. Un cambio solo se aplica en memoria después de escribirse en el
+ * log, y se deshace si después falla el fsync, de modo que una escritura que el cliente vio fallar nunca queda
+ * visible ni pasa a una instantánea.</p>
+ */
+public class DurableDinosaurioRepository implements DinosaurioRepository, Closeable {
+
+    private static final int SNAPSHOT_MAGIC = 0x44494E4F; // "DINO"
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    private final InMemoryDinosaurioRepository memory = new InMemoryDinosaurioRepository();
+    private final Path dir;
+    private final Path snapshotFile;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService compactor;
+    private final Object compactionLock = new Object();
+    private long snapshotSeq;
+
+    /**
+     * Abre (o crea) el almacén en un directorio y recupera su contenido.
+     *
+     * @param dir El directorio de datos.
+     * @param policy La política de fsync del log.
+     * @param syncIntervalMs Intervalo entre fsync para la política periódica.
+     * @param snapshotIntervalMs Intervalo entre instantáneas; 0 o negativo las desactiva.
+     * @throws IOException Si no se puede leer o crear el almacén.
+     */
+    public DurableDinosaurioRepository(Path dir, WriteAheadLog.FsyncPolicy policy, long syncIntervalMs,
+                                       long snapshotIntervalMs) throws IOException {
+        this(dir, new WriteAheadLog(dir, policy, syncIntervalMs), snapshotIntervalMs);
+    }
+
+    // Permite a las pruebas usar un log que falle al escribir
+    DurableDinosaurioRepository(Path dir, WriteAheadLog log, long snapshotIntervalMs) throws IOException {
+        this.dir = dir;
+        this.snapshotFile = dir.resolve("snapshot.dat");
+        Files.createDirectories(dir);
+        snapshotSeq = loadSnapshot();
+        this.log = log;
+        long lastSeq = log.replay(snapshotSeq, this::apply);
+        log.open(lastSeq);
+
+        if (snapshotIntervalMs > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "store-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    private void apply(WriteAheadLog.Record record) {
+        if (record.op == WriteAheadLog.OP_DELETE) {
+            memory.delete(record.id);
+        } else {
+            memory.restore(new Dinosaurio(record.id, record.name));
+        }
+    }
+
+    @Override
+    public Dinosaurio create(String name) {
+        return await(createAsync(name));
+    }
+
+    /**
+     * Escribe el cambio en el log y luego lo aplica en memoria; la etapa termina en el hilo del fsync.
+     */
+    @Override
+    public CompletableFuture<Dinosaurio> createAsync(String name) {
+        synchronized (this) {
+            // Las creaciones se serializan con este candado, asi que el id reservado es el que asignara la memoria
+            int id = memory.nextId();
+            CompletableFuture<Void> durable = log.append(WriteAheadLog.OP_CREATE, id, name);
+            if (durable.isCompletedExceptionally()) return failed(durable);
+            Dinosaurio created = memory.create(name);
+            return undoOnFailure(durable, () -> memory.delete(created.getId())).thenApply(v -> created);
+        }
+    }
+
+    @Override
+    public Dinosaurio findById(int id) {
+        return memory.findById(id);
+    }
+
+    @Override
+    public Dinosaurio update(int id, String name) {
+        return await(updateAsync(id, name));
+    }
+
+    @Override
+    public CompletableFuture<Dinosaurio> updateAsync(int id, String name) {
+        synchronized (this) {
+            Dinosaurio previous = memory.findById(id);
+            if (previous == null) return CompletableFuture.completedFuture(null);
+            CompletableFuture<Void> durable = log.append(WriteAheadLog.OP_UPDATE, id, name);
+            if (durable.isCompletedExceptionally()) return failed(durable);
+            Dinosaurio updated = memory.update(id, name);
+            return undoOnFailure(durable, () -> memory.restore(previous)).thenApply(v -> updated);
+        }
+    }
+
+    @Override
+    public Dinosaurio delete(int id) {
+        return await(deleteAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<Dinosaurio> deleteAsync(int id) {
+        synchronized (this) {
+            Dinosaurio previous = memory.findById(id);
+            if (previous == null) return CompletableFuture.completedFuture(null);
+            CompletableFuture<Void> durable = log.append(WriteAheadLog.OP_DELETE, id, "");
+            if (durable.isCompletedExceptionally()) return failed(durable);
+            Dinosaurio deleted = memory.delete(id);
+            return undoOnFailure(durable, () -> memory.restore(previous)).thenApply(v -> deleted);
+        }
+    }
+
+    /**
+     * Escribe el lote en el log con una sola escritura, lo aplica en memoria bajo el mismo candado y espera una
+     * sola vez a que sea durable, de modo que todo el lote comparte el mismo fsync.
+     */
+    @Override
+    public List<Dinosaurio> createAll(List<String> names) {
+        CompletableFuture<Void> durable;
+        List<Dinosaurio> created;
+        synchronized (this) {
+            int firstId = memory.nextId();
+            List<Dinosaurio> pending = new ArrayList<>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                pending.add(new Dinosaurio(firstId + i, names.get(i)));
+            }
+            durable = log.appendAll(WriteAheadLog.OP_CREATE, pending);
+            if (durable.isCompletedExceptionally()) return await(failed(durable));
+            created = memory.createAll(names);
+            durable = undoOnFailure(durable, () -> created.forEach(record -> memory.delete(record.getId())));
+        }
+        await(durable);
+        return created;
+    }
+
+    @Override
+    public List<Dinosaurio> deleteAll(int[] ids, int count) {
+        CompletableFuture<Void> durable;
+        List<Dinosaurio> deleted;
+        synchronized (this) {
+            Map<Integer, Dinosaurio> existing = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                Dinosaurio record = memory.findById(ids[i]);
+                if (record != null) existing.put(record.getId(), record);
+            }
+            durable = log.appendAll(WriteAheadLog.OP_DELETE, new ArrayList<>(existing.values()));
+            if (durable.isCompletedExceptionally()) return await(failed(durable));
+            deleted = memory.deleteAll(ids, count);
+            durable = undoOnFailure(durable, () -> deleted.forEach(memory::restore));
+        }
+        await(durable);
+        return deleted;
+    }
+
+    // Si el log no logra hacer durable el cambio, se deshace en memoria; el log falla en orden inverso
+    private CompletableFuture<Void> undoOnFailure(CompletableFuture<Void> durable, Runnable undo) {
+        return durable.whenComplete((v, error) -> {
+            if (error == null) return;
+            synchronized (this) {
+                undo.run();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> failed(CompletableFuture<Void> durable) {
+        return (CompletableFuture<T>) (CompletableFuture<?>) durable;
+    }
+
+    @Override
+    public List<Dinosaurio> findAll() {
+        return memory.findAll();
+    }
+
+    @Override
+    public List<Dinosaurio> findPage(int afterId, int limit) {
+        return memory.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Dinosaurio> findRange(int offset, int limit) {
+        return memory.findRange(offset, limit);
+    }
+
+    @Override
+    public List<Dinosaurio> findByNamePrefix(String prefix, int offset, int limit) {
+        return memory.findByNamePrefix(prefix, offset, limit);
+    }
+
+    @Override
+    public int size() {
+        return memory.size();
+    }
+
+    @Override
+    public long version() {
+        return memory.version();
+    }
+
+    /**
+     * Guarda una instantánea de todos los registros y borra las generaciones del log que ya cubre.
+     * Las escrituras solo se detienen mientras se copia la lista de registros y se rota el log.
+     *
+     * @throws IOException Si ocurre un error al escribir la instantánea.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            List<Dinosaurio> records;
+            int nextId;
+            long seq;
+            synchronized (this) {
+                if (log.lastSeq() == snapshotSeq) return;
+                records = memory.findAll();
+                nextId = memory.nextId();
+                seq = log.rotate();
+            }
+            writeSnapshot(records, nextId, seq);
+            snapshotSeq = seq;
+            log.deleteOldGenerations();
+        }
+    }
+
+    private void writeSnapshot(List<Dinosaurio> records, int nextId, long seq) throws IOException {
+        Path tmp = dir.resolve("snapshot.dat.tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_FORMAT);
+            out.writeLong(seq);
+            out.writeInt(nextId);
+            out.writeInt(records.size());
+            for (Dinosaurio record : records) {
+                byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(record.getId());
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            out.flush();
+            long crc = checked.getChecksum().getValue();
+            out.writeLong(crc);
+            out.flush();
+            file.getFD().sync();
+        }
+        // El reemplazo atomico garantiza que siempre hay una instantanea completa en disco
+        Files.move(tmp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // El cambio de nombre solo es durable con un fsync del directorio; hasta entonces no se borra el log
+        syncDirectory(dir);
+    }
+
+    private static void syncDirectory(Path dir) throws IOException {
+        if (System.getProperty("os.name", "").startsWith("Windows")) {
+            // Windows no permite abrir un directorio como canal; NTFS registra el cambio de nombre en su diario
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private long loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) return 0;
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(snapshotFile), 64 * 1024)) {
+            CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT) {
+                throw new IOException("Formato de instantanea desconocido: " + snapshotFile);
+            }
+            long seq = in.readLong();
+            int nextId = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                memory.restore(new Dinosaurio(id, new String(name, StandardCharsets.UTF_8)));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                throw new IOException("Instantanea corrupta: " + snapshotFile);
+            }
+            memory.restoreNextId(nextId);
+            return seq;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> durable) {
+        try {
+            return durable.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException
+                    ? new UncheckedIOException((IOException) cause)
+                    : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Detiene las instantáneas periódicas y cierra el log con un último fsync.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        synchronized (compactionLock) {
+            log.close();
+        }
+    }
+}
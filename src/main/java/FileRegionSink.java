@@ -0,0 +1,20 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Destino de una respuesta capaz de enviar una región de un archivo directamente al socket
+ * ({@link FileChannel#transferTo}), sin copiar su contenido al heap.
+ */
+public interface FileRegionSink {
+
+    /**
+     * Envía {@code count} bytes del archivo a partir de {@code position}, después de todo lo escrito antes.
+     * El destino se hace dueño del canal y lo cierra cuando termina, aunque ocurra un error.
+     *
+     * @param file El canal del archivo, abierto para lectura.
+     * @param position Posición inicial dentro del archivo.
+     * @param count Número de bytes que se envían.
+     * @throws IOException Si ocurre un error al enviar.
+     */
+    void transferFrom(FileChannel file, long position, long count) throws IOException;
+}
@@ -0,0 +1,659 @@
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Analizador incremental de solicitudes HTTP/1.1 a nivel de bytes, usado por los dos motores del servidor.
+ * Recibe los bytes a medida que llegan ({@link #feed(ByteBuffer)} o {@link #readFrom(InputStream)}) y entrega una
+ * solicitud completa ({@link #next()}) solo cuando ya se recibieron la cabecera y todo el cuerpo.
+ * Los bytes sobrantes se conservan para la siguiente solicitud en pipeline.
+ *
+ * <p>El cuerpo se cuenta en bytes, según {@code Content-Length} o decodificando {@code Transfer-Encoding: chunked},
+ * y se copia a medida que llega, así que el buffer de trabajo no crece con el cuerpo. Ese buffer se toma de una
+ * reserva compartida y se devuelve en cuanto queda vacío. Las cabeceras de más de {@link #MAX_HEAD_SIZE} bytes y
+ * los cuerpos de más de {@code maxBodySize} bytes se rechazan con {@link BadRequestException}.</p>
+ */
+public class HttpRequestParser {
+
+    /** Tamaño máximo permitido para la línea de solicitud más los encabezados. */
+    public static final int MAX_HEAD_SIZE = 16 * 1024;
+    /** Tamaño máximo por defecto del cuerpo de una solicitud. */
+    public static final int DEFAULT_MAX_BODY_SIZE = Integer.getInteger("server.maxBodySize", 1024 * 1024);
+
+    private static final int MAX_CHUNK_LINE = 1024;
+    private static final byte[] EMPTY = new byte[0];
+    private static final ByteArrayPool POOL = new ByteArrayPool(8 * 1024, 1024);
+
+    private enum State { HEAD, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILER }
+
+    private final int maxBodySize;
+    private final Predicate<Request> streamBody;
+    private byte[] buffer;
+    private int start;
+    private int end;
+    // Posicion desde la que se sigue buscando el fin de la cabecera, para no re-escanear bytes
+    private int scanFrom;
+
+    private State state = State.HEAD;
+    // Solicitud cuya cabecera ya se analizo y que espera el cuerpo
+    private String[] tokens;
+    private Map<String, String> headers;
+    private boolean keepAlive;
+    private boolean continuePending;
+    private boolean streaming;
+    private long remaining;
+    private byte[] body;
+    private int bodyLength;
+
+    /**
+     * Error de protocolo que impide atender la solicitud; la conexión debe cerrarse tras responder.
+     */
+    public static class BadRequestException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        private final String reason;
+
+        BadRequestException(int status, String reason, String message) {
+            super(message);
+            this.status = status;
+            this.reason = reason;
+        }
+
+        /**
+         * @return La respuesta de error lista para enviar, con {@code Connection: close}.
+         */
+        public byte[] toResponse() {
+            return ("HTTP/1.1 " + status + " " + reason + "\r\n" +
+                    "Content-Length: 0\r\n" +
+                    "Connection: close\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Solicitud HTTP completa, lista para despacharse.
+     */
+    public static class Request {
+        final String[] tokens;
+        final Map<String, String> headers;
+        final byte[] body;
+        // Un manejador puede desactivarlo si su respuesta termina al cerrar la conexion
+        boolean keepAlive;
+        boolean streaming;
+        InputStream bodyStream;
+
+        Request(String[] tokens, Map<String, String> headers, byte[] body, boolean keepAlive) {
+            this.tokens = tokens;
+            this.headers = headers;
+            this.body = body;
+            this.keepAlive = keepAlive;
+        }
+
+        public String method() {
+            return tokens[0];
+        }
+
+        public String target() {
+            return tokens[1];
+        }
+
+        /**
+         * @param name Nombre del encabezado, sin importar mayúsculas.
+         * @return Su valor (los repetidos se unen con comas), o {@code null} si no está.
+         */
+        public String header(String name) {
+            return headers.get(name);
+        }
+
+        /**
+         * @return Los encabezados en un mapa de solo lectura que ignora mayúsculas en las claves.
+         */
+        public Map<String, String> headers() {
+            return headers;
+        }
+
+        /**
+         * @return El cuerpo decodificado; vacío si no hay o si se entrega en streaming.
+         */
+        public byte[] body() {
+            return body;
+        }
+
+        /**
+         * @return El cuerpo como flujo de entrada: el de la conexión si se entrega en streaming, o el ya acumulado.
+         */
+        public InputStream bodyStream() {
+            return bodyStream != null ? bodyStream : new ByteArrayInputStream(body);
+        }
+
+        /**
+         * Devuelve los encabezados seguidos de una línea vacía y del cuerpo, que es lo que los
+         * servicios REST esperan leer después de la línea de solicitud.
+         *
+         * @param charset El juego de caracteres con el que se decodifica el cuerpo.
+         * @return El texto de la solicitud sin la línea de solicitud.
+         */
+        public String headersAndBody(Charset charset) {
+            StringBuilder text = new StringBuilder(body.length + headers.size() * 32 + 2);
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                text.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            return text.append("\r\n").append(new String(body, charset)).toString();
+        }
+    }
+
+    public HttpRequestParser() {
+        this(DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param maxBodySize Tamaño máximo del cuerpo en bytes.
+     */
+    public HttpRequestParser(int maxBodySize) {
+        this(maxBodySize, null);
+    }
+
+    /**
+     * @param maxBodySize Tamaño máximo del cuerpo que se acumula en memoria, en bytes.
+     * @param streamBody Decide, a partir de la cabecera, qué solicitudes entregan el cuerpo en streaming en lugar
+     *                   de acumularlo; esos cuerpos no están limitados por {@code maxBodySize}.
+     */
+    public HttpRequestParser(int maxBodySize, Predicate<Request> streamBody) {
+        this.maxBodySize = maxBodySize;
+        this.streamBody = streamBody;
+    }
+
+    /**
+     * Agrega al analizador los bytes disponibles en {@code src}.
+     *
+     * @param src Buffer en modo lectura; se consume por completo.
+     */
+    public void feed(ByteBuffer src) {
+        while (src.hasRemaining()) {
+            ensureSpace();
+            int n = Math.min(src.remaining(), buffer.length - end);
+            src.get(buffer, end, n);
+            end += n;
+        }
+    }
+
+    /**
+     * Lee del flujo directamente al buffer de trabajo, sin copias intermedias. Bloquea si el flujo lo hace.
+     *
+     * @param in El flujo de la conexión.
+     * @return Los bytes leídos, o -1 al final del flujo.
+     * @throws IOException Si ocurre un error al leer.
+     */
+    public int readFrom(InputStream in) throws IOException {
+        ensureSpace();
+        int n = in.read(buffer, end, buffer.length - end);
+        if (n > 0) {
+            end += n;
+        } else {
+            release();
+        }
+        return n;
+    }
+
+    /**
+     * Indica si quedan bytes sin procesar de una solicitud siguiente.
+     *
+     * @return {@code true} si hay bytes pendientes.
+     */
+    public boolean hasBufferedData() {
+        return end > start;
+    }
+
+    /**
+     * Indica si ya llegó parte de una solicitud que todavía no está completa (sin contar un cuerpo en streaming,
+     * que lee el servicio). Los motores lo usan para limitar el tiempo que puede tardar en llegar una solicitud.
+     *
+     * @return {@code true} si hay una cabecera o un cuerpo a medio recibir.
+     */
+    public boolean isPartial() {
+        return !streaming && (state != State.HEAD || end > start);
+    }
+
+    /**
+     * Indica, una sola vez por solicitud, que el cliente envió {@code Expect: 100-continue} y espera la respuesta
+     * provisional antes de mandar el cuerpo.
+     *
+     * @return {@code true} si hay que enviar {@code HTTP/1.1 100 Continue}.
+     */
+    public boolean takeContinue() {
+        boolean pending = continuePending;
+        continuePending = false;
+        return pending;
+    }
+
+    /**
+     * Intenta extraer la siguiente solicitud completa. Si la solicitud va a una ruta que procesa el cuerpo en
+     * streaming (ver {@link #HttpRequestParser(int, Predicate)}), se devuelve en cuanto llega la cabecera y el
+     * cuerpo se lee después con {@link #openBody(BodySource)}.
+     *
+     * @return La solicitud, o {@code null} si todavía faltan bytes.
+     * @throws BadRequestException Si la solicitud es inválida o supera los límites.
+     * @throws IllegalStateException Si aún no se terminó de leer el cuerpo en streaming de la solicitud anterior.
+     */
+    public Request next() {
+        if (streaming) throw new IllegalStateException("El cuerpo en streaming no se termino de leer");
+        while (true) {
+            if (state == State.HEAD) {
+                if (!parseHead()) return pause();
+                if (streaming) {
+                    Request request = new Request(tokens, Collections.unmodifiableMap(headers), EMPTY, keepAlive);
+                    request.streaming = true;
+                    return request;
+                }
+            }
+            int n = decode(null, 0, 0);
+            if (n < 0) return complete();
+            if (n == 0) return pause();
+        }
+    }
+
+    /**
+     * Indica si hay un cuerpo en streaming que todavía no se leyó por completo. En ese caso la conexión
+     * no puede reutilizarse.
+     *
+     * @return {@code true} si quedan bytes del cuerpo en curso.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Copia bytes ya decodificados del cuerpo en streaming.
+     *
+     * @param dst Arreglo de destino.
+     * @param off Posición inicial en el destino.
+     * @param len Máximo de bytes a copiar.
+     * @return Los bytes copiados, 0 si hace falta recibir más datos, o -1 al final del cuerpo.
+     */
+    public int readBody(byte[] dst, int off, int len) {
+        if (!streaming) return -1;
+        if (len == 0) return 0;
+        int n = decode(dst, off, len);
+        if (n < 0) {
+            streaming = false;
+            state = State.HEAD;
+        }
+        if (n <= 0) release();
+        return n;
+    }
+
+    /**
+     * Fuente de bytes de la conexión que alimenta un cuerpo en streaming.
+     */
+    public interface BodySource {
+        /**
+         * Entrega al analizador más bytes de la conexión, bloqueando si hace falta.
+         *
+         * @param parser El analizador al que se entregan los bytes.
+         * @return Los bytes entregados, o -1 si la conexión terminó.
+         * @throws IOException Si ocurre un error al leer.
+         */
+        int fill(HttpRequestParser parser) throws IOException;
+    }
+
+    /**
+     * Abre el cuerpo en streaming de la solicitud actual como un flujo de entrada.
+     *
+     * @param source La fuente de bytes de la conexión.
+     * @return El flujo con el cuerpo decodificado.
+     */
+    public InputStream openBody(BodySource source) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (true) {
+                    int n = readBody(b, off, len);
+                    if (n != 0 || len == 0) return n;
+                    if (source.fill(HttpRequestParser.this) < 0) {
+                        throw new EOFException("La conexion termino antes que el cuerpo");
+                    }
+                }
+            }
+        };
+    }
+
+    // Avanza en la decodificacion del cuerpo. Con dst nulo copia al cuerpo acumulado de la solicitud.
+    // Devuelve los bytes copiados, 0 si faltan datos o -1 al final del cuerpo.
+    private int decode(byte[] dst, int off, int len) {
+        while (true) {
+            int available = end - start;
+            switch (state) {
+                case BODY:
+                case CHUNK_DATA: {
+                    if (remaining == 0) {
+                        if (state == State.BODY) return -1;
+                        state = State.CHUNK_END;
+                        break;
+                    }
+                    int n = (int) Math.min(remaining, available);
+                    if (dst != null) n = Math.min(n, len);
+                    if (n == 0) return 0;
+                    if (dst != null) {
+                        System.arraycopy(buffer, start, dst, off, n);
+                    } else {
+                        System.arraycopy(buffer, start, body, bodyLength, n);
+                        bodyLength += n;
+                    }
+                    start += n;
+                    remaining -= n;
+                    return n;
+                }
+                case CHUNK_SIZE: {
+                    int eol = indexOfCrlf(start, Math.min(end, start + MAX_CHUNK_LINE));
+                    if (eol < 0) {
+                        if (available >= MAX_CHUNK_LINE) throw bad(400, "Bad Request", "Linea de trozo demasiado larga");
+                        return 0;
+                    }
+                    long size = parseChunkSize(start, eol);
+                    start = eol + 2;
+                    if (size == 0) {
+                        state = State.TRAILER;
+                    } else {
+                        if (!streaming) {
+                            if (bodyLength + size > maxBodySize) throw tooLarge();
+                            body = growBody(bodyLength + (int) size);
+                        }
+                        remaining = size;
+                        state = State.CHUNK_DATA;
+                    }
+                    break;
+                }
+                case CHUNK_END:
+                    if (available < 2) return 0;
+                    if (buffer[start] != '\r' || buffer[start + 1] != '\n') {
+                        throw bad(400, "Bad Request", "Falta CRLF al final del trozo");
+                    }
+                    start += 2;
+                    state = State.CHUNK_SIZE;
+                    break;
+                case TRAILER: {
+                    // Los encabezados finales se descartan
+                    int eol = indexOfCrlf(start, end);
+                    if (eol < 0) {
+                        if (available > MAX_HEAD_SIZE) throw bad(431, "Request Header Fields Too Large", "Encabezados finales demasiado grandes");
+                        return 0;
+                    }
+                    boolean last = eol == start;
+                    start = eol + 2;
+                    if (last) return -1;
+                    break;
+                }
+                default:
+                    throw new AssertionError(state);
+            }
+        }
+    }
+
+    /**
+     * Devuelve el buffer de trabajo a la reserva aunque queden bytes; se llama al cerrar la conexión.
+     */
+    public void recycle() {
+        if (buffer != null) {
+            POOL.release(buffer);
+            buffer = null;
+        }
+        start = 0;
+        end = 0;
+        scanFrom = 0;
+    }
+
+    private boolean parseHead() {
+        // Saltar CRLF sobrantes entre solicitudes
+        while (start < end && (buffer[start] == '\r' || buffer[start] == '\n')) {
+            start++;
+        }
+        if (scanFrom < start) scanFrom = start;
+
+        int headEnd = -1;
+        for (int i = Math.max(scanFrom, start + 3); i < end; i++) {
+            if (buffer[i] == '\n' && buffer[i - 1] == '\r' && buffer[i - 2] == '\n' && buffer[i - 3] == '\r') {
+                headEnd = i + 1;
+                break;
+            }
+        }
+        if (headEnd < 0) {
+            scanFrom = Math.max(start, end - 3);
+            if (end - start > MAX_HEAD_SIZE) {
+                throw bad(431, "Request Header Fields Too Large", "Cabecera demasiado grande");
+            }
+            return false;
+        }
+        if (headEnd - start > MAX_HEAD_SIZE) {
+            throw bad(431, "Request Header Fields Too Large", "Cabecera demasiado grande");
+        }
+
+        int lineEnd = indexOfCrlf(start, headEnd);
+        tokens = parseRequestLine(start, lineEnd);
+        keepAlive = "HTTP/1.1".equals(tokens[2]);
+        headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int pos = lineEnd + 2;
+        while (pos < headEnd - 2) {
+            int eol = indexOfCrlf(pos, headEnd);
+            parseHeaderLine(pos, eol);
+            pos = eol + 2;
+        }
+        start = headEnd;
+        scanFrom = start;
+
+        String connection = headers.get("Connection");
+        if (connection != null) {
+            if (containsToken(connection, "close")) {
+                keepAlive = false;
+            } else if (containsToken(connection, "keep-alive")) {
+                keepAlive = true;
+            }
+        }
+
+        String transferEncoding = headers.get("Transfer-Encoding");
+        String contentLength = headers.get("Content-Length");
+        if (transferEncoding != null) {
+            // Ambos encabezados a la vez permiten el contrabando de solicitudes entre intermediarios
+            if (contentLength != null) throw bad(400, "Bad Request", "Content-Length junto con Transfer-Encoding");
+            if (!transferEncoding.trim().equalsIgnoreCase("chunked")) {
+                throw bad(501, "Not Implemented", "Transfer-Encoding no soportado: " + transferEncoding);
+            }
+            state = State.CHUNK_SIZE;
+            streaming = streamBody != null && streamBody.test(head());
+            body = EMPTY;
+        } else {
+            long length = parseContentLength(contentLength);
+            state = State.BODY;
+            remaining = length;
+            streaming = length > 0 && streamBody != null && streamBody.test(head());
+            if (!streaming && length > maxBodySize) throw tooLarge();
+            body = length == 0 || streaming ? EMPTY : new byte[(int) length];
+        }
+        String expect = headers.get("Expect");
+        continuePending = expect != null && expect.equalsIgnoreCase("100-continue")
+                && (state != State.BODY || remaining > end - start);
+        return true;
+    }
+
+    private String[] parseRequestLine(int from, int to) {
+        int firstSpace = indexOf(' ', from, to);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(' ', firstSpace + 1, to);
+        if (firstSpace <= from || secondSpace <= firstSpace + 1 || indexOf(' ', secondSpace + 1, to) >= 0
+                || !startsWith(secondSpace + 1, to, "HTTP/")) {
+            throw bad(400, "Bad Request", "Linea de solicitud invalida");
+        }
+        return new String[]{
+                ascii(from, firstSpace),
+                ascii(firstSpace + 1, secondSpace),
+                ascii(secondSpace + 1, to)
+        };
+    }
+
+    private void parseHeaderLine(int from, int to) {
+        int colon = indexOf(':', from, to);
+        if (colon <= from) throw bad(400, "Bad Request", "Encabezado invalido");
+        for (int i = from; i < colon; i++) {
+            byte b = buffer[i];
+            if (b <= ' ' || b == 0x7F) throw bad(400, "Bad Request", "Nombre de encabezado invalido");
+        }
+        int valueStart = colon + 1;
+        int valueEnd = to;
+        while (valueStart < valueEnd && isOws(buffer[valueStart])) valueStart++;
+        while (valueEnd > valueStart && isOws(buffer[valueEnd - 1])) valueEnd--;
+        String name = ascii(from, colon);
+        String value = ascii(valueStart, valueEnd);
+        String previous = headers.get(name);
+        if (previous == null) {
+            headers.put(name, value);
+        } else if (name.equalsIgnoreCase("Content-Length")) {
+            if (!previous.equals(value)) throw bad(400, "Bad Request", "Content-Length repetido");
+        } else {
+            headers.put(name, previous + ", " + value);
+        }
+    }
+
+    // Solicitud sin cuerpo para decidir si se procesa en streaming
+    private Request head() {
+        return new Request(tokens, Collections.unmodifiableMap(headers), EMPTY, keepAlive);
+    }
+
+    private long parseContentLength(String value) {
+        if (value == null) return 0;
+        if (value.isEmpty() || value.length() > 18) throw bad(400, "Bad Request", "Content-Length invalido");
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') throw bad(400, "Bad Request", "Content-Length invalido");
+            length = length * 10 + (c - '0');
+        }
+        return length;
+    }
+
+    private long parseChunkSize(int from, int to) {
+        long size = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if (b == ';' || b == ' ' || b == '\t') break; // Extensiones del trozo: se ignoran
+            int digit = Character.digit(b, 16);
+            if (digit < 0 || ++digits > 8) throw bad(400, "Bad Request", "Tamano de trozo invalido");
+            size = (size << 4) | digit;
+        }
+        if (digits == 0) throw bad(400, "Bad Request", "Tamano de trozo invalido");
+        return size;
+    }
+
+    private Request complete() {
+        byte[] content = bodyLength == body.length ? body : Arrays.copyOf(body, bodyLength);
+        Request request = new Request(tokens, Collections.unmodifiableMap(headers), content, keepAlive);
+        state = State.HEAD;
+        tokens = null;
+        headers = null;
+        body = null;
+        bodyLength = 0;
+        remaining = 0;
+        continuePending = false;
+        release();
+        return request;
+    }
+
+    private Request pause() {
+        release();
+        return null;
+    }
+
+    private byte[] growBody(int needed) {
+        if (needed <= body.length) return body;
+        return Arrays.copyOf(body, Math.min(maxBodySize, Math.max(needed, body.length * 2)));
+    }
+
+    private BadRequestException tooLarge() {
+        return bad(413, "Payload Too Large", "Cuerpo de mas de " + maxBodySize + " bytes");
+    }
+
+    private static BadRequestException bad(int status, String reason, String message) {
+        return new BadRequestException(status, reason, message);
+    }
+
+    // Garantiza al menos un byte libre al final del buffer, compactando o creciendo si hace falta
+    private void ensureSpace() {
+        if (buffer == null) {
+            buffer = POOL.acquire();
+            return;
+        }
+        if (end < buffer.length) return;
+        int used = end - start;
+        byte[] target = used < buffer.length ? buffer : new byte[buffer.length * 2];
+        System.arraycopy(buffer, start, target, 0, used);
+        if (target != buffer) {
+            POOL.release(buffer);
+            buffer = target;
+        }
+        scanFrom -= start;
+        start = 0;
+        end = used;
+    }
+
+    // Devuelve el buffer a la reserva cuando no quedan bytes pendientes, asi las conexiones inactivas no retienen memoria
+    private void release() {
+        if (buffer != null && start == end) {
+            POOL.release(buffer);
+            buffer = null;
+            start = 0;
+            end = 0;
+            scanFrom = 0;
+        }
+    }
+
+    private int indexOfCrlf(int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[from + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String ascii(int from, int to) {
+        return new String(buffer, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isOws(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean containsToken(String list, String token) {
+        for (String part : list.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) return true;
+        }
+        return false;
+    }
+}
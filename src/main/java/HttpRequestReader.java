@@ -0,0 +1,53 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lector que entrega a los servicios los encabezados y el cuerpo de una solicitud ya analizada, tal como
+ * lo espera la interfaz {@link RESTService}. Los servicios que conocen este tipo usan directamente
+ * {@link #request()} (encabezados sin distinguir mayúsculas y cuerpo en bytes) y el texto nunca llega a construirse.
+ */
+public class HttpRequestReader extends BufferedReader {
+
+    private final HttpRequestParser.Request request;
+
+    /**
+     * @param request La solicitud analizada.
+     */
+    public HttpRequestReader(HttpRequestParser.Request request) {
+        super(new LazyReader(request), 1024);
+        this.request = request;
+    }
+
+    /**
+     * @return La solicitud analizada.
+     */
+    public HttpRequestParser.Request request() {
+        return request;
+    }
+
+    // Decodifica el texto de la solicitud solo si alguien lo lee
+    private static final class LazyReader extends Reader {
+        private final HttpRequestParser.Request request;
+        private Reader delegate;
+
+        LazyReader(HttpRequestParser.Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (delegate == null) {
+                delegate = new StringReader(request.headersAndBody(StandardCharsets.UTF_8));
+            }
+            return delegate.read(cbuf, off, len);
+        }
+
+        @Override
+        public void close() {
+            delegate = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Respuesta que devuelve un manejador asíncrono ({@link AsyncRouteHandler}, {@link AsyncRESTService}).
+ * No se escribe al terminar el manejador sino cuando el servidor la envía: en el mismo hilo si la etapa ya
+ * terminó, o después en un trabajador, así que la respuesta no debe depender de nada que cambie mientras tanto.
+ */
+@FunctionalInterface
+public interface HttpResponse {
+
+    /**
+     * Escribe la respuesta completa, con la línea de estado y los encabezados.
+     *
+     * @param out El flujo de salida del cliente.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Respuesta con cuerpo JSON ya codificado.
+     *
+     * @param status El código de estado.
+     * @param body El cuerpo en UTF-8; no se copia.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @return La respuesta.
+     */
+    static HttpResponse json(int status, byte[] body, String extraHeaders) {
+        return out -> {
+            out.write(ResponseHeaders.json(status, reason(status), body.length, extraHeaders));
+            out.write(body);
+        };
+    }
+
+    /**
+     * Respuesta de error con el cuerpo de {@link Router#sendError}.
+     *
+     * @param status El código de estado.
+     * @param reason El texto del estado.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @return La respuesta.
+     */
+    static HttpResponse error(int status, String reason, String extraHeaders) {
+        return out -> Router.sendError(out, status, reason, extraHeaders);
+    }
+
+    /**
+     * @param status Un código de estado.
+     * @return Su texto, o {@code "OK"} para los que no se usan en las respuestas JSON.
+     */
+    static String reason(int status) {
+        String reason = ResponseHeaders.reason(status);
+        return reason != null ? reason : "OK";
+    }
+}
@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Almacén en memoria respaldado por un {@link ConcurrentHashMap} indexado por id.
+ * Las operaciones sobre un solo registro son O(1) y seguras ante POST/PUT/DELETE concurrentes;
+ * los ids se generan con un contador atómico.
+ * Dos índices secundarios ordenados ({@link ConcurrentSkipListMap}) permiten paginar por id y filtrar por
+ * prefijo del nombre sin recorrer toda la colección. Los índices se actualizan dentro de la operación atómica
+ * sobre el id, de modo que nunca quedan desalineados con el mapa principal para ese registro.
+ */
+public class InMemoryDinosaurioRepository implements DinosaurioRepository {
+
+    private final ConcurrentMap<Integer, Dinosaurio> records = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Dinosaurio> byId = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<NameKey, Dinosaurio> byName = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // Se incrementa despues de aplicar cada cambio, asi quien lee la version antes que los datos nunca
+    // asocia datos viejos a una version nueva
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Clave del índice por nombre: nombre en minúsculas y, para desempatar, el id.
+     */
+    private static final class NameKey implements Comparable<NameKey> {
+        final String name;
+        final int id;
+
+        NameKey(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        static NameKey of(Dinosaurio dinosaurio) {
+            return new NameKey(normalize(dinosaurio.getName()), dinosaurio.getId());
+        }
+
+        @Override
+        public int compareTo(NameKey other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NameKey && compareTo((NameKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + id;
+        }
+    }
+
+    @Override
+    public Dinosaurio create(String name) {
+        Dinosaurio dinosaurio = new Dinosaurio(nextId.getAndIncrement(), name);
+        records.compute(dinosaurio.getId(), (key, current) -> {
+            index(dinosaurio);
+            return dinosaurio;
+        });
+        version.incrementAndGet();
+        return dinosaurio;
+    }
+
+    @Override
+    public Dinosaurio findById(int id) {
+        return records.get(id);
+    }
+
+    @Override
+    public Dinosaurio update(int id, String name) {
+        Dinosaurio updated = records.computeIfPresent(id, (key, current) -> {
+            Dinosaurio renamed = current.withName(name);
+            byName.remove(NameKey.of(current));
+            index(renamed);
+            return renamed;
+        });
+        if (updated != null) {
+            version.incrementAndGet();
+        }
+        return updated;
+    }
+
+    @Override
+    public Dinosaurio delete(int id) {
+        Dinosaurio[] removed = new Dinosaurio[1];
+        records.computeIfPresent(id, (key, current) -> {
+            byId.remove(key);
+            byName.remove(NameKey.of(current));
+            removed[0] = current;
+            return null;
+        });
+        if (removed[0] != null) {
+            version.incrementAndGet();
+        }
+        return removed[0];
+    }
+
+    /**
+     * Reserva un bloque de ids consecutivos y cambia la versión una sola vez para todo el lote.
+     */
+    @Override
+    public List<Dinosaurio> createAll(List<String> names) {
+        List<Dinosaurio> created = new ArrayList<>(names.size());
+        if (names.isEmpty()) return created;
+        int firstId = nextId.getAndAdd(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Dinosaurio dinosaurio = new Dinosaurio(firstId + i, names.get(i));
+            records.compute(dinosaurio.getId(), (key, current) -> {
+                index(dinosaurio);
+                return dinosaurio;
+            });
+            created.add(dinosaurio);
+        }
+        version.incrementAndGet();
+        return created;
+    }
+
+    @Override
+    public List<Dinosaurio> deleteAll(int[] ids, int count) {
+        List<Dinosaurio> deleted = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Dinosaurio[] removed = new Dinosaurio[1];
+            records.computeIfPresent(ids[i], (key, current) -> {
+                byId.remove(key);
+                byName.remove(NameKey.of(current));
+                removed[0] = current;
+                return null;
+            });
+            if (removed[0] != null) deleted.add(removed[0]);
+        }
+        if (!deleted.isEmpty()) {
+            version.incrementAndGet();
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Dinosaurio> findAll() {
+        return new ArrayList<>(byId.values());
+    }
+
+    @Override
+    public List<Dinosaurio> findPage(int afterId, int limit) {
+        return take(byId.tailMap(afterId, false).values().iterator(), 0, limit);
+    }
+
+    @Override
+    public List<Dinosaurio> findRange(int offset, int limit) {
+        return take(byId.values().iterator(), offset, limit);
+    }
+
+    @Override
+    public List<Dinosaurio> findByNamePrefix(String prefix, int offset, int limit) {
+        String from = normalize(prefix);
+        ConcurrentNavigableMap<NameKey, Dinosaurio> range = byName.subMap(
+                new NameKey(from, Integer.MIN_VALUE), true,
+                new NameKey(from + Character.MAX_VALUE, Integer.MIN_VALUE), false);
+        return take(range.values().iterator(), offset, limit);
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Inserta o reemplaza un registro con su id original, usado al recuperar desde disco.
+     * El generador de ids avanza para no reutilizar el id.
+     *
+     * @param dinosaurio El registro recuperado.
+     */
+    void restore(Dinosaurio dinosaurio) {
+        records.compute(dinosaurio.getId(), (key, current) -> {
+            if (current != null) {
+                byName.remove(NameKey.of(current));
+            }
+            index(dinosaurio);
+            return dinosaurio;
+        });
+        nextId.accumulateAndGet(dinosaurio.getId() + 1, Math::max);
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return El id que recibirá el próximo registro creado.
+     */
+    int nextId() {
+        return nextId.get();
+    }
+
+    /**
+     * Ajusta el generador de ids al recuperar una instantánea, para no reutilizar ids de registros eliminados.
+     *
+     * @param id El próximo id recuperado.
+     */
+    void restoreNextId(int id) {
+        nextId.accumulateAndGet(id, Math::max);
+    }
+
+    private void index(Dinosaurio dinosaurio) {
+        byId.put(dinosaurio.getId(), dinosaurio);
+        byName.put(NameKey.of(dinosaurio), dinosaurio);
+    }
+
+    private static List<Dinosaurio> take(Iterator<Dinosaurio> it, int offset, int limit) {
+        for (int skipped = 0; skipped < offset && it.hasNext(); skipped++) {
+            it.next();
+        }
+        List<Dinosaurio> page = new ArrayList<>(Math.min(limit, 256));
+        while (page.size() < limit && it.hasNext()) {
+            page.add(it.next());
+        }
+        return page;
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,436 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lector JSON en streaming (tipo "pull") que recorre directamente los bytes UTF-8 de un documento.
+ * No construye un árbol: el llamador pide el siguiente token y descarta con {@link #skipValue()} lo que no le interesa,
+ * así que solo se crean cadenas para los valores que realmente se leen. Admite espacios en blanco arbitrarios,
+ * todas las secuencias de escape (incluidos pares sustitutos {@code \\uD83E\\uDD95}) y UTF-8 de varios bytes.
+ */
+public final class JsonReader {
+
+    /** Tipos de token que puede devolver {@link #peek()}. */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    /**
+     * Error de sintaxis en el documento JSON.
+     */
+    public static final class MalformedJsonException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedJsonException(String message, int position) {
+            super(message + " en la posicion " + position);
+        }
+    }
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    // Pila de contextos: true para objetos, false para arreglos
+    private boolean[] isObject = new boolean[16];
+    private int depth;
+    private boolean expectName;
+    private char[] chars = new char[64];
+
+    /**
+     * @param data Los bytes UTF-8 del documento.
+     */
+    public JsonReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * @param data Buffer con los bytes UTF-8 del documento.
+     * @param offset Posición inicial del documento.
+     * @param length Longitud del documento.
+     */
+    public JsonReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Crea un lector sobre los bytes restantes de un buffer sin modificar su posición.
+     *
+     * @param buffer El buffer.
+     * @return El lector.
+     */
+    public static JsonReader of(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new JsonReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return new JsonReader(copy);
+    }
+
+    /**
+     * @return El tipo del siguiente token, sin consumirlo.
+     * @throws IOException Si el documento está mal formado.
+     */
+    public Token peek() throws IOException {
+        skipWhitespace();
+        if (pos >= end) {
+            if (depth > 0) throw error("Fin inesperado del documento");
+            return Token.END_DOCUMENT;
+        }
+        byte b = data[pos];
+        if (depth > 0 && isObject[depth - 1] && expectName) {
+            if (b == '}') return Token.END_OBJECT;
+            if (b != '"') throw error("Se esperaba un nombre");
+            return Token.NAME;
+        }
+        switch (b) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '}': return Token.END_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case ']': return Token.END_ARRAY;
+            case '"': return Token.STRING;
+            case 't':
+            case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            default:
+                if (b == '-' || (b >= '0' && b <= '9')) return Token.NUMBER;
+                throw error("Caracter inesperado '" + (char) (b & 0xFF) + "'");
+        }
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(true);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        pos++;
+        pop();
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(false);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        pos++;
+        pop();
+    }
+
+    /**
+     * @return {@code true} si el objeto o arreglo actual tiene más elementos.
+     * @throws IOException Si el documento está mal formado.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * @return El nombre del siguiente miembro del objeto actual.
+     * @throws IOException Si el documento está mal formado.
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        String name = readString();
+        skipWhitespace();
+        if (pos >= end || data[pos] != ':') throw error("Se esperaba ':'");
+        pos++;
+        expectName = false;
+        return name;
+    }
+
+    /**
+     * @return El siguiente valor de texto, ya sin escapes.
+     * @throws IOException Si el siguiente valor no es una cadena o está mal formado.
+     */
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        String value = readString();
+        afterValue();
+        return value;
+    }
+
+    /**
+     * @return El siguiente valor numérico entero.
+     * @throws IOException Si el siguiente valor no es un entero válido.
+     */
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        int start = pos;
+        boolean negative = data[pos] == '-';
+        if (negative) pos++;
+        if (pos >= end || data[pos] < '0' || data[pos] > '9') throw error("Numero invalido");
+        long value = 0;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            int digit = data[pos++] - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                pos = start;
+                throw error("Numero fuera de rango");
+            }
+            value = value * 10 + digit;
+        }
+        if (pos < end && (data[pos] == '.' || data[pos] == 'e' || data[pos] == 'E')) {
+            pos = start;
+            throw error("Se esperaba un entero");
+        }
+        afterValue();
+        return negative ? -value : value;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        boolean value = data[pos] == 't';
+        literal(value ? "true" : "false");
+        afterValue();
+        return value;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        literal("null");
+        afterValue();
+    }
+
+    /**
+     * Descarta el siguiente valor completo (incluidos objetos y arreglos anidados) sin crear cadenas.
+     *
+     * @throws IOException Si el documento está mal formado.
+     */
+    public void skipValue() throws IOException {
+        int target = depth;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    break;
+                case NAME:
+                    skipString();
+                    skipWhitespace();
+                    if (pos >= end || data[pos] != ':') throw error("Se esperaba ':'");
+                    pos++;
+                    expectName = false;
+                    continue;
+                case STRING:
+                    skipString();
+                    afterValue();
+                    break;
+                case NUMBER:
+                    while (pos < end && isNumberChar(data[pos])) pos++;
+                    afterValue();
+                    break;
+                case BOOLEAN:
+                    nextBoolean();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                default:
+                    throw error("Fin inesperado del documento");
+            }
+        } while (depth > target);
+    }
+
+    /**
+     * Busca un miembro de texto en el objeto raíz del documento.
+     *
+     * @param json Los bytes UTF-8 del documento.
+     * @param offset Posición inicial.
+     * @param length Longitud.
+     * @param key El nombre del miembro.
+     * @return El valor, o {@code null} si no está, no es una cadena o el documento está mal formado.
+     */
+    public static String findString(byte[] json, int offset, int length, String key) {
+        try {
+            JsonReader reader = new JsonReader(json, offset, length);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(key) && reader.peek() == Token.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token actual = peek();
+        if (actual != expected) throw error("Se esperaba " + expected + " pero se encontro " + actual);
+    }
+
+    private void push(boolean object) {
+        if (depth == isObject.length) {
+            isObject = java.util.Arrays.copyOf(isObject, depth * 2);
+        }
+        isObject[depth++] = object;
+        expectName = object;
+    }
+
+    private void pop() throws IOException {
+        depth--;
+        afterValue();
+    }
+
+    // Tras un valor consume la coma, si la hay, y deja listo el siguiente nombre o elemento
+    private void afterValue() throws IOException {
+        if (depth == 0) return;
+        skipWhitespace();
+        if (pos >= end) throw error("Fin inesperado del documento");
+        byte b = data[pos];
+        byte close = isObject[depth - 1] ? (byte) '}' : (byte) ']';
+        if (b == ',') {
+            pos++;
+            skipWhitespace();
+            if (pos < end && data[pos] == close) throw error("Coma sobrante");
+        } else if (b != close) {
+            throw error("Se esperaba ',' o '" + (char) close + "'");
+        }
+        expectName = isObject[depth - 1];
+    }
+
+    private String readString() throws IOException {
+        pos++; // comilla de apertura
+        int start = pos;
+        // Camino rapido: ASCII sin escapes se decodifica directamente del buffer
+        while (pos < end) {
+            byte b = data[pos];
+            if (b == '"') {
+                String value = new String(data, start, pos - start, StandardCharsets.ISO_8859_1);
+                pos++;
+                return value;
+            }
+            if (b == '\\' || b < 0x20) break;
+            pos++;
+        }
+        pos = start;
+        int length = 0;
+        while (true) {
+            if (pos >= end) throw error("Cadena sin terminar");
+            int b = data[pos++] & 0xFF;
+            if (length + 2 > chars.length) {
+                chars = java.util.Arrays.copyOf(chars, chars.length * 2);
+            }
+            if (b == '"') {
+                return new String(chars, 0, length);
+            } else if (b == '\\') {
+                if (pos >= end) throw error("Escape sin terminar");
+                byte escape = data[pos++];
+                switch (escape) {
+                    case '"': chars[length++] = '"'; break;
+                    case '\\': chars[length++] = '\\'; break;
+                    case '/': chars[length++] = '/'; break;
+                    case 'b': chars[length++] = '\b'; break;
+                    case 'f': chars[length++] = '\f'; break;
+                    case 'n': chars[length++] = '\n'; break;
+                    case 'r': chars[length++] = '\r'; break;
+                    case 't': chars[length++] = '\t'; break;
+                    case 'u': chars[length++] = readHex4(); break;
+                    default: throw error("Escape invalido");
+                }
+            } else if (b < 0x20) {
+                throw error("Caracter de control sin escapar");
+            } else if (b < 0x80) {
+                chars[length++] = (char) b;
+            } else {
+                length = decodeUtf8(b, length);
+            }
+        }
+    }
+
+    private int decodeUtf8(int lead, int length) throws IOException {
+        int extra;
+        int cp;
+        if ((lead & 0xE0) == 0xC0) {
+            extra = 1;
+            cp = lead & 0x1F;
+        } else if ((lead & 0xF0) == 0xE0) {
+            extra = 2;
+            cp = lead & 0x0F;
+        } else if ((lead & 0xF8) == 0xF0) {
+            extra = 3;
+            cp = lead & 0x07;
+        } else {
+            throw error("UTF-8 invalido");
+        }
+        if (pos + extra > end) throw error("UTF-8 truncado");
+        for (int i = 0; i < extra; i++) {
+            int b = data[pos++] & 0xFF;
+            if ((b & 0xC0) != 0x80) throw error("UTF-8 invalido");
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        if (cp > Character.MAX_CODE_POINT || (extra == 1 && cp < 0x80) || (extra == 2 && cp < 0x800)
+                || (extra == 3 && cp < 0x10000) || (cp >= 0xD800 && cp <= 0xDFFF)) {
+            throw error("UTF-8 invalido");
+        }
+        if (cp >= 0x10000) {
+            chars[length++] = Character.highSurrogate(cp);
+            chars[length++] = Character.lowSurrogate(cp);
+        } else {
+            chars[length++] = (char) cp;
+        }
+        return length;
+    }
+
+    private char readHex4() throws IOException {
+        if (pos + 4 > end) throw error("Escape \\u incompleto");
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(data[pos++], 16);
+            if (digit < 0) throw error("Escape \\u invalido");
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private void skipString() throws IOException {
+        pos++;
+        while (pos < end) {
+            byte b = data[pos++];
+            if (b == '"') return;
+            if (b == '\\') pos++;
+        }
+        throw error("Cadena sin terminar");
+    }
+
+    private void literal(String expected) throws IOException {
+        if (pos + expected.length() > end) throw error("Literal invalido");
+        for (int i = 0; i < expected.length(); i++) {
+            if (data[pos + i] != expected.charAt(i)) throw error("Literal invalido");
+        }
+        pos += expected.length();
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = data[pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') return;
+            pos++;
+        }
+    }
+
+    private static boolean isNumberChar(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private MalformedJsonException error(String message) {
+        return new MalformedJsonException(message, pos);
+    }
+}
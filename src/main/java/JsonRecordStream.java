@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Separa en registros un flujo con un arreglo JSON ({@code [{...}, {...}]}) o con NDJSON (un valor JSON por línea),
+ * leyéndolo por partes. Solo se mantiene en memoria el registro actual, de modo que una carga de cualquier tamaño
+ * usa un buffer acotado por {@code maxRecordSize}. Cada registro se interpreta luego con {@link JsonReader}.
+ * El formato se detecta por el primer carácter: {@code [} indica un arreglo y cualquier otro, NDJSON.
+ */
+final class JsonRecordStream {
+
+    private static final int UNKNOWN = 0;
+    private static final int ARRAY = 1;
+    private static final int NDJSON = 2;
+
+    private final InputStream in;
+    private final int maxRecordSize;
+    private byte[] buffer = new byte[8 * 1024];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private int format = UNKNOWN;
+    private boolean arrayClosed;
+    private int count;
+    // Inicio del registro en curso: fill() conserva los bytes desde aqui
+    private int recordStart;
+    private int recordEnd;
+
+    /**
+     * @param in El flujo de entrada.
+     * @param maxRecordSize Tamaño máximo de un registro en bytes.
+     */
+    JsonRecordStream(InputStream in, int maxRecordSize) {
+        this.in = in;
+        this.maxRecordSize = maxRecordSize;
+    }
+
+    /**
+     * Avanza al siguiente registro.
+     *
+     * @return {@code true} si hay un registro, disponible en {@link #buffer()}, {@link #offset()} y {@link #length()}.
+     * @throws JsonReader.MalformedJsonException Si el arreglo está mal formado o un registro es demasiado grande.
+     * @throws IOException Si ocurre un error al leer.
+     */
+    boolean next() throws IOException {
+        if (format == UNKNOWN) {
+            if (!skipWhitespace()) return false;
+            format = buffer[pos] == '[' ? ARRAY : NDJSON;
+            if (format == ARRAY) pos++;
+        }
+        boolean found = format == ARRAY ? nextArrayElement() : nextLine();
+        if (found) count++;
+        return found;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int offset() {
+        return recordStart;
+    }
+
+    int length() {
+        return recordEnd - recordStart;
+    }
+
+    /**
+     * @return El número de registros leídos hasta ahora.
+     */
+    int count() {
+        return count;
+    }
+
+    private boolean nextLine() throws IOException {
+        while (true) {
+            if (!skipWhitespace()) return false;
+            recordStart = pos;
+            int scan = pos;
+            while (true) {
+                if (scan == limit) {
+                    int relative = scan - recordStart;
+                    if (!fill()) break; // La ultima linea puede no terminar en salto de linea
+                    scan = recordStart + relative;
+                    continue;
+                }
+                if (buffer[scan] == '\n') break;
+                scan++;
+            }
+            recordEnd = scan;
+            pos = scan < limit ? scan + 1 : scan;
+            while (recordEnd > recordStart && isWhitespace(buffer[recordEnd - 1])) recordEnd--;
+            if (recordEnd > recordStart) return true;
+        }
+    }
+
+    private boolean nextArrayElement() throws IOException {
+        if (arrayClosed) {
+            if (skipWhitespace()) throw error("Datos despues del final del arreglo");
+            return false;
+        }
+        if (!skipWhitespace()) throw error("Arreglo sin cerrar");
+        if (buffer[pos] == ']') {
+            pos++;
+            arrayClosed = true;
+            return nextArrayElement();
+        }
+        if (count > 0) {
+            if (buffer[pos] != ',') throw error("Se esperaba ',' o ']'");
+            pos++;
+            if (!skipWhitespace()) throw error("Arreglo sin cerrar");
+        }
+
+        // Un elemento termina en la coma o el corchete de cierre que quedan fuera de cadenas y anidamientos
+        recordStart = pos;
+        int scan = pos;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (scan == limit) {
+                int relative = scan - recordStart;
+                if (!fill()) throw error("Arreglo sin cerrar");
+                scan = recordStart + relative;
+                continue;
+            }
+            byte b = buffer[scan];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (depth == 0) break;
+                depth--;
+            } else if (b == ',' && depth == 0) {
+                break;
+            }
+            scan++;
+        }
+        recordEnd = scan;
+        pos = scan;
+        while (recordEnd > recordStart && isWhitespace(buffer[recordEnd - 1])) recordEnd--;
+        if (recordEnd == recordStart) throw error("Elemento vacio");
+        return true;
+    }
+
+    // Salta espacios, descartando lo ya consumido; devuelve false al final del flujo
+    private boolean skipWhitespace() throws IOException {
+        while (true) {
+            while (pos < limit && isWhitespace(buffer[pos])) pos++;
+            if (pos < limit) return true;
+            recordStart = pos;
+            if (!fill()) return false;
+        }
+    }
+
+    // Lee mas datos conservando los bytes desde recordStart; devuelve false al final del flujo
+    private boolean fill() throws IOException {
+        if (eof) return false;
+        if (recordStart > 0) {
+            System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+            limit -= recordStart;
+            pos -= recordStart;
+            recordStart = 0;
+        }
+        if (limit == buffer.length) {
+            if (buffer.length >= maxRecordSize) throw error("Registro de mas de " + maxRecordSize + " bytes");
+            buffer = Arrays.copyOf(buffer, Math.min(maxRecordSize, buffer.length * 2));
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private JsonReader.MalformedJsonException error(String message) {
+        return new JsonReader.MalformedJsonException(message, pos);
+    }
+}
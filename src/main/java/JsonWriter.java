@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Escritor JSON en streaming que codifica directamente a UTF-8 sobre un buffer de bytes reutilizable,
+ * sin construir cadenas intermedias. Escapa comillas, barras invertidas, caracteres de control y
+ * sustitutos UTF-16 sueltos, de modo que ningún valor del usuario puede romper el documento.
+ *
+ * <p>Usa el mismo formato que siempre devolvió la API: {@code { "id": 1, "Dinosaurio": "Rex" }} para los objetos
+ * y elementos separados solo por coma en los arreglos.</p>
+ */
+public final class JsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] buffer;
+    private int count;
+    // Pila minima de contextos: true si el contenedor actual ya tiene al menos un elemento
+    private boolean[] hasElements = new boolean[16];
+    private boolean[] isObject = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter() {
+        this(256);
+    }
+
+    /**
+     * @param initialCapacity Capacidad inicial del buffer en bytes.
+     */
+    public JsonWriter(int initialCapacity) {
+        buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Vacía el escritor para reutilizar su buffer.
+     *
+     * @return Este escritor.
+     */
+    public JsonWriter reset() {
+        count = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        push(true);
+        writeByte('{');
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        boolean any = hasElements[depth - 1];
+        depth--;
+        if (any) {
+            writeByte(' ');
+        }
+        writeByte('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        push(false);
+        writeByte('[');
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Escribe el nombre de un miembro del objeto actual.
+     *
+     * @param name El nombre.
+     * @return Este escritor.
+     */
+    public JsonWriter name(String name) {
+        if (hasElements[depth - 1]) {
+            writeByte(',');
+        }
+        hasElements[depth - 1] = true;
+        writeByte(' ');
+        writeString(name);
+        writeByte(':');
+        writeByte(' ');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return this;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        ensure(digits);
+        for (int i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Inserta un valor JSON ya codificado (por ejemplo un objeto serializado previamente).
+     *
+     * @param json Los bytes UTF-8 del valor.
+     * @param off Posición inicial.
+     * @param len Longitud.
+     * @return Este escritor.
+     */
+    public JsonWriter rawValue(byte[] json, int off, int len) {
+        beforeValue();
+        ensure(len);
+        System.arraycopy(json, off, buffer, count, len);
+        count += len;
+        return this;
+    }
+
+    /**
+     * @return El número de bytes escritos.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Una copia de los bytes escritos.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Copia los bytes escritos a un flujo de salida.
+     *
+     * @param out El flujo de salida.
+     * @throws IOException Si ocurre un error al escribir.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, count, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (isObject[depth - 1]) {
+                throw new IllegalStateException("Falta el nombre del miembro");
+            }
+            if (hasElements[depth - 1]) {
+                writeByte(',');
+            }
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+            isObject = Arrays.copyOf(isObject, depth * 2);
+        }
+        hasElements[depth] = false;
+        isObject[depth] = object;
+        depth++;
+    }
+
+    private void writeString(String s) {
+        int length = s.length();
+        // Peor caso: 6 bytes por caracter (\\uXXXX) mas las comillas
+        ensure(length * 6 + 2);
+        byte[] b = buffer;
+        int pos = count;
+        b[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    b[pos++] = '\\';
+                    b[pos++] = (byte) c;
+                } else if (c >= 0x20) {
+                    b[pos++] = (byte) c;
+                } else if (c == '\n') {
+                    b[pos++] = '\\';
+                    b[pos++] = 'n';
+                } else if (c == '\r') {
+                    b[pos++] = '\\';
+                    b[pos++] = 'r';
+                } else if (c == '\t') {
+                    b[pos++] = '\\';
+                    b[pos++] = 't';
+                } else {
+                    pos = writeUnicodeEscape(b, pos, c);
+                }
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xC0 | (c >> 6));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < length ? s.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int cp = Character.toCodePoint(c, low);
+                    i++;
+                    b[pos++] = (byte) (0xF0 | (cp >> 18));
+                    b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    // Sustituto suelto: no es UTF-8 valido, se escapa tal cual
+                    pos = writeUnicodeEscape(b, pos, c);
+                }
+            } else {
+                b[pos++] = (byte) (0xE0 | (c >> 12));
+                b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        b[pos++] = '"';
+        count = pos;
+    }
+
+    private static int writeUnicodeEscape(byte[] b, int pos, char c) {
+        b[pos++] = '\\';
+        b[pos++] = 'u';
+        b[pos++] = HEX[(c >> 12) & 0xF];
+        b[pos++] = HEX[(c >> 8) & 0xF];
+        b[pos++] = HEX[(c >> 4) & 0xF];
+        b[pos++] = HEX[c & 0xF];
+        return pos;
+    }
+
+    private void writeAscii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensure(int extra) {
+        if (count + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + extra));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de un servidor: conexiones, bytes, errores, compresión y latencia por ruta. Cada
+ * {@link SimpleWebServer} tiene las suyas y las comparte con su enrutador y su motor de red, así que varios
+ * servidores en la misma JVM no mezclan sus cifras. Todos los contadores son {@link LongAdder} y los
+ * histogramas registran sin bloqueos, de modo que medir cuesta un par de {@link System#nanoTime()} por
+ * solicitud. {@link #render} las escribe en el formato de texto de Prometheus para la ruta {@code /metrics}.
+ */
+final class Metrics {
+
+    /**
+     * Tipos de error que se cuentan por separado.
+     */
+    enum ErrorType {
+        BAD_REQUEST("bad_request"),
+        NOT_FOUND("not_found"),
+        METHOD_NOT_ALLOWED("method_not_allowed"),
+        REJECTED("rejected"),
+        RATE_LIMITED("rate_limited"),
+        TIMEOUT("timeout"),
+        HANDLER("handler"),
+        CONNECTION("connection");
+
+        final String label;
+
+        ErrorType(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    final LongAdder connectionsAccepted = new LongAdder();
+    final LongAdder connectionsActive = new LongAdder();
+    final LongAdder bytesReceived = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LatencyHistogram parseLatency = new LatencyHistogram();
+
+    private final LongAdder[] errors = new LongAdder[ErrorType.values().length];
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+
+    // Ordenadas por ruta y metodo para que la salida sea estable
+    private final Map<String, Route> routes = new ConcurrentSkipListMap<>();
+
+    Metrics() {
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Métricas de una ruta del {@link Router}: latencia de su manejador y excepciones que lanzó.
+     */
+    static final class Route {
+        final String method;
+        final String template;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        private Route(String method, String template) {
+            this.method = method;
+            this.template = template;
+        }
+    }
+
+    /**
+     * @param method El método HTTP.
+     * @param template La plantilla de la ruta.
+     * @return Las métricas de la ruta, creándolas la primera vez.
+     */
+    Route route(String method, String template) {
+        return routes.computeIfAbsent(template + " " + method, key -> new Route(method, template));
+    }
+
+    void error(ErrorType type) {
+        errors[type.ordinal()].increment();
+    }
+
+    /**
+     * @param type El tipo de error.
+     * @return Errores de ese tipo contados.
+     */
+    long errors(ErrorType type) {
+        return errors[type.ordinal()].sum();
+    }
+
+    /**
+     * Registra una respuesta enviada comprimida, también desde una variante ya precomprimida.
+     *
+     * @param uncompressed Tamaño original del cuerpo.
+     * @param compressed Tamaño enviado.
+     */
+    void compressed(long uncompressed, long compressed) {
+        compressedResponses.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+    }
+
+    /**
+     * @return Número de respuestas enviadas comprimidas.
+     */
+    long compressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    /**
+     * @return Bytes originales de los cuerpos enviados comprimidos.
+     */
+    long uncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * @return Bytes enviados tras comprimir esos cuerpos.
+     */
+    long compressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    String compressionStats() {
+        long in = uncompressedBytes();
+        long out = compressedBytes();
+        return String.format(Locale.ROOT, "respuestas=%d originales=%d comprimidos=%d ratio=%.2f",
+                compressedResponses(), in, out, in == 0 ? 0 : (double) out / in);
+    }
+
+    /**
+     * Escribe todas las métricas en el formato de texto de Prometheus.
+     *
+     * @param out El texto de destino.
+     */
+    void render(StringBuilder out) {
+        gauge(out, "http_connections_active", "Conexiones abiertas.", connectionsActive.sum());
+        counter(out, "http_connections_accepted_total", "Conexiones aceptadas.", connectionsAccepted.sum());
+        counter(out, "http_bytes_received_total", "Bytes leidos de los sockets.", bytesReceived.sum());
+        counter(out, "http_bytes_sent_total", "Bytes escritos en los sockets.", bytesSent.sum());
+
+        header(out, "http_errors_total", "counter", "Errores por tipo.");
+        for (ErrorType type : ErrorType.values()) {
+            out.append("http_errors_total{type=\"").append(type.label).append("\"} ").append(errors(type)).append('\n');
+        }
+
+        header(out, "http_parse_duration_seconds", "summary", "Tiempo de analisis de la cabecera y el cuerpo.");
+        summary(out, "http_parse_duration_seconds", "", parseLatency);
+
+        header(out, "http_request_duration_seconds", "summary", "Tiempo de atencion de cada ruta.");
+        for (Route route : routes.values()) {
+            summary(out, "http_request_duration_seconds", labels(route), route.latency);
+        }
+        header(out, "http_request_duration_seconds_max", "gauge", "Mayor tiempo de atencion de cada ruta.");
+        for (Route route : routes.values()) {
+            out.append("http_request_duration_seconds_max{").append(labels(route)).append("} ")
+                    .append(seconds(route.latency.max())).append('\n');
+        }
+        header(out, "http_request_errors_total", "counter", "Excepciones lanzadas por el manejador de cada ruta.");
+        for (Route route : routes.values()) {
+            out.append("http_request_errors_total{").append(labels(route)).append("} ").append(route.errors.sum()).append('\n');
+        }
+    }
+
+    static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(separator).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.percentile(quantile))).append('\n');
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        out.append(name).append("_sum").append(suffix).append(seconds(histogram.sum())).append('\n');
+        out.append(name).append("_count").append(suffix).append(histogram.count()).append('\n');
+    }
+
+    private static String labels(Route route) {
+        return "method=\"" + route.method + "\",route=\"" + route.template + "\"";
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
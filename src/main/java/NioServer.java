@@ -0,0 +1,919 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Motor de servidor no bloqueante basado en {@link Selector}.
+ * Unos pocos hilos de bucle de eventos (por defecto uno por núcleo) atienden todas las conexiones:
+ * leen y analizan las solicitudes de forma incremental y escriben las respuestas desde colas de {@link ByteBuffer}
+ * directos reutilizados, enviando juntos con una sola escritura los que están listos.
+ * Solo las solicitudes completas se despachan al ejecutor de trabajadores, de modo que las conexiones
+ * inactivas no ocupan ningún hilo. Los servicios REST y los archivos estáticos se atienden con
+ * {@link SimpleWebServer#dispatch} sin cambios; si la respuesta de una ruta asíncrona no está lista, el trabajador
+ * vuelve al pool y la respuesta se escribe en otro trabajador al completarse.
+ *
+ * <p>Una respuesta que queda abierta ({@link PushSink}, por ejemplo un flujo de eventos) deja la conexión dedicada
+ * a su fuente, que se consulta desde el bucle cuando avisa o en cada barrido, sin ocupar ningún trabajador.</p>
+ *
+ * <p>Las conexiones pasan por un {@link ConnectionLimiter} al aceptarse, y una solicitud que empezó a llegar y no
+ * se completa en {@code requestTimeoutMs} se responde con 408 en el barrido de conexiones inactivas.</p>
+ */
+public class NioServer implements Closeable {
+
+    // Bytes encolados por conexion a partir de los cuales el trabajador espera a que el socket drene
+    private static final int HIGH_WATERMARK = 256 * 1024;
+    private static final int LOW_WATERMARK = 64 * 1024;
+    // Trozos de un cuerpo en streaming que se aceptan en cola antes de dejar de leer el socket
+    private static final int MAX_BODY_CHUNKS = 8;
+    private static final ByteBuffer END_OF_BODY = ByteBuffer.allocate(0);
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    // Bloques directos en que se acumulan las respuestas, reutilizados entre conexiones
+    private static final DirectBufferPool BUFFERS = new DirectBufferPool(16 * 1024, 1024);
+    // Buffers consecutivos de la cola que se envian en una sola escritura
+    private static final int MAX_GATHER = 64;
+    private static final byte[] REQUEST_TIMEOUT =
+            new HttpRequestParser.BadRequestException(408, "Request Timeout", "Solicitud incompleta").toResponse();
+
+    private final SimpleWebServer server;
+    private final int port;
+    private final ExecutorService workers;
+    // Escribe las respuestas asincronas; si el pool ya no acepta tareas (al detenerse), en el hilo que completa
+    private final Executor writers;
+    private final int keepAliveTimeoutMs;
+    private final int maxRequestsPerConnection;
+    private final int requestTimeoutMs;
+    private final ConnectionLimiter connections;
+    private final Metrics metrics;
+    private final EventLoop[] loops;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+    private int nextLoop;
+
+    /**
+     * Crea el motor NIO.
+     *
+     * @param server El servidor que analiza y despacha las solicitudes.
+     * @param port El puerto en el que se escucha.
+     * @param eventLoops Número de hilos de bucle de eventos.
+     * @param workers El ejecutor en el que se despachan las solicitudes completas.
+     * @param keepAliveTimeoutMs Milisegundos de inactividad antes de cerrar una conexión.
+     * @param maxRequestsPerConnection Solicitudes máximas por conexión.
+     * @param requestTimeoutMs Milisegundos para recibir una solicitud completa desde su primer byte.
+     * @param connections El control de admisión de conexiones.
+     * @param metrics Las métricas del servidor.
+     */
+    NioServer(SimpleWebServer server, int port, int eventLoops, ExecutorService workers, int keepAliveTimeoutMs, int maxRequestsPerConnection,
+              int requestTimeoutMs, ConnectionLimiter connections, Metrics metrics) {
+        this.server = server;
+        this.port = port;
+        this.workers = workers;
+        this.writers = task -> {
+            try {
+                workers.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
+        this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.connections = connections;
+        this.metrics = metrics;
+        this.loops = new EventLoop[Math.max(1, eventLoops)];
+    }
+
+    /**
+     * Abre el canal de escucha y arranca los hilos de bucle de eventos.
+     * El primer bucle también acepta las conexiones nuevas y las reparte entre todos los bucles.
+     *
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * @return El puerto en el que se escucha, útil cuando se pidió el puerto 0.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Espera a que terminen los hilos de bucle de eventos.
+     *
+     * @throws InterruptedException Si el hilo que espera es interrumpido.
+     */
+    public void join() throws InterruptedException {
+        for (EventLoop loop : loops) {
+            loop.thread.join();
+        }
+    }
+
+    /**
+     * Deja de aceptar conexiones nuevas; las abiertas siguen atendiéndose.
+     *
+     * @throws IOException Si ocurre un error al cerrar el canal de escucha.
+     */
+    public void stopAccepting() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * Deja de aceptar conexiones y detiene los bucles de eventos, cerrando las conexiones abiertas.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        stopAccepting();
+        for (EventLoop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Hilo que atiende un subconjunto de las conexiones con su propio {@link Selector}.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Buffer de lectura compartido por todas las conexiones del bucle
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-loop-" + index);
+        }
+
+        /**
+         * Ejecuta una tarea en el hilo del bucle.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(1000);
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        try {
+                            if (!key.isValid()) continue;
+                            if (key.isAcceptable()) {
+                                accept();
+                                continue;
+                            }
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isWritable()) {
+                                connection.onWritable();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                        } catch (CancelledKeyException e) {
+                            // La conexion se cerro mientras se procesaba
+                        }
+                    }
+                    closeIdleConnections();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                metrics.connectionsAccepted.increment();
+                int status = connections.tryAcquire(channel.socket().getInetAddress());
+                if (status != 0) {
+                    reject(channel, status);
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop target = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                SocketChannel accepted = channel;
+                if (target == this) {
+                    register(accepted);
+                } else {
+                    target.execute(() -> register(accepted));
+                }
+            }
+        }
+
+        // La respuesta cabe en el buffer de un socket recien aceptado, asi que basta una escritura bloqueante
+        private void reject(SocketChannel channel, int status) {
+            metrics.error(status == 429 ? Metrics.ErrorType.RATE_LIMITED : Metrics.ErrorType.REJECTED);
+            try (SocketChannel rejected = channel) {
+                rejected.write(ByteBuffer.wrap(ConnectionLimiter.rejection(status)));
+            } catch (IOException e) {
+                // El cliente ya se desconecto
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(this, channel, key));
+                metrics.connectionsActive.increment();
+            } catch (ClosedChannelException e) {
+                // El cliente cerro antes de registrarse
+                connections.release(channel.socket().getInetAddress());
+            }
+        }
+
+        private void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < 1000) return;
+            lastIdleCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof Connection) {
+                    Connection connection = (Connection) attachment;
+                    if (connection.push != null) {
+                        // Sin limite de inactividad: la fuente envia latidos
+                        connection.pull();
+                        continue;
+                    }
+                    if (connection.inFlight || connection.closeAfterWrite) continue;
+                    if (connection.requestStart != 0 && now - connection.requestStart > requestTimeoutMs) {
+                        connection.timeOut();
+                    } else if (now - connection.lastActivity > keepAliveTimeoutMs) {
+                        if (connection.requestStart != 0) {
+                            connection.timeOut();
+                        } else {
+                            connection.close();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Estado de una conexión: analizador incremental, cola de escritura y solicitud en curso.
+     * Las solicitudes en pipeline se despachan de una en una para responder en orden.
+     */
+    private final class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final InetAddress address;
+        private final HttpRequestParser parser = server.newParser();
+        // Contiene ByteBuffer o FileRegion, en el orden en que deben salir
+        private final ArrayDeque<Object> writeQueue = new ArrayDeque<>();
+        // Las solicitudes de una conexion se responden de una en una, asi que comparten el flujo
+        private final ConnectionOutputStream out = new ConnectionOutputStream(this);
+        private final Runnable writableTask = this::onWritableInterest;
+        private long pendingBytes;
+        private boolean closeAfterWrite;
+        private volatile boolean closed;
+        private volatile boolean inFlight;
+        private long lastActivity = System.currentTimeMillis();
+        // Instante en que empezo a llegar la solicitud que aun esta incompleta, 0 si no hay ninguna
+        private long requestStart;
+        private volatile LinkedBlockingQueue<ByteBuffer> bodyChunks;
+        private volatile boolean readPaused;
+        private int served;
+        // Tiempo de analisis de la solicitud en curso, sumando las llamadas a next() entre lecturas
+        private long parseNanos;
+        // Fuente de una respuesta abierta; la conexion ya no atiende solicitudes
+        private volatile PushSink.Source push;
+        private final AtomicBoolean pullScheduled = new AtomicBoolean();
+        // La fuente pidio escribir con la cola llena: se la consulta cuando la cola drene
+        private boolean pushWanted;
+
+        Connection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+            this.address = channel.socket().getInetAddress();
+        }
+
+        void onReadable() throws IOException {
+            ByteBuffer buffer = loop.readBuffer;
+            buffer.clear();
+            int n;
+            try {
+                n = channel.read(buffer);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            metrics.bytesReceived.add(n);
+            // Con una respuesta abierta solo se lee para notar el cierre; lo recibido se descarta
+            if (push != null) return;
+            lastActivity = System.currentTimeMillis();
+            buffer.flip();
+            LinkedBlockingQueue<ByteBuffer> chunks = bodyChunks;
+            if (chunks != null) {
+                // Un servicio esta leyendo el cuerpo en streaming: se le pasa una copia de lo recibido
+                ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+                copy.put(buffer).flip();
+                chunks.add(copy);
+                if (chunks.size() >= MAX_BODY_CHUNKS) {
+                    readPaused = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                return;
+            }
+            parser.feed(buffer);
+            processNext();
+        }
+
+        private void processNext() {
+            if (inFlight || closed || closeAfterWrite) return;
+            HttpRequestParser.Request request;
+            long start = System.nanoTime();
+            try {
+                request = parser.next();
+                parseNanos += System.nanoTime() - start;
+            } catch (HttpRequestParser.BadRequestException e) {
+                metrics.error(Metrics.ErrorType.BAD_REQUEST);
+                enqueue(ByteBuffer.wrap(e.toResponse()));
+                closeAfterWrite = true;
+                flushInterest();
+                return;
+            }
+            if (request == null) {
+                if (parser.takeContinue()) {
+                    enqueue(ByteBuffer.wrap(CONTINUE));
+                    flushInterest();
+                }
+                if (requestStart == 0 && parser.isPartial()) {
+                    requestStart = System.currentTimeMillis();
+                }
+                return;
+            }
+
+            metrics.parseLatency.record(parseNanos);
+            parseNanos = 0;
+            requestStart = 0;
+            inFlight = true;
+            if (request.streaming) {
+                // El trabajador consume el cuerpo mientras el bucle sigue leyendo, con un limite de trozos en cola
+                LinkedBlockingQueue<ByteBuffer> chunks = new LinkedBlockingQueue<>();
+                bodyChunks = chunks;
+                request.bodyStream = parser.openBody(p -> takeChunk(chunks, p));
+                if (parser.takeContinue()) {
+                    enqueue(ByteBuffer.wrap(CONTINUE));
+                    flushInterest();
+                }
+            } else {
+                // No se lee mas de esta conexion hasta terminar la solicitud actual
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            try {
+                workers.execute(() -> handle(request));
+            } catch (RejectedExecutionException e) {
+                metrics.error(Metrics.ErrorType.REJECTED);
+                inFlight = false;
+                bodyChunks = null;
+                enqueue(ByteBuffer.wrap(("HTTP/1.1 503 Service Unavailable\r\n" +
+                        "Content-Length: 0\r\n" +
+                        "Connection: close\r\n" +
+                        "\r\n").getBytes()));
+                closeAfterWrite = true;
+                flushInterest();
+            }
+        }
+
+        // Se ejecuta en un hilo trabajador
+        private void handle(HttpRequestParser.Request request) {
+            CompletionStage<Void> written;
+            try {
+                written = server.dispatch(request, out, channel.socket(), writers);
+            } catch (IOException | RuntimeException e) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                written = failed;
+            }
+            // Ya terminada, o en el trabajador que escribio la respuesta asincrona
+            written.whenComplete((v, error) -> {
+                boolean keepAlive = request.keepAlive;
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    if (error == null) error = e;
+                }
+                if (error != null) {
+                    metrics.error(Metrics.ErrorType.CONNECTION);
+                    if (!closed) error.printStackTrace();
+                    keepAlive = false;
+                }
+                boolean reuse = keepAlive;
+                loop.execute(() -> requestDone(reuse));
+            });
+        }
+
+        // Se ejecuta en un hilo trabajador mientras un servicio lee un cuerpo en streaming
+        private int takeChunk(LinkedBlockingQueue<ByteBuffer> chunks, HttpRequestParser target) throws IOException {
+            ByteBuffer chunk;
+            try {
+                chunk = chunks.poll(keepAliveTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (chunk == null) throw new SocketTimeoutException("El cliente dejo de enviar el cuerpo");
+            if (chunk == END_OF_BODY) {
+                chunks.add(END_OF_BODY);
+                return -1;
+            }
+            if (readPaused && chunks.size() < MAX_BODY_CHUNKS / 2) {
+                loop.execute(this::resumeReads);
+            }
+            int n = chunk.remaining();
+            target.feed(chunk);
+            return n;
+        }
+
+        private void resumeReads() {
+            if (!readPaused || closed || bodyChunks == null) return;
+            readPaused = false;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        private void requestDone(boolean keepAlive) {
+            inFlight = false;
+            LinkedBlockingQueue<ByteBuffer> chunks = bodyChunks;
+            if (chunks != null) {
+                bodyChunks = null;
+                readPaused = false;
+                if (parser.isStreaming()) {
+                    keepAlive = false; // El servicio no leyo todo el cuerpo
+                } else {
+                    // Lo que quedo en cola pertenece a la siguiente solicitud en pipeline
+                    for (ByteBuffer chunk; (chunk = chunks.poll()) != null; ) {
+                        if (chunk == END_OF_BODY) {
+                            keepAlive = false;
+                            break;
+                        }
+                        parser.feed(chunk);
+                    }
+                }
+            }
+            served++;
+            lastActivity = System.currentTimeMillis();
+            if (closed) return;
+            if (push != null) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                return;
+            }
+            if (!keepAlive || served >= maxRequestsPerConnection) {
+                closeAfterWrite = true;
+                flushInterest();
+                return;
+            }
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            processNext();
+        }
+
+        /**
+         * Dedica la conexión a una respuesta abierta. Se ejecuta en el bucle antes de {@link #requestDone}.
+         */
+        private void beginPush(PushSink.Source source) {
+            if (closed) {
+                source.closed();
+                return;
+            }
+            push = source;
+        }
+
+        /**
+         * Pide una llamada a la fuente de la respuesta abierta. Puede invocarse desde cualquier hilo; varios avisos
+         * seguidos se atienden con una sola llamada.
+         */
+        void requestPull() {
+            if (pullScheduled.compareAndSet(false, true)) {
+                loop.execute(this::pull);
+            }
+        }
+
+        private void pull() {
+            pullScheduled.set(false);
+            PushSink.Source source = push;
+            if (source == null || closed || closeAfterWrite) return;
+            synchronized (writeQueue) {
+                if (pendingBytes > LOW_WATERMARK) {
+                    pushWanted = true;
+                    return;
+                }
+            }
+            PushBuffer out = new PushBuffer();
+            boolean open;
+            try {
+                open = source.pull(out);
+            } catch (IOException | RuntimeException e) {
+                open = false;
+            }
+            if (out.size() > 0) {
+                enqueue(out.toByteBuffer());
+            }
+            if (!open) {
+                closeAfterWrite = true;
+            }
+            flushInterest();
+        }
+
+        /**
+         * Encola bytes para escribir. Puede invocarse desde cualquier hilo; los buffers de {@link #BUFFERS} vuelven
+         * a la reserva cuando se terminan de enviar.
+         *
+         * @return {@code true} si la cola supera el límite alto.
+         */
+        boolean enqueue(ByteBuffer data) {
+            synchronized (writeQueue) {
+                if (closed) {
+                    BUFFERS.release(data);
+                    return false;
+                }
+                writeQueue.add(data);
+                pendingBytes += data.remaining();
+                return pendingBytes > HIGH_WATERMARK;
+            }
+        }
+
+        /**
+         * Encola una región de archivo que se enviará con {@link FileChannel#transferTo}.
+         * No cuenta para el límite de memoria porque su contenido no pasa por el heap.
+         */
+        void enqueue(FileRegion region) {
+            synchronized (writeQueue) {
+                if (closed) {
+                    region.close();
+                    return;
+                }
+                writeQueue.add(region);
+            }
+        }
+
+        /**
+         * Bloquea al trabajador mientras la cola supere el límite alto, aplicando contrapresión del socket.
+         */
+        void awaitDrain() throws IOException {
+            synchronized (writeQueue) {
+                while (pendingBytes > HIGH_WATERMARK && !closed) {
+                    try {
+                        writeQueue.wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrumpido esperando al socket", e);
+                    }
+                }
+            }
+            if (closed) throw new ClosedChannelException();
+        }
+
+        /**
+         * Pide al bucle que empiece a escribir lo encolado.
+         */
+        void flushInterest() {
+            if (Thread.currentThread() == loop.thread) {
+                onWritableInterest();
+            } else {
+                loop.execute(writableTask);
+            }
+        }
+
+        private void onWritableInterest() {
+            if (closed) return;
+            try {
+                onWritable();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void onWritable() throws IOException {
+            synchronized (writeQueue) {
+                Object head;
+                while ((head = writeQueue.peek()) != null) {
+                    try {
+                        if (head instanceof FileRegion) {
+                            FileRegion region = (FileRegion) head;
+                            if (!region.transferTo(channel, metrics)) break;
+                            region.close();
+                            writeQueue.poll();
+                        } else if (!writeBuffers()) {
+                            break;
+                        }
+                    } catch (IOException e) {
+                        close();
+                        return;
+                    }
+                }
+                if (pendingBytes <= LOW_WATERMARK) {
+                    writeQueue.notifyAll();
+                    if (pushWanted) {
+                        pushWanted = false;
+                        requestPull();
+                    }
+                }
+                if (!writeQueue.isEmpty()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closeAfterWrite && !inFlight) {
+                close();
+            }
+        }
+
+        /**
+         * Envía con una sola escritura (writev) los buffers consecutivos del frente de la cola, por ejemplo la
+         * cabecera y el cuerpo de una respuesta, o varias respuestas en pipeline. Se ejecuta con la cola tomada.
+         *
+         * @return {@code true} si se enviaron todos.
+         */
+        private boolean writeBuffers() throws IOException {
+            ByteBuffer[] gather = loop.gather;
+            int count = 0;
+            while (count < gather.length && writeQueue.peek() instanceof ByteBuffer) {
+                gather[count++] = (ByteBuffer) writeQueue.poll();
+            }
+            long n = channel.write(gather, 0, count);
+            pendingBytes -= n;
+            metrics.bytesSent.add(n);
+            int sent = 0;
+            while (sent < count && !gather[sent].hasRemaining()) {
+                BUFFERS.release(gather[sent++]);
+            }
+            // Lo que el socket no acepto vuelve al frente de la cola en el mismo orden
+            for (int i = count - 1; i >= sent; i--) {
+                writeQueue.addFirst(gather[i]);
+            }
+            Arrays.fill(gather, 0, count, null);
+            return sent == count;
+        }
+
+        /**
+         * Responde 408 a una solicitud que no terminó de llegar a tiempo y cierra la conexión.
+         */
+        void timeOut() {
+            metrics.error(Metrics.ErrorType.TIMEOUT);
+            requestStart = 0;
+            enqueue(ByteBuffer.wrap(REQUEST_TIMEOUT));
+            closeAfterWrite = true;
+            flushInterest();
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            metrics.connectionsActive.decrement();
+            connections.release(address);
+            LinkedBlockingQueue<ByteBuffer> chunks = bodyChunks;
+            if (chunks != null) {
+                chunks.add(END_OF_BODY);
+            }
+            PushSink.Source source = push;
+            if (source != null) {
+                source.closed();
+            }
+            synchronized (writeQueue) {
+                for (Object pending : writeQueue) {
+                    if (pending instanceof FileRegion) {
+                        ((FileRegion) pending).close();
+                    } else {
+                        BUFFERS.release((ByteBuffer) pending);
+                    }
+                }
+                writeQueue.clear();
+                writeQueue.notifyAll();
+            }
+            closeQuietly(key);
+        }
+    }
+
+    /**
+     * Región de un archivo pendiente de enviarse al socket.
+     */
+    private static final class FileRegion {
+        private final FileChannel file;
+        private long position;
+        private final long end;
+
+        FileRegion(FileChannel file, long position, long count) {
+            this.file = file;
+            this.position = position;
+            this.end = position + count;
+        }
+
+        /**
+         * Envía lo que el socket acepte sin bloquear.
+         *
+         * @return {@code true} si la región se envió completa.
+         */
+        boolean transferTo(SocketChannel channel, Metrics metrics) throws IOException {
+            while (position < end) {
+                long n = file.transferTo(position, end - position, channel);
+                if (n == 0) {
+                    if (position >= file.size()) throw new IOException("El archivo se trunco durante el envio");
+                    return false;
+                }
+                position += n;
+                metrics.bytesSent.add(n);
+            }
+            return true;
+        }
+
+        void close() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Solo se estaba leyendo
+            }
+        }
+    }
+
+    /**
+     * Flujo de salida que acumula la respuesta en bloques directos de {@link #BUFFERS} y los encola en la conexión.
+     * Los bloques llenos se encolan sin despertar al bucle, que los envía juntos al vaciar el flujo, así que una
+     * respuesta (cabecera y cuerpo) sale en una sola escritura; solo si la cola supera el límite alto se empieza a
+     * enviar antes y la escritura espera a que el socket drene. Las regiones de archivo se encolan sin copiarse y
+     * el bucle las envía con transferTo.
+     */
+    private static final class ConnectionOutputStream extends OutputStream implements FileRegionSink, PushSink {
+        private final Connection connection;
+        private ByteBuffer chunk;
+        // Hay bloques encolados que el bucle todavia no sabe que debe enviar
+        private boolean queued;
+
+        ConnectionOutputStream(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (connection.closed) throw new ClosedChannelException();
+            if (chunk == null) {
+                chunk = BUFFERS.acquire();
+            }
+            chunk.put((byte) b);
+            if (!chunk.hasRemaining()) {
+                handOff();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (connection.closed) throw new ClosedChannelException();
+            while (len > 0) {
+                if (chunk == null) {
+                    chunk = BUFFERS.acquire();
+                }
+                int n = Math.min(len, chunk.remaining());
+                chunk.put(b, off, n);
+                off += n;
+                len -= n;
+                if (!chunk.hasRemaining()) {
+                    handOff();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (chunk != null && chunk.position() > 0) {
+                enqueueChunk();
+            }
+            if (queued) {
+                queued = false;
+                connection.flushInterest();
+                connection.awaitDrain();
+            }
+        }
+
+        @Override
+        public void transferFrom(FileChannel file, long position, long count) throws IOException {
+            // Lo escrito antes (el encabezado) se encola primero para conservar el orden
+            if (chunk != null && chunk.position() > 0) {
+                enqueueChunk();
+            }
+            queued = false;
+            connection.enqueue(new FileRegion(file, position, count));
+            connection.flushInterest();
+            connection.awaitDrain();
+        }
+
+        private void handOff() throws IOException {
+            if (enqueueChunk()) {
+                flush();
+            }
+        }
+
+        // Devuelve true si la cola supera el limite alto
+        private boolean enqueueChunk() {
+            chunk.flip();
+            ByteBuffer data = chunk;
+            chunk = null;
+            queued = true;
+            return connection.enqueue(data);
+        }
+
+        @Override
+        public Runnable push(Source source) throws IOException {
+            flush();
+            Connection target = connection;
+            target.loop.execute(() -> target.beginPush(source));
+            return target::requestPull;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Buffer de lo que escribe una fuente abierta en una llamada; se encola sin copiarlo.
+     */
+    private static final class PushBuffer extends ByteArrayOutputStream {
+        PushBuffer() {
+            super(1024);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ya estaba cerrado
+        }
+    }
+}
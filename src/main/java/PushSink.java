@@ -0,0 +1,42 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destino de una respuesta que puede quedar abierta sin ocupar un hilo, como un flujo de eventos. La conexión
+ * llama a la {@link Source} cuando puede escribir sin bloquear; la fuente pide esas llamadas con la tarea que
+ * devuelve {@link #push}.
+ */
+public interface PushSink {
+
+    /**
+     * Dedica la conexión a {@code source} hasta que se cierre; lo escrito antes en este flujo (la cabecera) sale
+     * primero. Después de esta llamada no se atienden más solicitudes por la conexión.
+     *
+     * @param source La fuente de los datos.
+     * @return Una tarea, segura desde cualquier hilo, que pide a la conexión una llamada a {@link Source#pull}; o
+     *         {@code null} si este destino no admite respuestas abiertas y hay que escribir bloqueando.
+     * @throws IOException Si no se puede escribir lo pendiente.
+     */
+    Runnable push(Source source) throws IOException;
+
+    /**
+     * Datos que se escriben en una conexión abierta a medida que están disponibles.
+     */
+    interface Source {
+
+        /**
+         * Escribe lo que haya pendiente. Se llama en el hilo de la conexión, a pedido y también periódicamente,
+         * lo que permite enviar latidos; el flujo no bloquea.
+         *
+         * @param out El flujo de la conexión.
+         * @return {@code false} para cerrar la conexión después de enviar lo escrito.
+         * @throws IOException Si ocurre un error al escribir.
+         */
+        boolean pull(OutputStream out) throws IOException;
+
+        /**
+         * La conexión se cerró; no habrá más llamadas a {@link #pull}.
+         */
+        void closed();
+    }
+}
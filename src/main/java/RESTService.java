@@ -7,6 +7,7 @@ import java.net.Socket;
 /**
  * Esta interfaz define los métodos necesarios para manejar solicitudes HTTP RESTful en un servicio web.
  * Cada método corresponde a un tipo de solicitud HTTP (GET, POST, PUT, DELETE).
+ * Es la interfaz bloqueante original; se registra en el {@link Router} con {@link AsyncRESTService#adapt}.
  */
 public interface RESTService {
     void handleGet(String[] requestLine, BufferedReader in, OutputStream out, Socket clientSocket) throws IOException;
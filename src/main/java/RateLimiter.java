@@ -0,0 +1,98 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limitador de tasa con un token bucket por clave (por ejemplo, la dirección del cliente). Cada cubeta es un
+ * solo {@link AtomicLong} con el instante teórico en que quedaría llena (algoritmo GCRA, equivalente a un token
+ * bucket): consumir un token es una comparación y un {@code compareAndSet}, sin bloqueos ni relojes por cubeta.
+ *
+ * <p>Las cubetas llenas e inactivas se eliminan en un barrido periódico que hace, como mucho, un hilo a la vez;
+ * quitar una cubeta llena no cambia el límite, porque se vuelve a crear igual en la siguiente solicitud (en el
+ * peor caso no se descuenta una solicitud que coincide con el barrido).</p>
+ */
+final class RateLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final long interval;
+    private final long tolerance;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param perSecond Tokens que se reponen por segundo.
+     * @param burst Capacidad de la cubeta: solicitudes que se admiten seguidas tras un periodo inactivo.
+     */
+    RateLimiter(double perSecond, int burst) {
+        if (perSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Tasa o capacidad invalida: " + perSecond + "/s, " + burst);
+        }
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.tolerance = interval * (burst - 1);
+        this.nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+    }
+
+    /**
+     * Crea un limitador a partir de una tasa configurada, con capacidad para un segundo de solicitudes.
+     *
+     * @param perSecond Solicitudes por segundo; 0 o menos lo desactiva.
+     * @return El limitador, o {@code null} si está desactivado.
+     */
+    static RateLimiter perSecond(int perSecond) {
+        return perSecond > 0 ? new RateLimiter(perSecond, perSecond) : null;
+    }
+
+    /**
+     * Consume un token de la cubeta de la clave.
+     *
+     * @param key La clave.
+     * @return 0 si hay token; si no, los nanosegundos que faltan para el siguiente.
+     */
+    long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        sweep(now);
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long full = bucket.get();
+            long start = full - now > 0 ? full : now;
+            if (start - now > tolerance) {
+                return start - now - tolerance;
+            }
+            if (bucket.compareAndSet(full, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return Número de claves con cubeta en memoria.
+     */
+    int size() {
+        return buckets.size();
+    }
+
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) return;
+        for (Iterator<AtomicLong> it = buckets.values().iterator(); it.hasNext(); ) {
+            // Llena: el instante de recarga completa ya paso
+            if (now - it.next().get() >= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @param nanos Espera en nanosegundos.
+     * @return La espera en segundos enteros, al menos 1, para el encabezado {@code Retry-After}.
+     */
+    static long retryAfterSeconds(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
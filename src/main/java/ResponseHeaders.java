@@ -0,0 +1,128 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cabeceras de las respuestas JSON armadas a partir de fragmentos codificados una sola vez: la línea de estado
+ * de cada código conocido y los encabezados comunes se copian a un único arreglo, sin concatenar cadenas ni
+ * codificarlas en cada respuesta. Las respuestas de error sin encabezados adicionales están completas de antemano.
+ */
+final class ResponseHeaders {
+
+    private static final int FIRST_STATUS = 100;
+    private static final String[] REASONS = new String[500];
+    private static final byte[][] STATUS_LINES = new byte[500][];
+    private static final byte[][] ERROR_BODIES = new byte[500][];
+    private static final byte[][] ERROR_HEADERS = new byte[500][];
+    private static final byte[] JSON_CONTENT = ascii("Content-Type: application/json; charset=utf-8\r\nContent-Length: ");
+
+    static {
+        reason(200, "OK");
+        reason(201, "Created");
+        reason(204, "No Content");
+        reason(206, "Partial Content");
+        reason(304, "Not Modified");
+        reason(400, "Bad Request");
+        reason(404, "Not Found");
+        reason(405, "Method Not Allowed");
+        reason(408, "Request Timeout");
+        reason(413, "Payload Too Large");
+        reason(416, "Range Not Satisfiable");
+        reason(429, "Too Many Requests");
+        reason(431, "Request Header Fields Too Large");
+        reason(500, "Internal Server Error");
+        reason(503, "Service Unavailable");
+    }
+
+    private ResponseHeaders() {
+    }
+
+    private static void reason(int status, String reason) {
+        int i = status - FIRST_STATUS;
+        REASONS[i] = reason;
+        STATUS_LINES[i] = ascii("HTTP/1.1 " + status + " " + reason + "\r\n");
+        ERROR_BODIES[i] = ascii("{\"error\": \"" + reason + "\"}");
+        ERROR_HEADERS[i] = json(status, reason, ERROR_BODIES[i].length, "");
+    }
+
+    /**
+     * @param status Un código de estado.
+     * @return Su texto, o {@code null} si no es uno de los que usa el servidor.
+     */
+    static String reason(int status) {
+        return known(status) ? REASONS[status - FIRST_STATUS] : null;
+    }
+
+    /**
+     * Cabecera de una respuesta con cuerpo JSON.
+     *
+     * @param status El código de estado.
+     * @param reason El texto del estado.
+     * @param contentLength Bytes del cuerpo.
+     * @param extraHeaders Encabezados adicionales en ASCII, cada uno terminado en CRLF.
+     * @return La cabecera completa, hasta la línea vacía.
+     */
+    static byte[] json(int status, String reason, int contentLength, String extraHeaders) {
+        byte[] line = canonical(status, reason) ? STATUS_LINES[status - FIRST_STATUS]
+                : ascii("HTTP/1.1 " + status + " " + reason + "\r\n");
+        int digits = digits(contentLength);
+        byte[] header = new byte[line.length + JSON_CONTENT.length + digits + extraHeaders.length() + 4];
+        System.arraycopy(line, 0, header, 0, line.length);
+        int p = line.length;
+        System.arraycopy(JSON_CONTENT, 0, header, p, JSON_CONTENT.length);
+        p += JSON_CONTENT.length + digits;
+        for (int n = contentLength, i = p - 1; i >= p - digits; n /= 10, i--) {
+            header[i] = (byte) ('0' + n % 10);
+        }
+        header[p++] = '\r';
+        header[p++] = '\n';
+        for (int i = 0; i < extraHeaders.length(); i++) {
+            header[p++] = (byte) extraHeaders.charAt(i);
+        }
+        header[p++] = '\r';
+        header[p] = '\n';
+        return header;
+    }
+
+    /**
+     * @param status El código de estado.
+     * @param reason El texto del estado.
+     * @return El cuerpo {@code {"error": reason}}; compartido, no debe modificarse.
+     */
+    static byte[] errorBody(int status, String reason) {
+        return canonical(status, reason) ? ERROR_BODIES[status - FIRST_STATUS]
+                : ascii("{\"error\": \"" + reason + "\"}");
+    }
+
+    /**
+     * @param status El código de estado.
+     * @param reason El texto del estado.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @return La cabecera de {@link #errorBody}; compartida, no debe modificarse.
+     */
+    static byte[] errorHeader(int status, String reason, String extraHeaders) {
+        if (extraHeaders.isEmpty() && canonical(status, reason)) {
+            return ERROR_HEADERS[status - FIRST_STATUS];
+        }
+        return json(status, reason, errorBody(status, reason).length, extraHeaders);
+    }
+
+    private static boolean known(int status) {
+        return status >= FIRST_STATUS && status < FIRST_STATUS + REASONS.length && REASONS[status - FIRST_STATUS] != null;
+    }
+
+    private static boolean canonical(int status, String reason) {
+        return known(status) && REASONS[status - FIRST_STATUS].equals(reason);
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Envoltorio del flujo de una respuesta que cuenta los bytes enviados y toma el código de estado de la línea
+ * de estado, para el {@link AccessLog}. Las regiones de archivo y las respuestas abiertas se delegan si el flujo
+ * original las admite; de una respuesta abierta solo se cuenta lo escrito antes de {@link #push}.
+ */
+final class ResponseRecorder extends FilterOutputStream implements FileRegionSink, PushSink {
+
+    // "HTTP/1.1 200": el codigo ocupa las posiciones 9 a 11
+    private static final int STATUS_END = 12;
+
+    private long bytes;
+    private int status;
+
+    ResponseRecorder(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (bytes < STATUS_END) statusByte(bytes, b);
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = 0; bytes + i < STATUS_END && i < len; i++) {
+            statusByte(bytes + i, b[off + i]);
+        }
+        out.write(b, off, len);
+        bytes += len;
+    }
+
+    @Override
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+        if (out instanceof FileRegionSink) {
+            ((FileRegionSink) out).transferFrom(file, position, count);
+        } else {
+            try (FileChannel source = file) {
+                WritableByteChannel target = Channels.newChannel(out);
+                for (long end = position + count; position < end; ) {
+                    position += source.transferTo(position, end - position, target);
+                }
+            }
+        }
+        bytes += count;
+    }
+
+    @Override
+    public Runnable push(Source source) throws IOException {
+        return out instanceof PushSink ? ((PushSink) out).push(source) : null;
+    }
+
+    private void statusByte(long index, int b) {
+        if (index >= 9) {
+            status = status * 10 + (b - '0');
+        }
+    }
+
+    /**
+     * @return Bytes de la respuesta, con la cabecera.
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return El código de estado, o 0 si no se escribió una línea de estado completa.
+     */
+    int status() {
+        return bytes >= STATUS_END && status >= 100 && status <= 999 ? status : 0;
+    }
+}
@@ -2,20 +2,88 @@
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.Socket;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Implementación de los servicios REST para el servidor web.
- * Maneja solicitudes HTTP GET/POST/PUT/DELETE.
+ * Maneja solicitudes HTTP GET/POST/PUT/DELETE, con la interfaz bloqueante {@link RESTService} y con la asíncrona
+ * {@link AsyncRESTService}; en esta última las escrituras responden cuando el almacén confirma el cambio, sin
+ * retener el hilo mientras tanto.
  */
-public class RestServiceImpl implements RESTService {
-    private static List<String> jsonResponses = new ArrayList<>();
-    private static int currentId = 1;
+public class RestServiceImpl implements RESTService, AsyncRESTService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int BULK_BATCH_SIZE = 1000;
+    private static final int MAX_BULK_RECORD_SIZE = 64 * 1024;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final int EXPORT_CHUNK_SIZE = 16 * 1024;
+    private static final byte[] ERROR_NOT_FOUND = "{\"error\": \"Not Found\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR_BAD_REQUEST = "{\"error\": \"Bad Request\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final DinosaurioRepository DEFAULT_REPOSITORY = new InMemoryDinosaurioRepository();
+
+    private final DinosaurioRepository repository;
+    private final ChangeFeed feed;
+    private final Metrics metrics;
+    // Identifica esta instancia en las ETag de la coleccion, para que no se repitan entre reinicios
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private volatile CollectionSnapshot snapshot;
+
+    /**
+     * Crea el servicio sobre el almacén compartido por defecto.
+     */
+    public RestServiceImpl() {
+        this(DEFAULT_REPOSITORY);
+    }
+
+    /**
+     * Crea el servicio sobre un almacén específico.
+     *
+     * @param repository El almacén de dinosaurios.
+     */
+    public RestServiceImpl(DinosaurioRepository repository) {
+        this(repository, null);
+    }
+
+    /**
+     * Crea el servicio sobre un almacén específico y publica sus cambios.
+     *
+     * @param repository El almacén de dinosaurios.
+     * @param feed El flujo de cambios, o {@code null} para no publicarlos.
+     */
+    public RestServiceImpl(DinosaurioRepository repository, ChangeFeed feed) {
+        this(repository, feed, new Metrics());
+    }
+
+    /**
+     * @param repository El almacén de dinosaurios.
+     * @param feed El flujo de cambios, o {@code null} para no publicarlos.
+     * @param metrics Las métricas del servidor, donde se cuentan las respuestas comprimidas.
+     */
+    RestServiceImpl(DinosaurioRepository repository, ChangeFeed feed, Metrics metrics) {
+        this.repository = repository;
+        this.feed = feed;
+        this.metrics = metrics;
+    }
       /**
      * Maneja una solicitud HTTP GET.
+     * {@code /api/dinosaurio/{id}} devuelve un solo registro con {@link #handleGetById}. Sobre la colección se
+     * admiten los parámetros
+     * {@code limit} con {@code after} (cursor: último id recibido) u {@code offset}, y {@code name} para filtrar
+     * por prefijo del nombre. Sin parámetros se devuelve la colección completa.
      *
      * @param requestLine Una matriz de cadenas que contiene la línea de solicitud, dividida por espacios.
      * @param in BufferedReader para leer datos de la solicitud.
@@ -25,54 +93,95 @@ public class RestServiceImpl implements RESTService {
      */
     @Override
     public void handleGet(String[] requestLine, BufferedReader in, OutputStream out, Socket clientSocket) throws IOException {
-             // Combinar todas las respuestas JSON en una sola
-             String combinedJsonResponse = String.format("[%s]", String.join(",", jsonResponses));
-    
-             // Enviar la respuesta combinada
-             sendJsonResponse(out,200, combinedJsonResponse);
+        String resource = requestLine[1];
+        int queryStart = resource.indexOf('?');
+        String path = queryStart >= 0 ? resource.substring(0, queryStart) : resource;
+        Map<String, String> query = parseQuery(queryStart >= 0 ? resource.substring(queryStart + 1) : "");
+
+        // El segmento despues de /api/{nombre}/ es el id
+        int idStart = path.indexOf('/', "/api/".length()) + 1;
+        if (idStart > 0 && idStart < path.length()) {
+            Integer id = parseInt(path.substring(idStart));
+            if (id == null) {
+                sendJsonResponse(out, 400, ERROR_BAD_REQUEST);
+                return;
+            }
+            handleGetById(out, id);
+            return;
+        }
+
+        Map<String, String> headers = readHeaders(in);
+        String encoding = Compression.negotiate(headers.get("Accept-Encoding"));
+        if (query.isEmpty()) {
+            // Enviar la coleccion completa desde la instantanea ya codificada (y comprimida, si el cliente lo acepta)
+            CollectionSnapshot current = currentSnapshot();
+            CollectionSnapshot.Encoded encoded = current.encoded(encoding);
+            if (current.matches(headers.get("If-None-Match"))) {
+                out.write(encoded != null ? encoded.notModified : current.notModified);
+                return;
+            }
+            if (encoded != null) {
+                metrics.compressed(current.body.length, encoded.body.length);
+                out.write(encoded.header);
+                out.write(encoded.body);
+                return;
+            }
+            out.write(current.header);
+            out.write(current.body);
+            return;
+        }
+
+        Integer limit = parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        Integer offset = parseInt(query.getOrDefault("offset", "0"));
+        Integer after = parseInt(query.getOrDefault("after", "0"));
+        if (limit == null || offset == null || after == null || limit < 1 || offset < 0 || after < 0) {
+            sendJsonResponse(out, 400, ERROR_BAD_REQUEST);
+            return;
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+
+        List<Dinosaurio> page;
+        String next = null;
+        String name = query.get("name");
+        if (name != null) {
+            page = repository.findByNamePrefix(name, offset, limit);
+            if (page.size() == limit) {
+                next = "name=" + URLEncoder.encode(name, "UTF-8") + "&offset=" + (offset + limit) + "&limit=" + limit;
+            }
+        } else if (query.containsKey("offset")) {
+            page = repository.findRange(offset, limit);
+            if (page.size() == limit) {
+                next = "offset=" + (offset + limit) + "&limit=" + limit;
+            }
+        } else {
+            page = repository.findPage(after, limit);
+            if (page.size() == limit) {
+                next = "after=" + page.get(page.size() - 1).getId() + "&limit=" + limit;
+            }
+        }
+        String linkHeader = next != null ? "Link: <" + path + "?" + next + ">; rel=\"next\"\r\n" : "";
+        JsonWriter json = new JsonWriter(page.size() * 64 + 2).beginArray();
+        for (Dinosaurio record : page) {
+            record.writeJson(json);
+        }
+        sendCompressibleResponse(out, json.endArray(), linkHeader, encoding);
     }
 
  /**
      * Maneja una solicitud HTTP POST.
+     * Responde 201 solo con el registro creado y su ubicación en el encabezado Location,
+     * o 400 si el cuerpo no es un objeto JSON con el campo {@code Dinosaurio} de tipo texto.
      *
      * @param in Un flujo de entrada de {@link BufferedReader} para leer datos del cuerpo de la solicitud.
      * @param out Un flujo de salida {@link OutputStream} para enviar la respuesta al cliente.
      * @throws IOException Si ocurre un error al leer la solicitud o al escribir la respuesta.
      */
     public void handlePost(BufferedReader in, OutputStream out) throws IOException {
-        // Leer los encabezados adicionales
-        String line;
-        int contentLength = -1;
-        while ((line = in.readLine()) != null && !line.isEmpty()) {
-            if (line.startsWith("Content-Length:")) {
-                contentLength = Integer.parseInt(line.split(":")[1].trim());
-            }
-        }
-    
-        // Leer el cuerpo
-        StringBuilder body = new StringBuilder();
-        if (contentLength > 0) {
-            char[] buffer = new char[contentLength];
-            in.read(buffer, 0, contentLength);
-            body.append(buffer);
-        }
-    
-        // Extraer el valor del campo "dino"
-        String Dinosaurio = extractValue(body, "Dinosaurio");
-        if (Dinosaurio == null) return;
-    
-        // Crear una respuesta JSON con un ID único
-        String jsonResponse = String.format("{ \"id\": %d, \"status\": \"Dino received\", \"Dinosaurio\": \"%s\" }", currentId++, Dinosaurio);
-        jsonResponses.add(jsonResponse);
-    
-        // Combinar todas las respuestas JSON en una sola
-        String combinedJsonResponse = String.format("[%s]", String.join(",", jsonResponses));
-    
-        // Enviar la respuesta combinada
-        sendJsonResponse(out,201, combinedJsonResponse);
+        await(create(readBody(in))).writeTo(out);
     }
       /**
      * Maneja una solicitud HTTP DELETE a traves de un ID 
+     * Responde solo con el registro eliminado, o 404 si no existe.
      *
      * @param in Un flujo de entrada de {@link BufferedReader} para leer datos de la solicitud.
      * @param out Un flujo de salida {@link OutputStream} para enviar la respuesta al cliente.
@@ -81,26 +190,12 @@ public class RestServiceImpl implements RESTService {
      */
     @Override
     public void handleDelete(BufferedReader in, OutputStream out, int id) throws IOException {
-        // Implementación similar a GET o POST
-        List<String> updatedResponses = new ArrayList<>();
-        for (String response : jsonResponses) {
-            String json = response.trim();
-            
-            // Verifica si el objeto tiene el id que queremos eliminar
-            if (!json.contains("\"id\": " + id)) {
-                
-                updatedResponses.add(json);
-            }
-        }
-        // Actualiza la lista original
-        jsonResponses = updatedResponses;    
-        String combinedJsonResponse = String.format("[%s]", String.join(",", jsonResponses));
-
-        sendJsonResponse(out,200, combinedJsonResponse);   
+        await(remove(id)).writeTo(out);
     }
 
      /**
      * Maneja una solicitud HTTP PUT atraves de un ID
+     * Responde solo con el registro actualizado, 404 si no existe o 400 si el cuerpo no trae el campo {@code Dinosaurio}.
      *
      * @param in Un flujo de entrada de {@link BufferedReader} para leer datos del cuerpo de la solicitud.
      * @param out Un flujo de salida {@link OutputStream} para enviar la respuesta al cliente.
@@ -109,51 +204,401 @@ public class RestServiceImpl implements RESTService {
      */
     @Override
     public void handlePut(BufferedReader in, OutputStream out,int id) throws IOException {
-          // Leer los encabezados adicionales
-          String line;
-          int contentLength = -1;
-          while ((line = in.readLine()) != null && !line.isEmpty()) {
-              if (line.startsWith("Content-Length:")) {
-                  contentLength = Integer.parseInt(line.split(":")[1].trim());
-              }
-          }
-      
-          // Leer el cuerpo
-          StringBuilder body = new StringBuilder();
-          if (contentLength > 0) {
-              char[] buffer = new char[contentLength];
-              in.read(buffer, 0, contentLength);
-              body.append(buffer);
-          }
-      
-          // Extraer el valor del campo "dino"
-          String Dinosaurio = extractValue(body, "Dinosaurio");
-          if (Dinosaurio == null) return;
-
-
-          // Actualizar la lista de respuestas JSON
-        List<String> updatedResponses = new ArrayList<>();
-
-
-         for (String response : jsonResponses) {
-            String json = response.trim();
-        
-        // Verifica si el objeto tiene el id que queremos actualizar
-            if (json.contains("\"id\": " + id)) {
-                // Actualizar el nombre del dinosaurio
-                String updatedJson = String.format("{ \"id\": %d, \"status\": \"Dino received\", \"Dinosaurio\": \"%s\" }",id, Dinosaurio);
-                updatedResponses.add(updatedJson);
-            
-            } else {
-                updatedResponses.add(json);
+        await(update(readBody(in), id)).writeTo(out);
+    }
+
+    /**
+     * Maneja una solicitud HTTP GET a {@code /api/dinosaurio/{id}} con el id ya obtenido por el enrutador.
+     * Responde solo con el registro, o 404 si no existe.
+     *
+     * @param out Un flujo de salida {@link OutputStream} para enviar la respuesta al cliente.
+     * @param id El ID del Dinosaurio solicitado.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    public void handleGetById(OutputStream out, int id) throws IOException {
+        sendRecord(out, 200, repository.findById(id), "");
+    }
+
+    /**
+     * Las lecturas no esperan a nada: la respuesta se genera al escribirse, como en
+     * {@link #handleGet(String[], BufferedReader, OutputStream, Socket)}.
+     */
+    @Override
+    public CompletionStage<HttpResponse> handleGet(HttpRequestParser.Request request, Socket clientSocket) {
+        return CompletableFuture.completedFuture(
+                out -> handleGet(request.tokens, new HttpRequestReader(request), out, clientSocket));
+    }
+
+    @Override
+    public CompletionStage<HttpResponse> handleGetById(HttpRequestParser.Request request, Socket clientSocket, int id) {
+        return CompletableFuture.completedFuture(record(200, repository.findById(id), ""));
+    }
+
+    @Override
+    public CompletionStage<HttpResponse> handlePost(HttpRequestParser.Request request) {
+        return create(request.body());
+    }
+
+    @Override
+    public CompletionStage<HttpResponse> handlePut(HttpRequestParser.Request request, int id) {
+        return update(request.body(), id);
+    }
+
+    @Override
+    public CompletionStage<HttpResponse> handleDelete(HttpRequestParser.Request request, int id) {
+        return remove(id);
+    }
+
+    // Crea el registro con el campo "Dinosaurio" del cuerpo; 201 con Location, o 400
+    private CompletionStage<HttpResponse> create(byte[] body) {
+        String name = JsonReader.findString(body, 0, body.length, "Dinosaurio");
+        if (name == null) {
+            return CompletableFuture.completedFuture(HttpResponse.json(400, ERROR_BAD_REQUEST, ""));
+        }
+        return repository.createAsync(name).thenApply(created -> {
+            publish("created", created);
+            return record(201, created, "Location: /api/dinosaurio/" + created.getId() + "\r\n");
+        });
+    }
+
+    private CompletionStage<HttpResponse> update(byte[] body, int id) {
+        String name = JsonReader.findString(body, 0, body.length, "Dinosaurio");
+        if (name == null) {
+            return CompletableFuture.completedFuture(HttpResponse.json(400, ERROR_BAD_REQUEST, ""));
+        }
+        return repository.updateAsync(id, name).thenApply(updated -> {
+            publish("updated", updated);
+            return record(200, updated, "");
+        });
+    }
+
+    private CompletionStage<HttpResponse> remove(int id) {
+        return repository.deleteAsync(id).thenApply(deleted -> {
+            publish("deleted", deleted);
+            return record(200, deleted, "");
+        });
+    }
+
+    /**
+     * Suscribe al cliente al flujo de cambios ({@code text/event-stream}): un evento {@code created},
+     * {@code updated} o {@code deleted} por cada cambio confirmado, con el registro en {@code data}. Con el
+     * encabezado {@code Last-Event-ID} continúa después de ese evento; un evento {@code reset} indica que se
+     * perdieron cambios y hay que volver a pedir la colección. La respuesta termina al cerrar la conexión.
+     *
+     * @param request La solicitud.
+     * @return El flujo de eventos, o 404 si el servicio no publica cambios.
+     */
+    public CompletionStage<HttpResponse> handleEvents(HttpRequestParser.Request request) {
+        if (feed == null) {
+            return CompletableFuture.completedFuture(HttpResponse.json(404, ERROR_NOT_FOUND, ""));
+        }
+        request.keepAlive = false;
+        return CompletableFuture.completedFuture(feed.subscribe(request.header("Last-Event-ID")));
+    }
+
+    // Solo se publican los cambios ya confirmados por el almacen
+    private void publish(String type, Dinosaurio record) {
+        if (feed != null && record != null) {
+            feed.publish(type, record);
+        }
+    }
+
+    /**
+     * Espera una respuesta en la interfaz bloqueante; un error del almacén se lanza como {@link IOException}.
+     */
+    private static HttpResponse await(CompletionStage<HttpResponse> stage) throws IOException {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Crea registros en lote. El cuerpo es un arreglo JSON o NDJSON de objetos con el campo {@code Dinosaurio}
+     * y se lee de forma incremental: los registros se aplican al almacén en lotes de {@value #BULK_BATCH_SIZE},
+     * así que la carga nunca está completa en memoria. Responde 201 con {@code { "created": n, "ids": [...] }}.
+     * Si un registro es inválido responde 400 con los ids ya creados; el lote en curso no se aplica.
+     *
+     * @param body El cuerpo de la solicitud.
+     * @param out El flujo de salida.
+     * @throws IOException Si ocurre un error al leer la solicitud o al escribir la respuesta.
+     */
+    public void handleBulkCreate(InputStream body, OutputStream out) throws IOException {
+        JsonRecordStream records = new JsonRecordStream(body, MAX_BULK_RECORD_SIZE);
+        List<String> batch = new ArrayList<>(BULK_BATCH_SIZE);
+        JsonWriter ids = new JsonWriter().beginArray();
+        int created = 0;
+        String error = null;
+        try {
+            while (records.next()) {
+                String name = JsonReader.findString(records.buffer(), records.offset(), records.length(), "Dinosaurio");
+                if (name == null) {
+                    error = "El registro " + records.count() + " no tiene el campo Dinosaurio";
+                    break;
+                }
+                batch.add(name);
+                if (batch.size() == BULK_BATCH_SIZE) {
+                    created += applyCreate(batch, ids);
+                }
+            }
+        } catch (JsonReader.MalformedJsonException e) {
+            error = e.getMessage();
+        }
+        if (error == null) {
+            created += applyCreate(batch, ids);
+        }
+        sendBulkSummary(out, error == null ? 201 : 400, "created", created, ids, error);
+    }
+
+    /**
+     * Elimina registros en lote. El cuerpo es un arreglo JSON o NDJSON de ids (números u objetos con el campo
+     * {@code id}). Responde 200 con {@code { "deleted": n, "ids": [...] }}; los ids que no existen se ignoran.
+     *
+     * @param body El cuerpo de la solicitud.
+     * @param out El flujo de salida.
+     * @throws IOException Si ocurre un error al leer la solicitud o al escribir la respuesta.
+     */
+    public void handleBulkDelete(InputStream body, OutputStream out) throws IOException {
+        JsonRecordStream records = new JsonRecordStream(body, MAX_BULK_RECORD_SIZE);
+        int[] batch = new int[BULK_BATCH_SIZE];
+        int pending = 0;
+        JsonWriter ids = new JsonWriter().beginArray();
+        int deleted = 0;
+        String error = null;
+        try {
+            while (records.next()) {
+                JsonReader reader = new JsonReader(records.buffer(), records.offset(), records.length());
+                long id = reader.peek() == JsonReader.Token.NUMBER ? reader.nextLong() : readIdMember(reader);
+                if (id < 0 || id > Integer.MAX_VALUE) {
+                    error = "El registro " + records.count() + " no es un id valido";
+                    break;
+                }
+                batch[pending++] = (int) id;
+                if (pending == BULK_BATCH_SIZE) {
+                    deleted += applyDelete(batch, pending, ids);
+                    pending = 0;
+                }
+            }
+        } catch (JsonReader.MalformedJsonException e) {
+            error = e.getMessage();
+        }
+        if (error == null) {
+            deleted += applyDelete(batch, pending, ids);
+        }
+        sendBulkSummary(out, error == null ? 200 : 400, "deleted", deleted, ids, error);
+    }
+
+    /**
+     * Exporta la colección completa en streaming, como arreglo JSON o como NDJSON ({@code ?format=ndjson}).
+     * Los registros se leen del almacén en páginas de {@value #EXPORT_PAGE_SIZE} por id y se escriben en trozos
+     * de tamaño fijo, así que la memoria usada no depende del número de registros; si el cliente lee despacio,
+     * la escritura en el socket bloquea y la lectura del almacén espera. La exportación no es una instantánea:
+     * los registros creados o eliminados durante el envío pueden aparecer o no.
+     *
+     * @param target La ruta solicitada, con la cadena de consulta.
+     * @param acceptEncoding Valor del encabezado Accept-Encoding, o {@code null}; si admite gzip o deflate el cuerpo
+     *                       se comprime a medida que se genera.
+     * @param chunked {@code true} para usar {@code Transfer-Encoding: chunked}; si es {@code false} (clientes
+     *                HTTP/1.0) el cuerpo termina al cerrar la conexión.
+     * @param out El flujo de salida.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    public void handleExport(String target, String acceptEncoding, boolean chunked, OutputStream out) throws IOException {
+        int queryStart = target.indexOf('?');
+        String format = parseQuery(queryStart >= 0 ? target.substring(queryStart + 1) : "").getOrDefault("format", "json");
+        boolean ndjson = format.equals("ndjson");
+        if (!ndjson && !format.equals("json")) {
+            sendJsonResponse(out, 400, ERROR_BAD_REQUEST);
+            return;
+        }
+
+        String encoding = Compression.negotiate(acceptEncoding);
+        String header = "HTTP/1.1 200 OK\r\n" +
+                "Content-Type: " + (ndjson ? "application/x-ndjson" : "application/json; charset=utf-8") + "\r\n" +
+                (chunked ? "Transfer-Encoding: chunked\r\n" : "Connection: close\r\n") +
+                (encoding != null ? "Content-Encoding: " + encoding + "\r\n" : "") +
+                (Compression.ENABLED ? "Vary: Accept-Encoding\r\n" : "") +
+                "\r\n";
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+        OutputStream chunks = chunked ? new ChunkedOutputStream(out, EXPORT_CHUNK_SIZE) : out;
+        OutputStream body = encoding != null ? Compression.compressingStream(encoding, chunks, metrics) : chunks;
+
+        JsonWriter json = new JsonWriter(EXPORT_PAGE_SIZE * 64);
+        if (!ndjson) body.write('[');
+        boolean first = true;
+        int after = 0;
+        List<Dinosaurio> page;
+        do {
+            page = repository.findPage(after, EXPORT_PAGE_SIZE);
+            for (Dinosaurio record : page) {
+                json.reset();
+                record.writeJson(json);
+                if (!ndjson && !first) body.write(',');
+                json.writeTo(body);
+                if (ndjson) body.write('\n');
+                first = false;
+            }
+            if (!page.isEmpty()) after = page.get(page.size() - 1).getId();
+        } while (page.size() == EXPORT_PAGE_SIZE);
+        if (!ndjson) body.write(']');
+        // Solo se escriben el final del formato comprimido y el trozo final; la conexion sigue abierta
+        if (body != chunks) body.close();
+        if (chunked) chunks.close();
+    }
+
+    private int applyCreate(List<String> batch, JsonWriter ids) {
+        if (batch.isEmpty()) return 0;
+        List<Dinosaurio> created = repository.createAll(batch);
+        for (Dinosaurio record : created) {
+            ids.value(record.getId());
+            publish("created", record);
+        }
+        batch.clear();
+        return created.size();
+    }
+
+    private int applyDelete(int[] batch, int count, JsonWriter ids) {
+        if (count == 0) return 0;
+        List<Dinosaurio> deleted = repository.deleteAll(batch, count);
+        for (Dinosaurio record : deleted) {
+            ids.value(record.getId());
+            publish("deleted", record);
+        }
+        return deleted.size();
+    }
+
+    // Lee el campo "id" de un objeto; devuelve -1 si no esta o no es un numero
+    private static long readIdMember(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("id") && reader.peek() == JsonReader.Token.NUMBER) {
+                return reader.nextLong();
+            }
+            reader.skipValue();
+        }
+        return -1;
+    }
+
+    private void sendBulkSummary(OutputStream out, int statusCode, String countName, int count, JsonWriter ids,
+                                 String error) throws IOException {
+        JsonWriter json = new JsonWriter(ids.size() + 128).beginObject();
+        if (error != null) {
+            json.name("error").value("Bad Request").name("detail").value(error);
+        }
+        json.name(countName).value(count).name("ids");
+        byte[] idArray = ids.endArray().toByteArray();
+        json.rawValue(idArray, 0, idArray.length).endObject();
+        sendJsonResponse(out, statusCode, json, "");
+    }
+
+    /**
+     * Lee los encabezados restantes y el cuerpo de la solicitud.
+     *
+     * @param in Lector con los encabezados y el cuerpo de la solicitud.
+     * @return El cuerpo codificado en UTF-8; vacío si no hay.
+     */
+    private static byte[] readBody(BufferedReader in) throws IOException {
+        if (in instanceof HttpRequestReader) {
+            // El servidor ya leyo el cuerpo exacto en bytes
+            return ((HttpRequestReader) in).request().body();
+        }
+        String line;
+        int contentLength = -1;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                Integer parsed = parseInt(line.substring(15).trim());
+                contentLength = parsed != null ? parsed : -1;
+            }
+        }
+        if (contentLength <= 0) {
+            return new byte[0];
+        }
+        // Content-Length cuenta bytes; los caracteres leidos nunca son mas que los bytes
+        char[] buffer = new char[contentLength];
+        int read = 0;
+        int n;
+        while (read < contentLength && (n = in.read(buffer, read, contentLength - read)) > 0) {
+            read += n;
+        }
+        return new String(buffer, 0, read).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Devuelve la instantánea de la colección para la versión actual del almacén.
+     * En el caso común (sin escrituras desde la última lectura) solo hace una lectura volátil;
+     * tras una escritura, el primer lector la reconstruye y los demás esperan ese resultado en lugar de
+     * serializar la colección cada uno.
+     *
+     * @return La instantánea vigente.
+     */
+    private CollectionSnapshot currentSnapshot() {
+        CollectionSnapshot current = snapshot;
+        if (current != null && current.version == repository.version()) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            long version = repository.version();
+            if (current == null || current.version != version) {
+                current = CollectionSnapshot.build(epoch, version, repository.findAll());
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Lee los encabezados restantes de la solicitud y devuelve el valor de If-None-Match.
+     *
+     * @param in Lector con los encabezados de la solicitud.
+     * @return El valor del encabezado, o {@code null} si no está.
+     */
+    private static Map<String, String> readHeaders(BufferedReader in) throws IOException {
+        if (in instanceof HttpRequestReader) {
+            return ((HttpRequestReader) in).request().headers();
+        }
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
             }
         }
-        jsonResponses = updatedResponses;    
-        String combinedJsonResponse = String.format("[%s]", String.join(",", jsonResponses));
+        return headers;
+    }
 
-        sendJsonResponse(out,200, combinedJsonResponse);   
+    /**
+     * Interpreta los parámetros de la cadena de consulta ({@code a=1&b=2}).
+     *
+     * @param queryString La cadena de consulta sin el signo {@code ?}.
+     * @return Los parámetros decodificados.
+     */
+    private static Map<String, String> parseQuery(String queryString) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : queryString.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, "UTF-8");
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), "UTF-8") : "";
+            params.put(key, value);
+        }
+        return params;
+    }
 
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
+
      /**
      * Envía una respuesta JSON al cliente.
      *
@@ -163,51 +608,81 @@ public class RestServiceImpl implements RESTService {
      * @throws IOException Si ocurre un error al escribir la respuesta.
      */ 
 
-    private void sendJsonResponse(OutputStream out, int statusCode, String jsonResponse) throws IOException {
-        String statusText;
-        switch (statusCode) {
-            case 200:
-                statusText = "OK";
-                break;
-            case 201:
-                statusText = "Created";
-                break;
-            case 204:
-                statusText = "No Content";
-                break;
-            case 404:
-                statusText = "Not Found";
-                break;
-            case 400:
-                statusText = "Bad Request";
-                break;
-            default:
-                statusText = "OK";
-                break;
-        }
-    
-        String responseHeader = "HTTP/1.1 " + statusCode + " " + statusText + "\r\n" +
-                "Content-Type: application/json\r\n" +
-                "Content-Length: " + jsonResponse.length() + "\r\n" +
-                "\r\n";
-        out.write(responseHeader.getBytes());
-        out.write(jsonResponse.getBytes());
+    private void sendJsonResponse(OutputStream out, int statusCode, byte[] jsonResponse) throws IOException {
+        sendJsonResponse(out, statusCode, jsonResponse, "");
+    }
+
+    private void sendJsonResponse(OutputStream out, int statusCode, byte[] jsonResponse, String extraHeaders) throws IOException {
+        HttpResponse.json(statusCode, jsonResponse, extraHeaders).writeTo(out);
+    }
+
+    private void sendRecord(OutputStream out, int statusCode, Dinosaurio record, String extraHeaders) throws IOException {
+        record(statusCode, record, extraHeaders).writeTo(out);
+    }
+
+    /**
+     * Respuesta con un registro como JSON, o 404 si no existe. El registro se codifica aquí, no al escribir.
+     *
+     * @param statusCode El código de estado si el registro existe.
+     * @param record El registro, o {@code null}.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @return La respuesta.
+     */
+    private static HttpResponse record(int statusCode, Dinosaurio record, String extraHeaders) {
+        if (record == null) {
+            return HttpResponse.json(404, ERROR_NOT_FOUND, "");
+        }
+        return HttpResponse.json(statusCode, record.writeJson(new JsonWriter(128)).toByteArray(), extraHeaders);
+    }
+
+    /**
+     * Envía una respuesta JSON al cliente con encabezados adicionales.
+     *
+     * @param out El flujo de salida {@link OutputStream} para enviar la respuesta.
+     * @param statusCode El código de estado HTTP para la respuesta.
+     * @param json El cuerpo de la respuesta ya codificado.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    private void sendJsonResponse(OutputStream out, int statusCode, JsonWriter json, String extraHeaders) throws IOException {
+        sendJsonResponse(out, statusCode, json.toByteArray(), extraHeaders);
     }
 
+    /**
+     * Envía una respuesta 200 con cuerpo JSON, comprimida si el cliente la acepta y el cuerpo supera el tamaño mínimo.
+     *
+     * @param out El flujo de salida.
+     * @param json El cuerpo ya codificado.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @param encoding La codificación negociada, o {@code null}.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    private void sendCompressibleResponse(OutputStream out, JsonWriter json, String extraHeaders, String encoding) throws IOException {
+        byte[] body = json.toByteArray();
+        if (body.length < Compression.MIN_SIZE || !Compression.ENABLED) {
+            sendJsonResponse(out, 200, body, extraHeaders);
+            return;
+        }
+        extraHeaders += "Vary: Accept-Encoding\r\n";
+        if (encoding == null) {
+            sendJsonResponse(out, 200, body, extraHeaders);
+            return;
+        }
+        byte[] compressed = Compression.compress(encoding, body, 0, body.length);
+        metrics.compressed(body.length, compressed.length);
+        sendJsonResponse(out, 200, compressed, extraHeaders + "Content-Encoding: " + encoding + "\r\n");
+    }
 
       /**
      * Extrae el valor asociado con una clave específica de un objeto JSON en formato de cadena.
      *
      * @param jsonString El objeto JSON como una cadena de texto.
      * @param key La clave cuyo valor se desea extraer.
-     * @return El valor asociado con la clave, o {@code null} si la clave no se encuentra.
+     * @return El valor asociado con la clave, o {@code null} si la clave no se encuentra, no es texto
+     *         o el JSON está mal formado.
      */
     public static String extractValue(StringBuilder jsonString, String key) {
-        // Encontrar la posicion de la clave
-        int startIndex = jsonString.indexOf("\"" + key + "\":\"") + key.length() + 4;
-        int endIndex = jsonString.indexOf("\"", startIndex);
-
-        // Extraer el valor entre las comillas
-        return jsonString.substring(startIndex, endIndex);
+        byte[] json = jsonString.toString().getBytes(StandardCharsets.UTF_8);
+        return JsonReader.findString(json, 0, json.length, key);
     }
 }
@@ -0,0 +1,19 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Atiende las solicitudes que coinciden con una ruta registrada en el {@link Router}.
+ */
+@FunctionalInterface
+public interface RouteHandler {
+
+    /**
+     * @param route La ruta que coincidió, con los parámetros extraídos de la plantilla.
+     * @param request La solicitud analizada.
+     * @param out El flujo de salida para enviar la respuesta al cliente.
+     * @param clientSocket El socket del cliente.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    void handle(Router.Match route, HttpRequestParser.Request request, OutputStream out, Socket clientSocket) throws IOException;
+}
@@ -0,0 +1,478 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Enrutador de solicitudes por método y plantilla de ruta, por ejemplo {@code /api/dinosaurio/{id}}.
+ * Las plantillas se compilan al registrarlas en un árbol de segmentos: cada nodo tiene sus hijos literales en
+ * un arreglo y, como máximo, un hijo parámetro. La búsqueda recorre la ruta por índices, sin {@code split} ni
+ * subcadenas, y solo crea cadenas para los valores de los parámetros. Los literales tienen prioridad sobre los
+ * parámetros.
+ *
+ * <p>Si la ruta no coincide con ninguna plantilla se usa el manejador de respaldo (archivos estáticos);
+ * si coincide pero el método no está registrado se responde 405 con el encabezado {@code Allow}.</p>
+ *
+ * <p>Cada ruta registra en {@link Metrics} la latencia de su manejador y las excepciones que lanza; todas las
+ * solicitudes que van al respaldo se cuentan juntas bajo la ruta {@code /*}.</p>
+ *
+ * <p>Las solicitudes pueden limitarse por dirección de cliente con un {@link RateLimiter} general y otro por ruta;
+ * las que superan el límite se responden con 429 y {@code Retry-After} sin llegar al manejador.</p>
+ *
+ * <p>Las rutas registradas con {@link #async} devuelven la respuesta en una {@link CompletionStage}: si ya terminó
+ * al volver del manejador se escribe enseguida; si no, {@link #route} devuelve la etapa pendiente y quien despacha
+ * decide en qué hilo escribirla.</p>
+ */
+public class Router {
+
+    private final Node root = new Node();
+    private RouteHandler fallback;
+    private final Metrics metrics;
+    private final Metrics.Route fallbackMetrics;
+    private RateLimiter clientLimiter;
+
+    /**
+     * Resultado de {@link #route} cuando la respuesta ya se escribió.
+     */
+    static final CompletionStage<HttpResponse> WRITTEN = CompletableFuture.completedFuture(null);
+    private static final HttpResponse INTERNAL_ERROR = HttpResponse.error(500, "Internal Server Error", "");
+    private static final CompletionStage<HttpResponse> BAD_REQUEST =
+            CompletableFuture.completedFuture(HttpResponse.error(400, "Bad Request", ""));
+
+    /**
+     * Crea un enrutador con sus propias métricas.
+     */
+    public Router() {
+        this(new Metrics());
+    }
+
+    /**
+     * @param metrics Las métricas del servidor, donde se registran la latencia y los errores de cada ruta.
+     */
+    Router(Metrics metrics) {
+        this.metrics = metrics;
+        this.fallbackMetrics = metrics.route("*", "/*");
+        this.fallback = (route, request, out, clientSocket) -> {
+            metrics.error(Metrics.ErrorType.NOT_FOUND);
+            sendError(out, 404, "Not Found", "");
+        };
+    }
+
+    /**
+     * @return Las métricas en las que registra este enrutador.
+     */
+    Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Registra una ruta.
+     *
+     * @param method El método HTTP.
+     * @param template La plantilla, con segmentos literales o parámetros {@code {nombre}}.
+     * @param handler El manejador.
+     * @return Este enrutador.
+     * @throws IllegalArgumentException Si la ruta ya estaba registrada o la plantilla es inválida.
+     */
+    public Router add(String method, String template, RouteHandler handler) {
+        compile(method, template).handlers.put(method, handler);
+        return this;
+    }
+
+    /**
+     * Registra una ruta que lee el cuerpo en streaming con {@link HttpRequestParser.Request#bodyStream()}:
+     * el servidor la despacha en cuanto llega la cabecera, sin acumular el cuerpo en memoria.
+     *
+     * @param method El método HTTP.
+     * @param template La plantilla de la ruta.
+     * @param handler El manejador; debe leer el cuerpo completo para que la conexión pueda reutilizarse.
+     * @return Este enrutador.
+     */
+    public Router stream(String method, String template, RouteHandler handler) {
+        Node node = compile(method, template);
+        node.handlers.put(method, handler);
+        node.streaming.add(method);
+        return this;
+    }
+
+    /**
+     * Indica si la solicitud va a una ruta registrada con {@link #stream}. Se consulta con la cabecera ya analizada.
+     *
+     * @param head La solicitud, todavía sin cuerpo.
+     * @return {@code true} si el cuerpo debe entregarse en streaming.
+     */
+    public boolean streamsBody(HttpRequestParser.Request head) {
+        Match match = match(head.target());
+        return match != null && match.node.streaming.contains(head.method());
+    }
+
+    /**
+     * Registra una ruta asíncrona. Para quien llama al manejador como {@link RouteHandler} (por ejemplo, en
+     * pruebas) la respuesta se espera y se escribe en el mismo hilo.
+     *
+     * @param method El método HTTP.
+     * @param template La plantilla de la ruta.
+     * @param handler El manejador.
+     * @return Este enrutador.
+     * @throws IllegalArgumentException Si la ruta ya estaba registrada o la plantilla es inválida.
+     */
+    public Router async(String method, String template, AsyncRouteHandler handler) {
+        Node node = compile(method, template);
+        node.handlers.put(method, (route, request, out, clientSocket) -> {
+            HttpResponse response = handler.handle(route, request, clientSocket).toCompletableFuture().join();
+            if (response != null) response.writeTo(out);
+        });
+        node.async.put(method, handler);
+        return this;
+    }
+
+    /**
+     * Limita las solicitudes de cada cliente a todas las rutas, incluido el respaldo.
+     *
+     * @param limiter El limitador por dirección de cliente, o {@code null} para no limitar.
+     * @return Este enrutador.
+     */
+    Router rateLimit(RateLimiter limiter) {
+        this.clientLimiter = limiter;
+        return this;
+    }
+
+    /**
+     * Limita las solicitudes de cada cliente a una ruta ya registrada, además del límite general.
+     *
+     * @param method El método HTTP.
+     * @param template La plantilla de la ruta.
+     * @param limiter El limitador por dirección de cliente, o {@code null} para no limitar.
+     * @return Este enrutador.
+     * @throws IllegalArgumentException Si la ruta no está registrada.
+     */
+    Router rateLimit(String method, String template, RateLimiter limiter) {
+        Node node = node(template);
+        if (!node.handlers.containsKey(method)) {
+            throw new IllegalArgumentException("Ruta no registrada: " + method + " " + template);
+        }
+        node.limiters.put(method, limiter);
+        return this;
+    }
+
+    private Node compile(String method, String template) {
+        Node node = node(template);
+        if (node.handlers.containsKey(method)) {
+            throw new IllegalArgumentException("Ruta repetida: " + method + " " + template);
+        }
+        node.metrics.put(method, metrics.route(method, template));
+        return node;
+    }
+
+    private Node node(String template) {
+        Node node = root;
+        for (String segment : template.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (node.param == null) {
+                    node.param = new Node();
+                    node.paramName = name;
+                } else if (!node.paramName.equals(name)) {
+                    throw new IllegalArgumentException("Parametro {" + name + "} en conflicto con {" + node.paramName + "}: " + template);
+                }
+                node = node.param;
+            } else {
+                node = node.literal(segment);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Registra un recurso REST con sus rutas de colección ({@code GET}, {@code POST}) y de elemento
+     * ({@code GET}, {@code PUT}, {@code DELETE}) bajo {@code /api/{name}} y {@code /api/{name}/{id}}, todas
+     * asíncronas. Un {@link RESTService} bloqueante se registra con {@link AsyncRESTService#adapt}.
+     *
+     * @param name El nombre del recurso en la ruta.
+     * @param service El servicio que lo atiende.
+     * @return Este enrutador.
+     */
+    public Router resource(String name, AsyncRESTService service) {
+        String collection = "/api/" + name;
+        String item = collection + "/{id}";
+        async("GET", collection, (route, request, clientSocket) -> service.handleGet(request, clientSocket));
+        async("GET", item, (route, request, clientSocket) -> {
+            Integer id = route.intParam("id");
+            return id == null ? BAD_REQUEST : service.handleGetById(request, clientSocket, id);
+        });
+        async("POST", collection, (route, request, clientSocket) -> service.handlePost(request));
+        async("PUT", item, (route, request, clientSocket) -> {
+            Integer id = route.intParam("id");
+            return id == null ? BAD_REQUEST : service.handlePut(request, id);
+        });
+        async("DELETE", item, (route, request, clientSocket) -> {
+            Integer id = route.intParam("id");
+            return id == null ? BAD_REQUEST : service.handleDelete(request, id);
+        });
+        return this;
+    }
+
+    /**
+     * @param fallback Manejador para las rutas que no coinciden con ninguna plantilla.
+     * @return Este enrutador.
+     */
+    public Router fallback(RouteHandler fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    /**
+     * Busca la ruta de la solicitud y la atiende.
+     *
+     * @param request La solicitud.
+     * @param out El flujo de salida.
+     * @param clientSocket El socket del cliente.
+     * @return {@link #WRITTEN} si la respuesta ya se escribió en {@code out}, o la respuesta pendiente de una ruta
+     *         asíncrona, que nunca termina con error (los errores se convierten en 500).
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    public CompletionStage<HttpResponse> route(HttpRequestParser.Request request, OutputStream out, Socket clientSocket)
+            throws IOException {
+        String client = clientSocket != null ? clientSocket.getInetAddress().getHostAddress() : null;
+        if (!admit(clientLimiter, client, out)) return WRITTEN;
+        String target = request.target();
+        Match match = new Match(target, pathEnd(target));
+        if (!match(root, target, 0, match.pathEnd, match)) {
+            match.count = 0;
+            handle(fallback, fallbackMetrics, match, request, out, clientSocket);
+            return WRITTEN;
+        }
+        RouteHandler handler = match.node.handlers.get(request.method());
+        if (handler == null) {
+            metrics.error(Metrics.ErrorType.METHOD_NOT_ALLOWED);
+            sendError(out, 405, "Method Not Allowed", "Allow: " + String.join(", ", match.node.handlers.keySet()) + "\r\n");
+            return WRITTEN;
+        }
+        if (!admit(match.node.limiters.get(request.method()), client, out)) return WRITTEN;
+        Metrics.Route routeMetrics = match.node.metrics.get(request.method());
+        AsyncRouteHandler async = match.node.async.get(request.method());
+        if (async == null) {
+            handle(handler, routeMetrics, match, request, out, clientSocket);
+            return WRITTEN;
+        }
+        CompletableFuture<HttpResponse> pending = handleAsync(async, routeMetrics, match, request, clientSocket);
+        if (!pending.isDone()) return pending;
+        HttpResponse response = pending.join();
+        if (response != null) response.writeTo(out);
+        return WRITTEN;
+    }
+
+    /**
+     * Consume un token del cliente o responde 429. Si la solicitud traía un cuerpo en streaming sin leer,
+     * el servidor cierra la conexión después de la respuesta.
+     */
+    private boolean admit(RateLimiter limiter, String client, OutputStream out) throws IOException {
+        if (limiter == null || client == null) return true;
+        long wait = limiter.tryAcquire(client);
+        if (wait == 0) return true;
+        metrics.error(Metrics.ErrorType.RATE_LIMITED);
+        sendError(out, 429, "Too Many Requests", "Retry-After: " + RateLimiter.retryAfterSeconds(wait) + "\r\n");
+        return false;
+    }
+
+    private void handle(RouteHandler handler, Metrics.Route routeMetrics, Match match, HttpRequestParser.Request request,
+                        OutputStream out, Socket clientSocket) throws IOException {
+        long start = System.nanoTime();
+        try {
+            handler.handle(match, request, out, clientSocket);
+        } catch (IOException | RuntimeException e) {
+            routeMetrics.errors.increment();
+            metrics.error(Metrics.ErrorType.HANDLER);
+            throw e;
+        } finally {
+            routeMetrics.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Ejecuta un manejador asíncrono. La latencia se mide hasta que la respuesta está lista; un error, lanzado o
+     * en la etapa, se cuenta en las métricas y se responde con 500.
+     */
+    private CompletableFuture<HttpResponse> handleAsync(AsyncRouteHandler handler, Metrics.Route routeMetrics,
+                                                        Match match, HttpRequestParser.Request request,
+                                                        Socket clientSocket) {
+        long start = System.nanoTime();
+        CompletionStage<HttpResponse> stage;
+        try {
+            stage = handler.handle(match, request, clientSocket);
+        } catch (RuntimeException e) {
+            CompletableFuture<HttpResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            stage = failed;
+        }
+        return stage.handle((response, error) -> {
+            routeMetrics.latency.record(System.nanoTime() - start);
+            if (error == null) return response;
+            routeMetrics.errors.increment();
+            metrics.error(Metrics.ErrorType.HANDLER);
+            return INTERNAL_ERROR;
+        }).toCompletableFuture();
+    }
+
+    /**
+     * Busca la plantilla que coincide con una ruta.
+     *
+     * @param target La ruta solicitada, con o sin cadena de consulta.
+     * @return La coincidencia, o {@code null} si ninguna plantilla con manejadores coincide.
+     */
+    Match match(String target) {
+        int end = pathEnd(target);
+        Match match = new Match(target, end);
+        return match(root, target, 0, end, match) ? match : null;
+    }
+
+    private static boolean match(Node node, String path, int pos, int end, Match match) {
+        while (pos < end && path.charAt(pos) == '/') pos++;
+        if (pos == end) {
+            if (node.handlers.isEmpty()) return false;
+            match.node = node;
+            return true;
+        }
+        int segmentEnd = path.indexOf('/', pos);
+        if (segmentEnd < 0 || segmentEnd > end) segmentEnd = end;
+        int length = segmentEnd - pos;
+
+        for (int i = 0; i < node.literalCount; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == length && path.regionMatches(pos, literal, 0, length)
+                    && match(node.children[i], path, segmentEnd, end, match)) {
+                return true;
+            }
+        }
+        if (node.param != null) {
+            int mark = match.count;
+            match.push(node.paramName, pos, segmentEnd);
+            if (match(node.param, path, segmentEnd, end, match)) return true;
+            match.count = mark;
+        }
+        return false;
+    }
+
+    private static int pathEnd(String target) {
+        int query = target.indexOf('?');
+        return query >= 0 ? query : target.length();
+    }
+
+    /**
+     * Envía una respuesta de error JSON sin registro.
+     *
+     * @param out El flujo de salida.
+     * @param status El código de estado.
+     * @param reason El texto del estado.
+     * @param extraHeaders Encabezados adicionales, cada uno terminado en CRLF.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    static void sendError(OutputStream out, int status, String reason, String extraHeaders) throws IOException {
+        out.write(ResponseHeaders.errorHeader(status, reason, extraHeaders));
+        out.write(ResponseHeaders.errorBody(status, reason));
+    }
+
+    /**
+     * Resultado de una búsqueda: la ruta solicitada y las posiciones de los parámetros dentro de ella.
+     * Los valores se extraen (y decodifican) solo cuando el manejador los pide.
+     */
+    public static final class Match {
+        private final String target;
+        private final int pathEnd;
+        private Node node;
+        private String[] names = new String[4];
+        private int[] bounds = new int[8];
+        private int count;
+
+        Match(String target, int pathEnd) {
+            this.target = target;
+            this.pathEnd = pathEnd;
+        }
+
+        /**
+         * @return La ruta solicitada sin la cadena de consulta.
+         */
+        public String path() {
+            return target.substring(0, pathEnd);
+        }
+
+        /**
+         * @param name El nombre del parámetro en la plantilla.
+         * @return Su valor decodificado, o {@code null} si la plantilla no lo tiene.
+         */
+        public String param(String name) {
+            for (int i = 0; i < count; i++) {
+                if (names[i].equals(name)) {
+                    String raw = target.substring(bounds[2 * i], bounds[2 * i + 1]);
+                    if (raw.indexOf('%') < 0) return raw;
+                    try {
+                        return URLDecoder.decode(raw, "UTF-8");
+                    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                        return raw;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param name El nombre del parámetro en la plantilla.
+         * @return Su valor como entero, o {@code null} si no está o no es un entero válido.
+         */
+        public Integer intParam(String name) {
+            String value = param(name);
+            if (value == null) return null;
+            try {
+                return Integer.valueOf(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private void push(String name, int start, int end) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                bounds = Arrays.copyOf(bounds, count * 4);
+            }
+            names[count] = name;
+            bounds[2 * count] = start;
+            bounds[2 * count + 1] = end;
+            count++;
+        }
+    }
+
+    private static final class Node {
+        private String[] literals = new String[0];
+        private Node[] children = new Node[0];
+        private int literalCount;
+        private Node param;
+        private String paramName;
+        // Manejadores por metodo, en orden de registro para el encabezado Allow
+        private final Map<String, RouteHandler> handlers = new LinkedHashMap<>();
+        private final Map<String, AsyncRouteHandler> async = new HashMap<>();
+        private final Set<String> streaming = new HashSet<>();
+        private final Map<String, Metrics.Route> metrics = new HashMap<>();
+        private final Map<String, RateLimiter> limiters = new HashMap<>();
+
+        Node literal(String segment) {
+            for (int i = 0; i < literalCount; i++) {
+                if (literals[i].equals(segment)) return children[i];
+            }
+            literals = Arrays.copyOf(literals, literalCount + 1);
+            children = Arrays.copyOf(children, literalCount + 1);
+            literals[literalCount] = segment;
+            children[literalCount] = new Node();
+            return children[literalCount++];
+        }
+    }
+}
@@ -1,66 +1,648 @@
-
 import java.io.*;
-import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.file.Files;
+import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * implementa un servidor web básico que escucha en un puerto especificado y maneja solicitudes HTTP.
  *  El servidor es capaz de servir archivos estáticos  almacenados en el weebroot  y manejar solicitudes RESTful utilizando
  *  métodos HTTP (GET, POST, PUT, DELETE).
  * Utiliza un serversocket para aceptar conexiones de clientes y delega a un clienthadler para el manejo de solicitudes 
+ *
+ * <p>Cada instancia es un servidor independiente, con su propio enrutador, almacén, caché y límites, creado con
+ * {@link #builder()}. {@link #start()} abre el puerto (0 elige uno libre, consultable con {@link #port()}) y
+ * {@link #stop()} deja de aceptar conexiones, cierra las que están inactivas y espera a que terminen las
+ * solicitudes en curso, así que varias instancias pueden arrancarse y detenerse en la misma JVM, por ejemplo en
+ * pruebas. {@link #main} crea una a partir de las propiedades del sistema.</p>
  */
-public class SimpleWebServer {
+public class SimpleWebServer implements Closeable {
 
-   
-    private static final int PORT = 8080;
-    private static final String WEB_ROOT = "src/webroot";
-    private static final Map<String, RESTService> services = new HashMap<>();
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REQUEST_TIMEOUT =
+            new HttpRequestParser.BadRequestException(408, "Request Timeout", "Solicitud incompleta").toResponse();
+    private static final CompletionStage<Void> WRITTEN = CompletableFuture.completedFuture(null);
+
+    private final int requestedPort;
+    private final String engine;
+    private final String threadModel;
+    private final int poolSize;
+    private final int queueSize;
+    private final int eventLoops;
+    private final int shutdownTimeoutSeconds;
+    private final int keepAliveTimeoutMs;
+    private final int maxKeepAliveRequests;
+    private final int requestTimeoutMs;
+    private final int maxBodySize;
+
+    private final Metrics metrics = new Metrics();
+    private final Router router = new Router(metrics);
+    private final StaticFileCache staticFiles;
+    private final ConnectionLimiter connections;
+    private final DinosaurioRepository repository;
+    private final AccessLog accessLog;
+    private final ChangeFeed changes;
+    // Conexiones del motor bloqueante, para cerrar las inactivas al detener el servidor
+    private final Set<ClientHandler> handlers = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private ExecutorService executor;
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private NioServer nio;
+
+    private SimpleWebServer(Builder builder) {
+        this.requestedPort = builder.port;
+        this.engine = builder.engine;
+        this.threadModel = builder.threadModel;
+        this.poolSize = builder.poolSize;
+        this.queueSize = builder.queueSize;
+        this.eventLoops = builder.eventLoops;
+        this.shutdownTimeoutSeconds = builder.shutdownTimeoutSeconds;
+        this.keepAliveTimeoutMs = builder.keepAliveTimeoutMs;
+        this.maxKeepAliveRequests = builder.maxKeepAliveRequests;
+        this.requestTimeoutMs = builder.requestTimeoutMs;
+        this.maxBodySize = builder.maxBodySize;
+        this.staticFiles = new StaticFileCache(builder.webRoot, builder.cacheMaxBytes, builder.cacheMaxFileSize,
+                builder.cacheRevalidateMs);
+        this.connections = new ConnectionLimiter(builder.maxConnections, builder.maxConnectionsPerClient);
+        this.repository = builder.repository != null ? builder.repository : createRepository(builder.storeDir);
+        this.accessLog = builder.accessLogPath != null ? new AccessLog(builder.accessLogPath, builder.accessLogBufferSize,
+                AccessLog.Overflow.parse(builder.accessLogOverflow), builder.accessLogMaxBytes, builder.accessLogMaxFiles)
+                : null;
+        // Con el motor bloqueante cada suscriptor ocupa un hilo del pool; se deja la mayor parte para las solicitudes
+        int maxBlockingSubscribers = "nio".equalsIgnoreCase(builder.engine) ? Integer.MAX_VALUE
+                : builder.eventsMaxBlocking > 0 ? builder.eventsMaxBlocking : Math.max(1, builder.poolSize / 4);
+        this.changes = new ChangeFeed(builder.eventsBufferSize, ChangeFeed.Overflow.parse(builder.eventsOverflow),
+                maxBlockingSubscribers);
+        addServices(builder.rateLimit, builder.writeRateLimit);
+    }
+
+    /**
+     * @return Un constructor con la configuración por defecto: puerto 8080, {@code src/webroot} y almacén en memoria.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
      /**
      * Método principal que inicia el servidor web.
-     * Crea un {@link ServerSocket} para escuchar en el puerto especificado y acepta conexiones entrantes.
-     * Cada conexión es manejada en un hilo separado utilizando {@link ClientHandler}.
+     * Crea el servidor con las propiedades del sistema ({@link Builder#fromSystemProperties()}), lo arranca y
+     * espera hasta que la JVM se detiene; al apagarse se drenan las solicitudes en curso.
      *
      * @param args Los argumentos de línea de comandos (no utilizados).
      */
 
     public static void main(String[] args) {
-        addServices();
+        SimpleWebServer server = Builder.fromSystemProperties().build();
+        try {
+            server.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (server.nio != null) {
+            System.out.println("Servidor NIO escuchando en el puerto " + server.port() + " (" + server.eventLoops + " bucles de eventos)");
+        } else {
+            System.out.println("Servidor escuchando en el puerto " + server.port() + " (modelo de hilos: " + server.threadModel + ")");
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            System.out.println("Cache de archivos estaticos: " + server.staticFiles);
+            System.out.println("Compresion: " + server.metrics.compressionStats());
+            System.out.println("Servidor detenido");
+        }, "server-shutdown"));
+        try {
+            server.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Abre el puerto y empieza a aceptar conexiones en segundo plano.
+     * Con el motor {@code blocking} se usa un {@link ServerSocketChannel} en modo bloqueante y cada conexión es
+     * manejada por un {@link ClientHandler} dentro del ejecutor configurado (pool acotado o hilos virtuales);
+     * si el pool está saturado se responde 503 inmediatamente. Con el motor {@code nio} se usa {@link NioServer}.
+     *
+     * @return Este servidor.
+     * @throws IOException Si no se puede abrir el puerto.
+     * @throws IllegalStateException Si el servidor ya se inició.
+     */
+    public synchronized SimpleWebServer start() throws IOException {
+        if (executor != null) throw new IllegalStateException("El servidor ya se inicio");
+        executor = createExecutor();
+        running = true;
+        try {
+            if (accessLog != null) {
+                accessLog.start();
+            }
+            if ("nio".equalsIgnoreCase(engine)) {
+                nio = new NioServer(this, requestedPort, eventLoops, executor, keepAliveTimeoutMs, maxKeepAliveRequests,
+                        requestTimeoutMs, connections, metrics);
+                nio.start();
+                return this;
+            }
+            // Se usa un canal en modo bloqueante para que cada socket exponga su canal y permita transferTo
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(requestedPort), 1024);
+        } catch (IOException e) {
+            running = false;
+            executor.shutdownNow();
+            if (accessLog != null) {
+                accessLog.close();
+            }
+            throw e;
+        }
+        acceptor = new Thread(this::acceptLoop, "http-acceptor-" + port());
+        acceptor.start();
+        return this;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket clientSocket;
+            try {
+                clientSocket = serverChannel.accept().socket();
+                metrics.connectionsAccepted.increment();
+            } catch (ClosedChannelException e) {
+                // El canal se cerro durante el apagado
+                break;
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+            int status = connections.tryAcquire(clientSocket.getInetAddress());
+            if (status != 0) {
+                rejectConnection(clientSocket, status);
+                continue;
+            }
+            try {
+                executor.execute(new ClientHandler(clientSocket));
+            } catch (RejectedExecutionException e) {
+                connections.release(clientSocket.getInetAddress());
+                rejectConnection(clientSocket, 503);
+            }
+        }
+    }
+
+    /**
+     * @return El puerto en el que escucha el servidor, útil cuando se pidió el puerto 0.
+     * @throws IllegalStateException Si el servidor no se ha iniciado.
+     */
+    public int port() {
+        if (nio != null) return nio.port();
+        if (serverChannel == null) throw new IllegalStateException("El servidor no se ha iniciado");
+        return serverChannel.socket().getLocalPort();
+    }
 
+    /**
+     * @return El enrutador de esta instancia, para registrar rutas adicionales.
+     */
+    public Router router() {
+        return router;
+    }
 
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Servidor escuchando en el puerto " + PORT);
+    /**
+     * Espera a que el servidor se detenga.
+     *
+     * @throws InterruptedException Si el hilo que espera es interrumpido.
+     */
+    public void join() throws InterruptedException {
+        if (nio != null) {
+            nio.join();
+        } else if (acceptor != null) {
+            acceptor.join();
+        }
+        ExecutorService workers = executor;
+        if (workers != null) {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+    }
 
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                new Thread(new ClientHandler(clientSocket)).start();
+    /**
+     * Detiene el servidor: deja de aceptar conexiones, cierra las que esperan una solicitud y espera hasta
+     * {@code server.shutdownTimeout} segundos a que terminen las solicitudes en curso. Después cierra el almacén
+     * y el registro de acceso.
+     * No hace nada si el servidor no está en marcha.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            if (nio != null) {
+                nio.stopAccepting();
+            } else {
+                serverChannel.close();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
+        for (ClientHandler handler : handlers) {
+            handler.closeIfIdle();
+        }
+        // Los flujos de eventos abiertos terminan en lugar de esperar al tiempo de apagado
+        changes.close();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (nio != null) {
+            try {
+                nio.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (repository instanceof Closeable) {
+            try {
+                ((Closeable) repository).close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (accessLog != null) {
+            try {
+                accessLog.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Equivale a {@link #stop()}.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Crea el ejecutor de conexiones según el modelo de hilos configurado.
+     * El modo "virtual" requiere Java 21; en versiones anteriores se usa el pool acotado.
+     *
+     * @return El ejecutor que atenderá las conexiones.
+     */
+    private ExecutorService createExecutor() {
+        return createExecutor(threadModel, poolSize, queueSize, java.util.concurrent.Executors.class);
+    }
+
+    /**
+     * @param threadModel {@code "pool"} o {@code "virtual"}.
+     * @param poolSize Hilos del pool.
+     * @param queueSize Tareas en espera antes de rechazar con {@link RejectedExecutionException}.
+     * @param factory Clase en la que se busca {@code newVirtualThreadPerTaskExecutor} por reflexión.
+     * @return Un ejecutor de hilos virtuales, o el pool acotado si el modelo es "pool" o no están disponibles.
+     */
+    static ExecutorService createExecutor(String threadModel, int poolSize, int queueSize, Class<?> factory) {
+        if ("virtual".equalsIgnoreCase(threadModel)) {
+            try {
+                return (ExecutorService) factory.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Hilos virtuales no disponibles en esta JVM, se usa el pool acotado");
+            }
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new WorkerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        pool.prestartAllCoreThreads();
+        return pool;
+    }
+
+    /**
+     * Responde y cierra la conexión sin leer la solicitud: 503 Service Unavailable cuando el servidor o el pool
+     * no admiten más conexiones y 429 Too Many Requests cuando el cliente ya tiene demasiadas abiertas.
+     *
+     * @param clientSocket El socket del cliente rechazado.
+     * @param status 503 o 429.
+     */
+    private void rejectConnection(Socket clientSocket, int status) {
+        metrics.error(status == 429 ? Metrics.ErrorType.RATE_LIMITED : Metrics.ErrorType.REJECTED);
+        try (Socket socket = clientSocket) {
+            socket.getOutputStream().write(ConnectionLimiter.rejection(status));
+        } catch (IOException e) {
+            // El cliente ya se desconecto, no hay nada que hacer
+        }
+    }
+
+    /**
+     * Fábrica de hilos con nombre para los trabajadores del pool de conexiones.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "http-worker-" + counter.getAndIncrement());
+            thread.setDaemon(false);
+            return thread;
+        }
     }
    
      /**
-     * Añade instancias de servicios REST al mapa de servicios.(GET, POST, PUT, DELETE).
+     * Añade instancias de servicios REST al enrutador de esta instancia (GET, POST, PUT, DELETE) sobre su almacén.
+     * Cada ruta de escritura tiene su propio límite de solicitudes por cliente.
+     *
+     * @param rateLimit Solicitudes por segundo por cliente en todas las rutas, 0 sin límite.
+     * @param writeRateLimit Solicitudes por segundo por cliente en cada ruta de escritura, 0 sin límite.
      */
-    public static void addServices() {
-        RestServiceImpl services = new RestServiceImpl();
-        SimpleWebServer.services.put("GET" , services);
-        SimpleWebServer.services.put("POST" , services);
-        SimpleWebServer.services.put("PUT" , services);
-        SimpleWebServer.services.put("DELETE" , services);
+    private void addServices(int rateLimit, int writeRateLimit) {
+        RestServiceImpl services = new RestServiceImpl(repository, changes, metrics);
+        for (String name : new String[]{"dinosaurio", "dinosaurios"}) {
+            router.resource(name, services)
+                    .stream("POST", "/api/" + name + "/bulk",
+                            (route, request, out, clientSocket) -> services.handleBulkCreate(request.bodyStream(), out))
+                    .stream("DELETE", "/api/" + name + "/bulk",
+                            (route, request, out, clientSocket) -> services.handleBulkDelete(request.bodyStream(), out))
+                    .add("GET", "/api/" + name + "/export", (route, request, out, clientSocket) -> {
+                        // HTTP/1.0 no admite chunked: el cuerpo termina al cerrar la conexion
+                        boolean chunked = "HTTP/1.1".equals(request.tokens[2]);
+                        if (!chunked) request.keepAlive = false;
+                        services.handleExport(request.target(), request.header("Accept-Encoding"), chunked, out);
+                    })
+                    .async("GET", "/api/" + name + "/events", (route, request, clientSocket) -> services.handleEvents(request));
+        }
+        for (String name : new String[]{"dinosaurio", "dinosaurios"}) {
+            String collection = "/api/" + name;
+            router.rateLimit("POST", collection, RateLimiter.perSecond(writeRateLimit))
+                    .rateLimit("PUT", collection + "/{id}", RateLimiter.perSecond(writeRateLimit))
+                    .rateLimit("DELETE", collection + "/{id}", RateLimiter.perSecond(writeRateLimit))
+                    .rateLimit("POST", collection + "/bulk", RateLimiter.perSecond(writeRateLimit))
+                    .rateLimit("DELETE", collection + "/bulk", RateLimiter.perSecond(writeRateLimit));
+        }
+        router.add("GET", "/metrics", this::serveMetrics);
+        router.fallback(this::serveStatic);
+        router.rateLimit(RateLimiter.perSecond(rateLimit));
+    }
+
+    /**
+     * Responde con las métricas del servidor en el formato de texto de Prometheus, incluidas las de la caché
+     * de archivos estáticos y la compresión.
+     */
+    private void serveMetrics(Router.Match route, HttpRequestParser.Request request, OutputStream out,
+                                     Socket clientSocket) throws IOException {
+        StringBuilder text = new StringBuilder(8 * 1024);
+        metrics.render(text);
+        Metrics.gauge(text, "http_clients_connected", "Direcciones de cliente con conexiones abiertas.", connections.clients());
+        Metrics.counter(text, "static_cache_hits_total", "Archivos servidos desde la cache.", staticFiles.getHitCount());
+        Metrics.counter(text, "static_cache_misses_total", "Archivos leidos del disco.", staticFiles.getMissCount());
+        // La tasa de aciertos se deriva de los aciertos y los fallos
+        Metrics.counter(text, "static_cache_bytes_saved_total", "Bytes servidos desde la cache en lugar del disco.",
+                staticFiles.getBytesSaved());
+        Metrics.counter(text, "static_cache_not_modified_total", "Respuestas 304 enviadas a partir de la cache.",
+                staticFiles.getNotModifiedCount());
+        Metrics.gauge(text, "static_cache_bytes", "Bytes en la cache, con las variantes comprimidas.", staticFiles.getCachedBytes());
+        Metrics.counter(text, "compression_responses_total", "Respuestas enviadas comprimidas.", metrics.compressedResponses());
+        Metrics.counter(text, "compression_uncompressed_bytes_total", "Bytes originales de las respuestas comprimidas.",
+                metrics.uncompressedBytes());
+        Metrics.counter(text, "compression_compressed_bytes_total", "Bytes enviados de las respuestas comprimidas.",
+                metrics.compressedBytes());
+        Metrics.gauge(text, "events_subscribers", "Clientes suscritos al flujo de cambios.", changes.subscribers());
+        Metrics.counter(text, "events_published_total", "Cambios publicados en el flujo.", changes.published());
+        Metrics.counter(text, "events_lapped_total", "Suscriptores que se quedaron atras mas que el buffer de eventos.",
+                changes.lapped());
+        Metrics.counter(text, "events_rejected_total", "Suscripciones rechazadas por el limite del motor bloqueante.",
+                changes.rejected());
+        if (accessLog != null) {
+            Metrics.counter(text, "access_log_lines_total", "Lineas escritas en el registro de acceso.", accessLog.written());
+            Metrics.counter(text, "access_log_dropped_total", "Solicitudes no registradas por buffer lleno o error de escritura.",
+                    accessLog.dropped());
+            Metrics.counter(text, "access_log_write_errors_total", "Lotes del registro de acceso que no se pudieron escribir.",
+                    accessLog.writeErrors());
+        }
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(("HTTP/1.1 200 OK\r\n" +
+                "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n" +
+                "Content-Length: " + body.length + "\r\n" +
+                "Cache-Control: no-store\r\n" +
+                "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+    }
+
+    /**
+     * Crea el almacén de dinosaurios según la configuración. El fsync y los intervalos del almacén persistente se
+     * leen de las propiedades {@code store.*}.
+     *
+     * @param dir Directorio del almacén persistente.
+     * @return El almacén persistente, o uno en memoria si {@code dir} es nulo o vacío.
+     */
+    private static DinosaurioRepository createRepository(String dir) {
+        if (dir == null || dir.isEmpty()) {
+            return new InMemoryDinosaurioRepository();
+        }
+        try {
+            DurableDinosaurioRepository durable = new DurableDinosaurioRepository(Paths.get(dir),
+                    WriteAheadLog.FsyncPolicy.parse(System.getProperty("store.fsync", "group")),
+                    Long.getLong("store.syncIntervalMs", 1000L),
+                    Long.getLong("store.snapshotIntervalMs", 60_000L));
+            System.out.println("Almacen recuperado desde " + dir + ": " + durable.size() + " dinosaurios");
+            return durable;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el almacen en " + dir, e);
+        }
+    }
+
+    /**
+     * Entrega la solicitud al enrutador, que la pasa al servicio registrado para su ruta y método, y espera a que
+     * la respuesta esté escrita. Las rutas que no corresponden a ningún servicio se atienden como archivos estáticos.
+     *
+     * @param request La solicitud ya analizada.
+     * @param out El flujo de salida para enviar la respuesta al cliente.
+     * @param clientSocket El socket del cliente que realizó la solicitud.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    void dispatch(HttpRequestParser.Request request, OutputStream out, Socket clientSocket) throws IOException {
+        dispatch(request, out, clientSocket, null);
+    }
+
+    /**
+     * Entrega la solicitud al enrutador. Si la ruta es asíncrona y su respuesta todavía no está lista, con
+     * {@code writer} la respuesta se escribe en ese ejecutor cuando se completa y el hilo actual queda libre; sin
+     * él, el hilo actual la espera. Con el registro de acceso activo se cuentan los bytes de la respuesta y se
+     * registra la solicitud al terminar de escribirla.
+     *
+     * @param request La solicitud ya analizada.
+     * @param out El flujo de salida para enviar la respuesta al cliente.
+     * @param clientSocket El socket del cliente que realizó la solicitud.
+     * @param writer Ejecutor para escribir las respuestas que terminan después, o {@code null} para esperarlas.
+     * @return Etapa que termina cuando la respuesta está escrita, con el error de escritura si lo hubo.
+     * @throws IOException Si ocurre un error al escribir la respuesta en el hilo actual.
+     */
+    CompletionStage<Void> dispatch(HttpRequestParser.Request request, OutputStream out, Socket clientSocket,
+                                   Executor writer) throws IOException {
+        long start = System.nanoTime();
+        ResponseRecorder recorder = accessLog != null ? new ResponseRecorder(out) : null;
+        OutputStream target = recorder != null ? recorder : out;
+        CompletionStage<HttpResponse> pending = null;
+        try {
+            pending = router.route(request, target, clientSocket);
+            if (pending != Router.WRITTEN && writer == null) {
+                HttpResponse response = pending.toCompletableFuture().join();
+                if (response != null) response.writeTo(target);
+                pending = Router.WRITTEN;
+            }
+        } finally {
+            if (pending == null || pending == Router.WRITTEN) logAccess(request, clientSocket, recorder, start);
+        }
+        if (pending == Router.WRITTEN) return WRITTEN;
+        return pending.thenAcceptAsync(response -> {
+            try {
+                if (response != null) response.writeTo(target);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                logAccess(request, clientSocket, recorder, start);
+            }
+        }, writer);
+    }
+
+    private void logAccess(HttpRequestParser.Request request, Socket clientSocket, ResponseRecorder recorder, long start) {
+        if (recorder == null) return;
+        accessLog.record(clientSocket != null ? clientSocket.getInetAddress() : null, request.method(),
+                request.target(), recorder.status(), recorder.bytes(), System.nanoTime() - start);
+    }
+
+    /**
+     * @return Un analizador de solicitudes que entrega en streaming el cuerpo de las rutas que lo piden.
+     */
+    HttpRequestParser newParser() {
+        return new HttpRequestParser(maxBodySize, router::streamsBody);
+    }
+
+    /**
+     * Respaldo del enrutador: responde 404 bajo {@code /api} y sirve archivos estáticos en el resto.
+     */
+    private void serveStatic(Router.Match route, HttpRequestParser.Request request, OutputStream out,
+                                    Socket clientSocket) throws IOException {
+        if (route.path().startsWith("/api")) {
+            send404(out);
+        } else if (!"GET".equals(request.method())) {
+            Router.sendError(out, 405, "Method Not Allowed", "Allow: GET\r\n");
+        } else {
+            serveStaticFile(request.target(), request.headers(), out);
+        }
+    }
+
+     /**
+     * Sirve archivos estáticos desde el directorio raíz a través de la caché en memoria.
+     * Responde 304 Not Modified cuando el cliente ya tiene la versión actual (ETag o Last-Modified)
+     * y 206 Partial Content cuando pide un rango con el encabezado Range.
+     * Los archivos que no caben en la caché se envían con {@link FileChannel#transferTo} sin copiarlos al heap.
+     * Si el cliente acepta gzip o deflate, los archivos de texto se envían desde su variante precomprimida.
+     *
+     * @param resource El recurso solicitado (ruta del archivo).
+     * @param requestHeaders Los encabezados de la solicitud, con el nombre en minúsculas.
+     * @param out El flujo de salida para enviar la respuesta al cliente.
+     * @throws IOException Si ocurre un error al leer el archivo o al escribir la respuesta.
+     */
+
+    void serveStaticFile(String resource, Map<String, String> requestHeaders, OutputStream out) throws IOException {
+        StaticFileCache.Entry entry = staticFiles.get(resource);
+        if (entry == null) {
+            send404(out);
+            return;
+        }
+        StaticFileCache.Variant variant = entry.variant(Compression.negotiate(requestHeaders.get("accept-encoding")));
+        if (entry.isNotModified(requestHeaders.get("if-none-match"), requestHeaders.get("if-modified-since"))) {
+            staticFiles.recordNotModified();
+            out.write(variant != null ? variant.notModifiedHeader : entry.notModifiedHeader);
+            return;
+        }
+
+        ByteRange range = entry.matchesIfRange(requestHeaders.get("if-range"))
+                ? ByteRange.parse(requestHeaders.get("range"), entry.size) : null;
+        if (range == ByteRange.UNSATISFIABLE) {
+            out.write(entry.unsatisfiableHeader());
+            return;
+        }
+        if (range == null && variant != null) {
+            // Variante precomprimida al cargar el archivo; los rangos siempre se sirven sobre el original
+            metrics.compressed(entry.size, variant.body.length);
+            out.write(variant.header);
+            out.write(variant.body);
+            return;
+        }
+        long start = range != null ? range.start : 0;
+        long length = range != null ? range.length() : entry.size;
+        out.write(range != null ? entry.partialHeader(range) : entry.header);
+
+        if (entry.isCached()) {
+            out.write(entry.content, (int) start, (int) length);
+        } else {
+            sendFileRegion(entry.path, start, length, out);
+        }
+    }
+
+    /**
+     * Envía una región de un archivo. Si el destino lo permite se usa {@link FileChannel#transferTo}
+     * directamente hacia el socket; si no, se copia por bloques sin cargar el archivo completo en memoria.
+     *
+     * @param path El archivo.
+     * @param start Posición inicial.
+     * @param length Número de bytes.
+     * @param out El flujo de salida de la respuesta.
+     * @throws IOException Si ocurre un error al leer el archivo o al escribir la respuesta.
+     */
+    private static void sendFileRegion(Path path, long start, long length, OutputStream out) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        if (out instanceof FileRegionSink) {
+            ((FileRegionSink) out).transferFrom(file, start, length);
+            return;
+        }
+        try (FileChannel source = file) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                position += source.transferTo(position, end - position, target);
+            }
+        }
+    }
+    
+  /**
+     * Envía una respuesta 404 Not Found al cliente.
+     *
+     * @param out El flujo de salida para enviar la respuesta al cliente.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    void send404(OutputStream out) throws IOException {
+        metrics.error(Metrics.ErrorType.NOT_FOUND);
+        Router.sendError(out, 404, "Not Found", "");
     }
 
     /**
      * Clase interna que maneja la comunicación con un cliente en un hilo separado.
      * Procesa las solicitudes HTTP y delega el manejo de solicitudes RESTful a los servicios adecuados.
      */
-    private static class ClientHandler implements Runnable {
+    private class ClientHandler implements Runnable {
         private Socket clientSocket;
+        // Bloqueado esperando una solicitud nueva: se puede cerrar al detener el servidor sin cortar ninguna
+        private volatile boolean idle;
 
         /**
          * Inicializa el {@code ClientHandler} con el {@link Socket} del cliente.
@@ -72,104 +654,390 @@ public class SimpleWebServer {
         }
 
         /**
-         * Método principal que maneja la solicitud del cliente.
-         * Lee la solicitud HTTP, determina el método y recurso solicitado, y llama al servicio adecuado.
-         * Si el recurso no es RESTful, intenta servir un archivo estático.
+         * Método principal que maneja la conexión del cliente.
+         * Mantiene la conexión abierta (HTTP/1.1 keep-alive) y atiende en orden las solicitudes que llegan por ella,
+         * incluidas las enviadas en pipeline, hasta que el cliente pide cerrarla, se agota el tiempo de inactividad
+         * o se alcanza el máximo de solicitudes por conexión. Los bytes se leen directamente al analizador, y las
+         * respuestas solo se vacían al socket antes de bloquear esperando más datos. Una solicitud que empezó a
+         * llegar debe completarse en {@code server.requestTimeout}; si no, se responde 408 y se cierra la conexión,
+         * de modo que un cliente que envía byte a byte no retiene el hilo.
          */
         @Override
         public void run() {
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                 OutputStream out = clientSocket.getOutputStream()) {
-
-                String requestLine = in.readLine();
-                if (requestLine == null) return;
-
-                String[] tokens = requestLine.split(" ");
-                if (tokens.length < 3) return;
-
-                String method = tokens[0];
-                String requestedResource = tokens[1];
-                String[] parts = requestedResource.split("/");
-                           
-                String idString = null;
-
-                if (parts.length > 3) {
-                    idString = parts[3]; // El ID debería estar en la cuarta parte de la ruta para PUT y DELETE :D
-                }       
-
-                if (services.containsKey(method) && requestedResource.startsWith("/api")) {
-                    RESTService service = services.get(method);
-                    switch (method) {
-                        case "GET":
-                            service.handleGet(tokens, in, out, clientSocket);
-                            break;
-                        case "POST":
-                            service.handlePost( in, out);
-                            break;
-                        case "PUT":
-                            int id1 = Integer.parseInt(idString);
-
-                            service.handlePut(in, out,id1);
-                            break;
-                        case "DELETE":
-                            
-                            int id = Integer.parseInt(idString);
-                             service.handleDelete(in, out,id);
-                            break;
-                           
-                        default:
-                            send404(out);
+            HttpRequestParser parser = newParser();
+            metrics.connectionsActive.increment();
+            handlers.add(this);
+            try (Socket socket = clientSocket;
+                 InputStream in = socket.getInputStream();
+                 OutputStream out = new ChannelOutputStream(socket.getChannel(), metrics)) {
+                socket.setSoTimeout(keepAliveTimeoutMs);
+                // Cada respuesta sale en una sola escritura; Nagle solo retrasaria su ultimo segmento
+                socket.setTcpNoDelay(true);
+
+                int served = 0;
+                // Tiempo de analisis de la solicitud en curso, sumando las llamadas a next() entre lecturas
+                long parseNanos = 0;
+                // Instante limite para completar la solicitud que esta llegando, 0 si no hay ninguna a medias
+                long requestDeadline = 0;
+                while (served < maxKeepAliveRequests) {
+                    HttpRequestParser.Request request;
+                    try {
+                        long start = System.nanoTime();
+                        request = parser.next();
+                        parseNanos += System.nanoTime() - start;
+                        if (request == null) {
+                            if (parser.takeContinue()) {
+                                out.write(CONTINUE);
+                            }
+                            out.flush();
+                            if (parser.isPartial()) {
+                                long now = System.currentTimeMillis();
+                                if (requestDeadline == 0) requestDeadline = now + requestTimeoutMs;
+                                if (now >= requestDeadline) throw new SocketTimeoutException("Solicitud incompleta");
+                                socket.setSoTimeout((int) Math.min(keepAliveTimeoutMs, requestDeadline - now));
+                            }
+                            if (!parser.isPartial()) {
+                                // Entre solicitudes: se marca antes de revisar running para no perder un stop()
+                                idle = true;
+                                if (!running) break;
+                            }
+                            int n = read(parser, in);
+                            idle = false;
+                            if (n < 0) break;
+                            continue;
+                        }
+                        metrics.parseLatency.record(parseNanos);
+                        parseNanos = 0;
+                        if (requestDeadline != 0) {
+                            requestDeadline = 0;
+                            socket.setSoTimeout(keepAliveTimeoutMs);
+                        }
+                    } catch (HttpRequestParser.BadRequestException e) {
+                        metrics.error(Metrics.ErrorType.BAD_REQUEST);
+                        out.write(e.toResponse());
+                        break;
+                    } catch (SocketTimeoutException e) {
+                        // Conexion inactiva, o solicitud incompleta: esta ultima se responde con 408
+                        if (parser.isPartial()) {
+                            metrics.error(Metrics.ErrorType.TIMEOUT);
+                            out.write(REQUEST_TIMEOUT);
+                        }
+                        break;
+                    }
+
+                    if (request.streaming) {
+                        // El cuerpo se lee de la conexion a medida que el servicio lo consume
+                        request.bodyStream = parser.openBody(p -> {
+                            out.flush();
+                            return read(p, in);
+                        });
+                        if (parser.takeContinue()) {
+                            out.write(CONTINUE);
+                            out.flush();
+                        }
                     }
-                } else {
-                    serveStaticFile(requestedResource, out);
+                    dispatch(request, out, socket);
+                    served++;
+                    // Si el servicio no leyo todo el cuerpo la conexion ya no esta alineada con la siguiente solicitud
+                    if (!request.keepAlive || parser.isStreaming()) break;
                 }
             } catch (IOException e) {
+                metrics.error(Metrics.ErrorType.CONNECTION);
                 e.printStackTrace();
+            } finally {
+                metrics.connectionsActive.decrement();
+                connections.release(clientSocket.getInetAddress());
+                handlers.remove(this);
+                parser.recycle();
             }
         }
 
-         /**
-         * Sirve archivos estáticos desde el directorio raíz.
-         *
-         * @param resource El recurso solicitado (ruta del archivo).
-         * @param out El flujo de salida para enviar la respuesta al cliente.
-         * @throws IOException Si ocurre un error al leer el archivo o al escribir la respuesta.
-         */
-
-        private void serveStaticFile(String resource, OutputStream out) throws IOException {
-            Path filePath = Paths.get(WEB_ROOT, resource);
-            if (Files.exists(filePath) && !Files.isDirectory(filePath)) {
-                // Detectar el tipo MIME
-                String contentType = Files.probeContentType(filePath);
-                
-           
-                
-                byte[] fileContent = Files.readAllBytes(filePath);
-        
-                // Crear el encabezado de la respuesta HTTP
-                String responseHeader = "HTTP/1.1 200 OK\r\n" +
-                        "Content-Type: " + contentType + "\r\n" +
-                        "Content-Length: " + fileContent.length + "\r\n" +
-                        "\r\n";
-                out.write(responseHeader.getBytes());
-                out.write(fileContent);
-            } else {
-                send404(out);
+        /**
+         * Si la conexión está esperando una solicitud nueva, cierra su lectura para que el hilo termine.
+         */
+        void closeIfIdle() {
+            if (!idle) return;
+            try {
+                clientSocket.shutdownInput();
+            } catch (IOException e) {
+                // La conexion ya se cerro
             }
         }
-        
-  /**
-         * Envía una respuesta 404 Not Found al cliente.
+    }
+
+    private int read(HttpRequestParser parser, InputStream in) throws IOException {
+        int n = parser.readFrom(in);
+        if (n > 0) metrics.bytesReceived.add(n);
+        return n;
+    }
+
+    /**
+     * Configuración de un {@link SimpleWebServer}. Los valores por defecto son los de las propiedades del sistema
+     * documentadas, salvo el almacén, que es en memoria si no se indica otro.
+     */
+    public static final class Builder {
+        private int port = 8080;
+        private Path webRoot = Paths.get("src/webroot");
+        private String engine = "blocking";
+        private String threadModel = "pool";
+        private int poolSize = Runtime.getRuntime().availableProcessors() * 8;
+        private int queueSize = 1024;
+        private int eventLoops = Runtime.getRuntime().availableProcessors();
+        private int shutdownTimeoutSeconds = 10;
+        private int keepAliveTimeoutMs = 5000;
+        private int maxKeepAliveRequests = 100;
+        private int requestTimeoutMs = 10_000;
+        private int maxBodySize = HttpRequestParser.DEFAULT_MAX_BODY_SIZE;
+        private int maxConnections = 10_000;
+        private int maxConnectionsPerClient = 256;
+        private int rateLimit;
+        private int writeRateLimit = 1000;
+        private long cacheMaxBytes = 32L * 1024 * 1024;
+        private long cacheMaxFileSize = 32L * 1024;
+        private long cacheRevalidateMs = 1000L;
+        private String storeDir;
+        private DinosaurioRepository repository;
+        private Path accessLogPath;
+        private int accessLogBufferSize = 8192;
+        private String accessLogOverflow = "drop";
+        private long accessLogMaxBytes = 64L * 1024 * 1024;
+        private int accessLogMaxFiles = 5;
+        private int eventsBufferSize = 1024;
+        private String eventsOverflow = "drop";
+        private int eventsMaxBlocking;
+
+        private Builder() {
+        }
+
+        /**
+         * @return Un constructor con la configuración de las propiedades del sistema ({@code server.*},
+         *         {@code cache.*} y {@code store.dir}), la misma que usa {@link SimpleWebServer#main}. A diferencia
+         *         de {@link SimpleWebServer#builder()}, el registro de acceso está activo por defecto.
+         */
+        public static Builder fromSystemProperties() {
+            Builder builder = new Builder();
+            // Modelo de ejecucion de las conexiones: "pool" (hilos acotados) o "virtual" (un hilo virtual por conexion)
+            builder.threadModel = System.getProperty("server.threads", builder.threadModel);
+            builder.poolSize = Integer.getInteger("server.poolSize", builder.poolSize);
+            builder.queueSize = Integer.getInteger("server.queueSize", builder.queueSize);
+            builder.shutdownTimeoutSeconds = Integer.getInteger("server.shutdownTimeout", builder.shutdownTimeoutSeconds);
+            // Conexiones persistentes: tiempo maximo de inactividad y solicitudes por conexion
+            builder.keepAliveTimeoutMs = Integer.getInteger("server.keepAliveTimeout", builder.keepAliveTimeoutMs);
+            builder.maxKeepAliveRequests = Integer.getInteger("server.maxKeepAliveRequests", builder.maxKeepAliveRequests);
+            builder.requestTimeoutMs = Integer.getInteger("server.requestTimeout", builder.requestTimeoutMs);
+            builder.maxConnections = Integer.getInteger("server.maxConnections", builder.maxConnections);
+            builder.maxConnectionsPerClient = Integer.getInteger("server.maxConnectionsPerClient", builder.maxConnectionsPerClient);
+            builder.rateLimit = Integer.getInteger("server.rateLimit", builder.rateLimit);
+            builder.writeRateLimit = Integer.getInteger("server.rateLimit.write", builder.writeRateLimit);
+            // Motor de red: "blocking" (ServerSocket, un hilo por conexion activa) o "nio" (Selector no bloqueante)
+            builder.engine = System.getProperty("server.engine", builder.engine);
+            builder.eventLoops = Integer.getInteger("server.eventLoops", builder.eventLoops);
+            builder.cacheMaxBytes = Long.getLong("cache.maxBytes", builder.cacheMaxBytes);
+            builder.cacheMaxFileSize = Long.getLong("cache.maxFileSize", builder.cacheMaxFileSize);
+            builder.cacheRevalidateMs = Long.getLong("cache.revalidateMs", builder.cacheRevalidateMs);
+            builder.storeDir = System.getProperty("store.dir", "data");
+            // Registro de acceso: vacio lo desactiva; "drop" descarta lineas con el buffer lleno, "block" espera
+            String accessLog = System.getProperty("server.accessLog", "logs/access.log");
+            builder.accessLogPath = accessLog.isEmpty() ? null : Paths.get(accessLog);
+            builder.accessLogBufferSize = Integer.getInteger("server.accessLog.bufferSize", builder.accessLogBufferSize);
+            builder.accessLogOverflow = System.getProperty("server.accessLog.overflow", builder.accessLogOverflow);
+            builder.accessLogMaxBytes = Long.getLong("server.accessLog.maxBytes", builder.accessLogMaxBytes);
+            builder.accessLogMaxFiles = Integer.getInteger("server.accessLog.maxFiles", builder.accessLogMaxFiles);
+            builder.eventsBufferSize = Integer.getInteger("server.events.bufferSize", builder.eventsBufferSize);
+            builder.eventsOverflow = System.getProperty("server.events.overflow", builder.eventsOverflow);
+            builder.eventsMaxBlocking = Integer.getInteger("server.events.maxBlocking", builder.eventsMaxBlocking);
+            return builder;
+        }
+
+        /**
+         * @param port El puerto; 0 elige uno libre al iniciar.
+         * @return Este constructor.
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param webRoot Directorio de los archivos estáticos.
+         * @return Este constructor.
+         */
+        public Builder webRoot(Path webRoot) {
+            this.webRoot = webRoot;
+            return this;
+        }
+
+        /**
+         * @param engine {@code "blocking"} o {@code "nio"}.
+         * @return Este constructor.
+         */
+        public Builder engine(String engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        /**
+         * @param threadModel {@code "pool"} o {@code "virtual"}.
+         * @param poolSize Hilos del pool.
+         * @param queueSize Conexiones o solicitudes en espera antes de responder 503.
+         * @return Este constructor.
+         */
+        public Builder threads(String threadModel, int poolSize, int queueSize) {
+            this.threadModel = threadModel;
+            this.poolSize = poolSize;
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * @param eventLoops Hilos de bucle de eventos del motor {@code nio}.
+         * @return Este constructor.
+         */
+        public Builder eventLoops(int eventLoops) {
+            this.eventLoops = eventLoops;
+            return this;
+        }
+
+        /**
+         * @param seconds Segundos que {@link SimpleWebServer#stop()} espera a las solicitudes en curso.
+         * @return Este constructor.
+         */
+        public Builder shutdownTimeout(int seconds) {
+            this.shutdownTimeoutSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * @param idleMs Milisegundos de inactividad antes de cerrar una conexión persistente.
+         * @param maxRequests Solicitudes máximas por conexión.
+         * @return Este constructor.
+         */
+        public Builder keepAlive(int idleMs, int maxRequests) {
+            this.keepAliveTimeoutMs = idleMs;
+            this.maxKeepAliveRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * @param requestTimeoutMs Milisegundos para recibir una solicitud completa desde su primer byte.
+         * @return Este constructor.
+         */
+        public Builder requestTimeout(int requestTimeoutMs) {
+            this.requestTimeoutMs = requestTimeoutMs;
+            return this;
+        }
+
+        /**
+         * @param maxBodySize Bytes máximos del cuerpo que se acumula en memoria.
+         * @return Este constructor.
+         */
+        public Builder maxBodySize(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        /**
+         * @param total Conexiones abiertas máximas.
+         * @param perClient Conexiones abiertas máximas por dirección de cliente.
+         * @return Este constructor.
+         */
+        public Builder maxConnections(int total, int perClient) {
+            this.maxConnections = total;
+            this.maxConnectionsPerClient = perClient;
+            return this;
+        }
+
+        /**
+         * @param perClient Solicitudes por segundo por cliente en todas las rutas, 0 sin límite.
+         * @param writesPerClient Solicitudes por segundo por cliente en cada ruta de escritura, 0 sin límite.
+         * @return Este constructor.
+         */
+        public Builder rateLimit(int perClient, int writesPerClient) {
+            this.rateLimit = perClient;
+            this.writeRateLimit = writesPerClient;
+            return this;
+        }
+
+        /**
+         * @param maxBytes Bytes máximos de archivos estáticos en memoria.
+         * @param maxFileSize Tamaño máximo de un archivo para guardarlo en la caché.
+         * @param revalidateMs Intervalo mínimo entre revisiones de un archivo en caché.
+         * @return Este constructor.
+         */
+        public Builder cache(long maxBytes, long maxFileSize, long revalidateMs) {
+            this.cacheMaxBytes = maxBytes;
+            this.cacheMaxFileSize = maxFileSize;
+            this.cacheRevalidateMs = revalidateMs;
+            return this;
+        }
+
+        /**
+         * @param storeDir Directorio del almacén persistente; vacío para un almacén en memoria.
+         * @return Este constructor.
+         */
+        public Builder storeDir(String storeDir) {
+            this.storeDir = storeDir;
+            return this;
+        }
+
+        /**
+         * @param repository Almacén que usan los servicios; tiene prioridad sobre {@link #storeDir}.
+         * @return Este constructor.
+         */
+        public Builder repository(DinosaurioRepository repository) {
+            this.repository = repository;
+            return this;
+        }
+
+        /**
+         * Activa el registro de acceso asíncrono.
+         *
+         * @param path El archivo del registro, o {@code null} para desactivarlo.
+         * @param bufferSize Solicitudes pendientes de escribir que caben en memoria.
+         * @param overflow {@code "drop"} descarta las líneas con el buffer lleno; {@code "block"} espera a que haya espacio.
+         * @param maxBytes Tamaño a partir del cual se rota el archivo.
+         * @param maxFiles Archivos rotados que se conservan.
+         * @return Este constructor.
+         */
+        public Builder accessLog(Path path, int bufferSize, String overflow, long maxBytes, int maxFiles) {
+            this.accessLogPath = path;
+            this.accessLogBufferSize = bufferSize;
+            this.accessLogOverflow = overflow;
+            this.accessLogMaxBytes = maxBytes;
+            this.accessLogMaxFiles = maxFiles;
+            return this;
+        }
+
+        /**
+         * @param bufferSize Cambios que conserva el flujo de eventos para los suscriptores lentos o que se reconectan.
+         * @param overflow Con un suscriptor que se quedó atrás más que el buffer: {@code "drop"} le envía
+         *                 {@code reset} y sigue desde el último cambio; {@code "disconnect"} cierra su conexión.
+         * @return Este constructor.
+         */
+        public Builder events(int bufferSize, String overflow) {
+            this.eventsBufferSize = bufferSize;
+            this.eventsOverflow = overflow;
+            return this;
+        }
+
+        /**
+         * @param maxBlocking Suscriptores al flujo de eventos que el motor {@code blocking} atiende a la vez, cada
+         *                    uno con un hilo del pool; los demás reciben 503. 0 usa la cuarta parte del pool.
+         * @return Este constructor.
+         */
+        public Builder eventsMaxBlocking(int maxBlocking) {
+            this.eventsMaxBlocking = maxBlocking;
+            return this;
+        }
+
+        /**
+         * Crea el servidor con sus servicios registrados, sin abrir el puerto.
          *
-         * @param out El flujo de salida para enviar la respuesta al cliente.
-         * @throws IOException Si ocurre un error al escribir la respuesta.
+         * @return El servidor.
+         * @throws UncheckedIOException Si no se puede abrir el almacén persistente.
          */
-        private void send404(OutputStream out) throws IOException {
-            String response = "HTTP/1.1 404 Not Found\r\n" +
-                    "Content-Type: application/json\r\n" +
-                    "\r\n" +
-                    "{\"error\": \"Not Found\"}";
-            out.write(response.getBytes());
+        public SimpleWebServer build() {
+            return new SimpleWebServer(this);
         }
     }
-}
\ No newline at end of file
+}
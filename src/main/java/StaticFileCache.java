@@ -0,0 +1,414 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché en memoria de los archivos estáticos del webroot.
+ * Guarda el contenido, el tipo MIME y los encabezados de respuesta ya renderizados, con un límite total de bytes
+ * y desalojo LRU. Cada entrada se revalida contra la fecha de modificación y el tamaño del archivo como máximo
+ * una vez por intervalo, de modo que los cambios en disco se detectan sin consultar el sistema de archivos en cada
+ * solicitud. También calcula ETag y Last-Modified para responder 304 a solicitudes condicionales.
+ * Los archivos de texto se comprimen con gzip y deflate una sola vez al cargarlos, de modo que servirlos
+ * comprimidos no cuesta nada por solicitud.
+ */
+public class StaticFileCache {
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+    static {
+        MIME_TYPES.put("html", "text/html");
+        MIME_TYPES.put("htm", "text/html");
+        MIME_TYPES.put("css", "text/css");
+        MIME_TYPES.put("js", "application/javascript");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("txt", "text/plain");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("ico", "image/x-icon");
+    }
+
+    // Entradas como maximo, ademas del limite de bytes: las de archivos grandes no guardan contenido
+    private static final int MAX_ENTRIES = 4096;
+
+    private final Path root;
+    private final long maxBytes;
+    private final long maxFileSize;
+    private final long revalidateMs;
+    // Por ruta resuelta, para que todas las formas de escribir la misma ruta compartan la entrada
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /**
+     * Archivo estático resuelto, con sus metadatos y, si cabe en la caché, su contenido.
+     */
+    public static final class Entry {
+        final Path path;
+        final long size;
+        final long lastModifiedMillis;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+        final byte[] content;
+        final byte[] header;
+        final byte[] notModifiedHeader;
+        final Variant gzip;
+        final Variant deflate;
+        volatile long validatedAt;
+
+        Entry(Path path, long size, long lastModifiedMillis, String contentType, byte[] content, long validatedAt) {
+            this.path = path;
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.contentType = contentType;
+            this.content = content;
+            this.validatedAt = validatedAt;
+            this.etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+            this.lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModifiedMillis), ZoneOffset.UTC));
+            boolean compress = content != null && Compression.ENABLED && content.length >= Compression.MIN_SIZE
+                    && Compression.isCompressible(contentType);
+            this.gzip = compress ? Variant.of(this, "gzip") : null;
+            this.deflate = compress ? Variant.of(this, "deflate") : null;
+            this.header = ("HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: " + contentType + "\r\n" +
+                    "Content-Length: " + size + "\r\n" +
+                    "Accept-Ranges: bytes\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Last-Modified: " + lastModified + "\r\n" +
+                    (gzip != null || deflate != null ? "Vary: Accept-Encoding\r\n" : "") +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+            this.notModifiedHeader = ("HTTP/1.1 304 Not Modified\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Last-Modified: " + lastModified + "\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * Indica si el contenido está en memoria. Los archivos mayores que el límite por archivo solo
+         * guardan sus metadatos y se leen del disco en cada solicitud.
+         *
+         * @return {@code true} si el contenido está en la caché.
+         */
+        public boolean isCached() {
+            return content != null;
+        }
+
+        /**
+         * @param encoding La codificación negociada con {@link Compression#negotiate}, o {@code null}.
+         * @return La variante precomprimida, o {@code null} si no hay (archivo pequeño, binario o sin codificación).
+         */
+        Variant variant(String encoding) {
+            if (encoding == null) return null;
+            return encoding.equals("gzip") ? gzip : encoding.equals("deflate") ? deflate : null;
+        }
+
+        // Bytes que ocupa en memoria, con las variantes comprimidas
+        long footprint() {
+            if (content == null) return 0;
+            return size + (gzip != null ? gzip.body.length : 0) + (deflate != null ? deflate.body.length : 0);
+        }
+
+        /**
+         * Construye el encabezado de una respuesta 206 Partial Content para un rango del archivo.
+         *
+         * @param range El rango que se envía.
+         * @return El encabezado codificado.
+         */
+        byte[] partialHeader(ByteRange range) {
+            return ("HTTP/1.1 206 Partial Content\r\n" +
+                    "Content-Type: " + contentType + "\r\n" +
+                    "Content-Length: " + range.length() + "\r\n" +
+                    "Content-Range: bytes " + range.start + "-" + range.end + "/" + size + "\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Last-Modified: " + lastModified + "\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * Construye el encabezado de una respuesta 416 Range Not Satisfiable.
+         *
+         * @return El encabezado codificado.
+         */
+        byte[] unsatisfiableHeader() {
+            return ("HTTP/1.1 416 Range Not Satisfiable\r\n" +
+                    "Content-Range: bytes */" + size + "\r\n" +
+                    "Content-Length: 0\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * Evalúa la condición {@code If-Range}: el rango solo se atiende si el cliente tiene la versión actual.
+         *
+         * @param ifRange Valor del encabezado If-Range, o {@code null}.
+         * @return {@code true} si se debe atender el encabezado Range.
+         */
+        boolean matchesIfRange(String ifRange) {
+            return ifRange == null || ifRange.equals(etag) || ifRange.equals(lastModified);
+        }
+
+        /**
+         * Evalúa las condiciones {@code If-None-Match} e {@code If-Modified-Since} de la solicitud.
+         *
+         * @param ifNoneMatch Valor del encabezado If-None-Match, o {@code null}.
+         * @param ifModifiedSince Valor del encabezado If-Modified-Since, o {@code null}.
+         * @return {@code true} si el cliente ya tiene la versión actual y se puede responder 304.
+         */
+        public boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                // If-None-Match tiene prioridad sobre If-Modified-Since
+                for (String tag : ifNoneMatch.split(",")) {
+                    String candidate = tag.trim();
+                    if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+                    if (candidate.equals(etag) || candidate.equals("*")) return true;
+                    if (gzip != null && candidate.equals(gzip.etag)) return true;
+                    if (deflate != null && candidate.equals(deflate.etag)) return true;
+                }
+                return false;
+            }
+            if (ifModifiedSince != null) {
+                try {
+                    long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant().toEpochMilli();
+                    return lastModifiedMillis / 1000 <= since / 1000;
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Contenido de una entrada comprimido con una codificación, con sus encabezados ya renderizados.
+     * Tiene su propia ETag, porque sus bytes son distintos a los del archivo original.
+     */
+    static final class Variant {
+        final String etag;
+        final byte[] body;
+        final byte[] header;
+        final byte[] notModifiedHeader;
+
+        private Variant(Entry entry, String encoding, byte[] body) {
+            this.etag = entry.etag.substring(0, entry.etag.length() - 1) + "-" + encoding + "\"";
+            this.body = body;
+            this.header = ("HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: " + entry.contentType + "\r\n" +
+                    "Content-Length: " + body.length + "\r\n" +
+                    "Content-Encoding: " + encoding + "\r\n" +
+                    "Vary: Accept-Encoding\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Last-Modified: " + entry.lastModified + "\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+            this.notModifiedHeader = ("HTTP/1.1 304 Not Modified\r\n" +
+                    "ETag: " + etag + "\r\n" +
+                    "Last-Modified: " + entry.lastModified + "\r\n" +
+                    "Vary: Accept-Encoding\r\n" +
+                    "\r\n").getBytes(StandardCharsets.US_ASCII);
+        }
+
+        // Solo se guarda si la compresion reduce el tamano
+        static Variant of(Entry entry, String encoding) {
+            byte[] body = Compression.compress(encoding, entry.content, 0, entry.content.length);
+            return body.length < entry.content.length ? new Variant(entry, encoding, body) : null;
+        }
+    }
+
+    /**
+     * Crea la caché.
+     *
+     * @param root Directorio raíz de los archivos estáticos.
+     * @param maxBytes Bytes máximos de contenido en memoria.
+     * @param maxFileSize Tamaño máximo de un archivo para guardarlo en memoria.
+     * @param revalidateMs Intervalo mínimo entre revisiones de la fecha de modificación de cada archivo.
+     */
+    public StaticFileCache(Path root, long maxBytes, long maxFileSize, long revalidateMs) {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.maxFileSize = maxFileSize;
+        this.revalidateMs = revalidateMs;
+    }
+
+    /**
+     * Busca un recurso del webroot, usando la copia en memoria si sigue vigente.
+     *
+     * @param resource La ruta solicitada (por ejemplo {@code /index.html}).
+     * @return La entrada del archivo, o {@code null} si no existe, es un directorio o está fuera del webroot.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    public Entry get(String resource) throws IOException {
+        int query = resource.indexOf('?');
+        Path key = resolve(query >= 0 ? resource.substring(0, query) : resource);
+        if (key == null) return null;
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            if (now - entry.validatedAt < revalidateMs) {
+                recordHit(entry);
+                return entry;
+            }
+            BasicFileAttributes attributes = readAttributes(entry.path);
+            if (attributes != null && attributes.size() == entry.size
+                    && attributes.lastModifiedTime().toMillis() == entry.lastModifiedMillis) {
+                entry.validatedAt = now;
+                recordHit(entry);
+                return entry;
+            }
+            remove(key, entry);
+        }
+
+        misses.increment();
+        Path path = key;
+        BasicFileAttributes attributes = readAttributes(path);
+        if (attributes == null || attributes.isDirectory()) return null;
+
+        byte[] content = null;
+        if (attributes.size() <= maxFileSize) {
+            try {
+                content = Files.readAllBytes(path);
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+        long size = content != null ? content.length : attributes.size();
+        entry = new Entry(path, size, attributes.lastModifiedTime().toMillis(), contentType(path), content, now);
+        put(key, entry);
+        return entry;
+    }
+
+    private void recordHit(Entry entry) {
+        hits.increment();
+        if (entry.isCached()) {
+            bytesSaved.add(entry.size);
+        }
+    }
+
+    /**
+     * Registra una respuesta 304 enviada a partir de una entrada de la caché.
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    private synchronized void put(Path key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            cachedBytes -= previous.footprint();
+        }
+        cachedBytes += entry.footprint();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((cachedBytes > maxBytes || entries.size() > MAX_ENTRIES) && eldest.hasNext()) {
+            Entry candidate = eldest.next();
+            if (candidate == entry) continue;
+            eldest.remove();
+            cachedBytes -= candidate.footprint();
+        }
+    }
+
+    private synchronized void remove(Path key, Entry entry) {
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+            cachedBytes -= entry.footprint();
+        }
+    }
+
+    private Path resolve(String resource) {
+        int start = 0;
+        while (start < resource.length() && resource.charAt(start) == '/') {
+            start++;
+        }
+        String relative = resource.substring(start);
+        try {
+            Path path = root.resolve(relative).normalize();
+            // No se sirve nada fuera del webroot (por ejemplo rutas con "..")
+            return path.startsWith(root) ? path : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static String contentType(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String type = dot >= 0 ? MIME_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+        if (type == null) {
+            type = Files.probeContentType(path);
+        }
+        return type != null ? type : "application/octet-stream";
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return La fracción de búsquedas resueltas desde la caché, entre 0 y 1.
+     */
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return Bytes servidos desde memoria en lugar de leerse del disco.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public long getNotModifiedCount() {
+        return notModified.sum();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "entradas=%d bytes=%d aciertos=%d fallos=%d ratio=%.2f ahorrados=%d 304=%d",
+                size(), getCachedBytes(), getHitCount(), getMissCount(), getHitRatio(), getBytesSaved(), getNotModifiedCount());
+    }
+}
@@ -0,0 +1,483 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Registro de escritura anticipada (write-ahead log) de las operaciones del almacén, en solo-anexar.
+ * Cada registro lleva su longitud, un CRC32 y un número de secuencia creciente; al recuperar se descarta
+ * la cola incompleta o corrupta que deja una caída a mitad de escritura. Si una escritura falla a medias, el archivo
+ * se trunca al inicio del registro para que los siguientes no queden detrás de bytes corruptos; si eso también falla,
+ * o falla un fsync, el log queda en estado de error y rechaza todas las escrituras siguientes.
+ * El log se divide en generaciones ({@code wal-NNNNNN.log}): al compactar se abre una generación nueva y
+ * las anteriores se borran una vez que la instantánea que las cubre es durable.
+ *
+ * <p>La política de fsync decide cuándo una operación se considera durable:</p>
+ * <ul>
+ *     <li>{@link FsyncPolicy#ALWAYS}: fsync en cada escritura, antes de responder.</li>
+ *     <li>{@link FsyncPolicy#GROUP}: un hilo hace un fsync por lote para todas las escrituras acumuladas
+ *     mientras se ejecutaba el anterior (group commit); cada escritor espera a su lote.</li>
+ *     <li>{@link FsyncPolicy#PERIODIC}: fsync cada intervalo; las escrituras no esperan.</li>
+ * </ul>
+ */
+public class WriteAheadLog implements Closeable {
+
+    public static final byte OP_CREATE = 1;
+    public static final byte OP_UPDATE = 2;
+    public static final byte OP_DELETE = 3;
+
+    // Longitud maxima de un registro; una longitud mayor indica bytes corruptos
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    /**
+     * Momento en que una escritura se considera durable.
+     */
+    public enum FsyncPolicy {
+        ALWAYS, GROUP, PERIODIC;
+
+        /**
+         * @param value Nombre de la política, sin distinguir mayúsculas.
+         * @return La política.
+         */
+        public static FsyncPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Operación leída del log durante la recuperación.
+     */
+    public static final class Record {
+        final byte op;
+        final long seq;
+        final int id;
+        final String name;
+
+        Record(byte op, long seq, int id, String name) {
+            this.op = op;
+            this.seq = seq;
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static final class Waiter {
+        final long seq;
+        final CompletableFuture<Void> future;
+
+        Waiter(long seq, CompletableFuture<Void> future) {
+            this.seq = seq;
+            this.future = future;
+        }
+    }
+
+    private final Path dir;
+    private final FsyncPolicy policy;
+    private final long syncIntervalMs;
+    private FileChannel channel;
+    private long generation;
+    private long nextSeq;
+    private long writtenSeq;
+    private long durableSeq;
+    private List<Waiter> waiters = new ArrayList<>();
+    private boolean closed;
+    // Error que dejo el log inutilizable; las escrituras siguientes fallan con el
+    private IOException failure;
+    private Thread syncer;
+
+    /**
+     * Crea el log sobre un directorio. Antes de escribir hay que recuperar con {@link #replay} y abrir con {@link #open}.
+     *
+     * @param dir El directorio de datos.
+     * @param policy La política de fsync.
+     * @param syncIntervalMs Intervalo entre fsync para la política {@link FsyncPolicy#PERIODIC}.
+     */
+    public WriteAheadLog(Path dir, FsyncPolicy policy, long syncIntervalMs) {
+        this.dir = dir;
+        this.policy = policy;
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    /**
+     * Recorre todas las generaciones del log en orden y entrega las operaciones con secuencia mayor que {@code afterSeq}.
+     * Si la última generación termina en un registro incompleto o corrupto, se trunca en el último registro válido.
+     *
+     * @param afterSeq La última secuencia incluida en la instantánea.
+     * @param consumer Recibe cada operación pendiente.
+     * @return La mayor secuencia encontrada (o {@code afterSeq} si no hay más).
+     * @throws IOException Si ocurre un error al leer.
+     */
+    public long replay(long afterSeq, Consumer<Record> consumer) throws IOException {
+        long lastSeq = afterSeq;
+        List<Path> files = logFiles();
+        for (int i = 0; i < files.size(); i++) {
+            boolean last = i == files.size() - 1;
+            try (FileChannel file = FileChannel.open(files.get(i), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                long position = 0;
+                long size = file.size();
+                while (position < size) {
+                    Record record = readRecord(file, position, header);
+                    if (record == null) {
+                        if (!last) {
+                            throw new IOException("Registro corrupto en " + files.get(i) + " posicion " + position);
+                        }
+                        // Cola de una escritura interrumpida: se descarta
+                        file.truncate(position);
+                        file.force(true);
+                        break;
+                    }
+                    position += 8 + header.getInt(0);
+                    if (record.seq > afterSeq) {
+                        consumer.accept(record);
+                    }
+                    lastSeq = Math.max(lastSeq, record.seq);
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    private static Record readRecord(FileChannel file, long position, ByteBuffer header) throws IOException {
+        header.clear();
+        if (!readFully(file, header, position)) return null;
+        int length = header.getInt(0);
+        int crc = header.getInt(4);
+        if (length < 17 || length > MAX_RECORD_SIZE) return null;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(file, payload, position + 8)) return null;
+        CRC32 checksum = new CRC32();
+        checksum.update(payload.array(), 0, length);
+        if ((int) checksum.getValue() != crc) return null;
+        payload.flip();
+        byte op = payload.get();
+        long seq = payload.getLong();
+        int id = payload.getInt();
+        int nameLength = payload.getInt();
+        if (nameLength < 0 || nameLength != payload.remaining()) return null;
+        String name = new String(payload.array(), payload.position(), nameLength, StandardCharsets.UTF_8);
+        return new Record(op, seq, id, name);
+    }
+
+    private static boolean readFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = file.read(buffer, position + buffer.position());
+            if (n < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Abre una generación nueva para anexar y arranca el hilo de fsync según la política.
+     *
+     * @param lastSeq La última secuencia recuperada.
+     * @throws IOException Si no se puede crear el archivo.
+     */
+    public synchronized void open(long lastSeq) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = logFiles();
+        // Las generaciones vacias (arranques sin escrituras) no aportan nada a la recuperacion
+        for (int i = files.size() - 1; i >= 0; i--) {
+            if (Files.size(files.get(i)) == 0) {
+                Files.delete(files.remove(i));
+            }
+        }
+        generation = files.isEmpty() ? 1 : generationOf(files.get(files.size() - 1)) + 1;
+        channel = openGeneration(generation);
+        nextSeq = lastSeq + 1;
+        writtenSeq = lastSeq;
+        durableSeq = lastSeq;
+        if (policy != FsyncPolicy.ALWAYS) {
+            syncer = new Thread(policy == FsyncPolicy.GROUP ? this::groupCommitLoop : this::periodicSyncLoop, "wal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        }
+    }
+
+    /**
+     * Anexa una operación. El futuro se completa cuando la operación es durable según la política.
+     * Si falla la escritura, el registro no queda en el log.
+     *
+     * @param op El tipo de operación.
+     * @param id El id del registro.
+     * @param name El nombre (vacío para eliminaciones).
+     * @return Un futuro que se completa cuando la escritura es durable; ya fallido si no se pudo escribir.
+     */
+    public synchronized CompletableFuture<Void> append(byte op, int id, String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 17 + nameBytes.length);
+        encode(buffer, op, nextSeq, id, nameBytes);
+        buffer.flip();
+        return write(buffer, 1);
+    }
+
+    /**
+     * Anexa varias operaciones del mismo tipo con una sola escritura: o quedan todas en el log o ninguna.
+     *
+     * @param op El tipo de operación.
+     * @param records Los registros; para eliminaciones el nombre no se guarda.
+     * @return Un futuro que se completa cuando todas son durables; ya fallido si no se pudieron escribir.
+     */
+    public synchronized CompletableFuture<Void> appendAll(byte op, List<Dinosaurio> records) {
+        if (records.isEmpty()) return CompletableFuture.completedFuture(null);
+        byte[][] names = new byte[records.size()][];
+        int size = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = op == OP_DELETE ? new byte[0] : records.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            size += 8 + 17 + names[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < names.length; i++) {
+            encode(buffer, op, nextSeq + i, records.get(i).getId(), names[i]);
+        }
+        buffer.flip();
+        return write(buffer, names.length);
+    }
+
+    private static void encode(ByteBuffer buffer, byte op, long seq, int id, byte[] name) {
+        int start = buffer.position();
+        int length = 1 + 8 + 4 + 4 + name.length;
+        buffer.position(start + 8);
+        buffer.put(op).putLong(seq).putInt(id).putInt(name.length).put(name);
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), start + 8, length);
+        buffer.putInt(start, length).putInt(start + 4, (int) checksum.getValue());
+    }
+
+    // Escribe los registros ya codificados con las siguientes count secuencias
+    private CompletableFuture<Void> write(ByteBuffer buffer, int count) {
+        if (closed) {
+            return failed(new ClosedChannelException());
+        }
+        if (failure != null) {
+            return failed(new IOException("El log fallo y no acepta mas escrituras", failure));
+        }
+        long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            failure = e;
+            return failed(e);
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            discard(start, e);
+            return failed(e);
+        }
+        if (policy == FsyncPolicy.ALWAYS) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                // Tras un fsync fallido no se sabe que llego al disco: no se aceptan mas escrituras
+                discard(start, e);
+                failure = e;
+                return failed(e);
+            }
+        }
+        long seq = nextSeq + count - 1;
+        nextSeq = seq + 1;
+        writtenSeq = seq;
+        if (policy == FsyncPolicy.ALWAYS) {
+            durableSeq = seq;
+        }
+        if (policy != FsyncPolicy.GROUP) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        waiters.add(new Waiter(seq, future));
+        notifyAll();
+        return future;
+    }
+
+    // Quita del archivo lo que se alcanzo a escribir; si no se puede, el log queda inutilizable
+    private void discard(long start, IOException error) {
+        try {
+            channel.truncate(start);
+        } catch (IOException e) {
+            error.addSuppressed(e);
+            failure = error;
+        }
+    }
+
+    // Un fsync por lote: todo lo escrito mientras corria el fsync anterior sale en el siguiente
+    private void groupCommitLoop() {
+        while (true) {
+            FileChannel target;
+            long targetSeq;
+            List<Waiter> batch;
+            synchronized (this) {
+                while (waiters.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (waiters.isEmpty()) return;
+                batch = waiters;
+                waiters = new ArrayList<>();
+                target = channel;
+                targetSeq = writtenSeq;
+            }
+            IOException error = sync(target, targetSeq);
+            if (error == null) {
+                for (Waiter waiter : batch) {
+                    waiter.future.complete(null);
+                }
+                continue;
+            }
+            // Del mas reciente al mas antiguo, para que quien deshaga los cambios lo haga en orden inverso
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                batch.get(i).future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private void periodicSyncLoop() {
+        while (true) {
+            FileChannel target;
+            long targetSeq;
+            synchronized (this) {
+                try {
+                    wait(syncIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) return;
+                if (writtenSeq == durableSeq) continue;
+                target = channel;
+                targetSeq = writtenSeq;
+            }
+            IOException error = sync(target, targetSeq);
+            if (error != null) {
+                error.printStackTrace();
+            }
+        }
+    }
+
+    private IOException sync(FileChannel target, long targetSeq) {
+        try {
+            target.force(false);
+        } catch (ClosedChannelException e) {
+            // La generacion se roto o se cerro; ambas operaciones hacen fsync antes de cerrar
+            synchronized (this) {
+                if (durableSeq < targetSeq) return e;
+            }
+            return null;
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+            return e;
+        }
+        synchronized (this) {
+            durableSeq = Math.max(durableSeq, targetSeq);
+        }
+        return null;
+    }
+
+    /**
+     * Cierra la generación actual (con fsync) y abre la siguiente. Se usa al compactar: las generaciones
+     * anteriores a la devuelta quedan cubiertas por la instantánea y se pueden borrar cuando esta sea durable.
+     *
+     * @return La última secuencia escrita en las generaciones anteriores.
+     * @throws IOException Si ocurre un error al rotar.
+     */
+    public synchronized long rotate() throws IOException {
+        if (failure != null) {
+            throw new IOException("El log fallo; no se compacta", failure);
+        }
+        channel.force(false);
+        durableSeq = writtenSeq;
+        channel.close();
+        generation++;
+        channel = openGeneration(generation);
+        return writtenSeq;
+    }
+
+    /**
+     * Borra las generaciones anteriores a la actual.
+     *
+     * @throws IOException Si ocurre un error al borrar.
+     */
+    public synchronized void deleteOldGenerations() throws IOException {
+        for (Path file : logFiles()) {
+            if (generationOf(file) < generation) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * @return La última secuencia escrita.
+     */
+    public synchronized long lastSeq() {
+        return writtenSeq;
+    }
+
+    /**
+     * Hace un último fsync, completa las escrituras pendientes y cierra el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        List<Waiter> pending;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            channel.force(false);
+            durableSeq = writtenSeq;
+            channel.close();
+            pending = waiters;
+            waiters = new ArrayList<>();
+            notifyAll();
+        }
+        for (Waiter waiter : pending) {
+            waiter.future.complete(null);
+        }
+    }
+
+    // Las pruebas lo reemplazan para simular fallas de escritura
+    FileChannel openGeneration(long gen) throws IOException {
+        return FileChannel.open(dir.resolve(String.format("wal-%06d.log", gen)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> logFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(4, name.length() - 4));
+    }
+
+    private static CompletableFuture<Void> failed(Throwable error) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
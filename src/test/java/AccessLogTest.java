@@ -0,0 +1,136 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del registro de acceso asíncrono y del contador de bytes de las respuestas.
+ */
+public class AccessLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Las solicitudes registradas se escriben al cerrar, una línea por solicitud con todos sus campos.
+     */
+    @Test
+    public void writesOneLinePerRequest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("logs/access.log");
+        AccessLog log = new AccessLog(path, 16, AccessLog.Overflow.BLOCK, 1 << 20, 2);
+        log.start();
+        InetAddress client = InetAddress.getByName("10.0.0.1");
+        for (int i = 0; i < 100; i++) {
+            log.record(client, "GET", "/api/dinosaurio/" + i, 200, 42, TimeUnit.MICROSECONDS.toNanos(1500));
+        }
+        log.record(null, "POST", "/api/dinosaurio", 0, 0, 0);
+        log.close();
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(101, lines.size());
+        assertEquals(101, log.written());
+        assertEquals(0, log.dropped());
+        assertTrue(lines.get(0), lines.get(0).matches(
+                "10\\.0\\.0\\.1 - - \\[\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\dZ] \"GET /api/dinosaurio/0\" 200 42 1500"));
+        assertTrue(lines.get(100).startsWith("- - - ["));
+        assertTrue(lines.get(100).endsWith("\"POST /api/dinosaurio\" 0 0 0"));
+    }
+
+    /**
+     * Con el buffer lleno y la política {@code DROP} las solicitudes se descartan sin esperar y se cuentan.
+     */
+    @Test
+    public void countsDroppedEntriesWhenFull() throws Exception {
+        AccessLog log = new AccessLog(folder.getRoot().toPath().resolve("access.log"), 4, AccessLog.Overflow.DROP,
+                1 << 20, 2);
+        for (int i = 0; i < 10; i++) {
+            log.record(null, "GET", "/", 200, 0, 0);
+        }
+        assertEquals(6, log.dropped());
+        log.close();
+    }
+
+    /**
+     * Al superar el tamaño máximo el archivo se rota y solo se conservan los archivos configurados.
+     */
+    @Test
+    public void rotatesBySize() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("access.log");
+        AccessLog log = new AccessLog(path, 1024, AccessLog.Overflow.BLOCK, 100, 2);
+        log.start();
+        for (int i = 0; i < 20; i++) {
+            log.record(null, "GET", "/" + i, 200, 0, 0);
+            // Un lote por solicitud, para que cada escritura pueda rotar el archivo
+            Thread.sleep(150);
+        }
+        log.close();
+
+        assertTrue(Files.exists(path.resolveSibling("access.log.1")));
+        assertTrue(Files.exists(path.resolveSibling("access.log.2")));
+        assertFalse(Files.exists(path.resolveSibling("access.log.3")));
+        assertTrue(Files.size(path) <= 100);
+    }
+
+    /**
+     * Si el archivo no se puede rotar, el escritor descarta esos lotes y sigue vaciando el buffer, así que con la
+     * política {@code BLOCK} los productores no quedan esperando; al desaparecer el problema vuelve a escribir.
+     */
+    @Test
+    public void keepsDrainingAfterWriteFailure() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("access.log");
+        // Un directorio con contenido donde va el archivo rotado hace fallar cada rotacion
+        Path blocker = Files.createDirectories(path.resolveSibling("access.log.1"));
+        Files.write(blocker.resolve("x"), new byte[1]);
+        Files.write(path, new byte[200]);
+        AccessLog log = new AccessLog(path, 4, AccessLog.Overflow.BLOCK, 100, 1);
+        log.start();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                log.record(null, "GET", "/" + i, 200, 0, 0);
+            }
+        });
+        producer.start();
+        producer.join(5000);
+        assertFalse("Los productores quedaron bloqueados", producer.isAlive());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (log.dropped() < 200 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(200, log.dropped());
+        assertEquals(0, log.written());
+        assertTrue(log.writeErrors() > 0);
+
+        Files.delete(blocker.resolve("x"));
+        Files.delete(blocker);
+        log.record(null, "GET", "/despues", 200, 0, 0);
+        log.close();
+        assertEquals(1, log.written());
+        assertTrue(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).contains("/despues"));
+    }
+
+    /**
+     * El envoltorio de la respuesta cuenta los bytes y toma el código de la línea de estado aunque llegue partida.
+     */
+    @Test
+    public void recordsStatusAndBytes() throws Exception {
+        ResponseRecorder recorder = new ResponseRecorder(new ByteArrayOutputStream());
+        assertEquals(0, recorder.status());
+        recorder.write("HTTP/1.1 4".getBytes(StandardCharsets.US_ASCII));
+        recorder.write('0');
+        recorder.write("4 Not Found\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(404, recorder.status());
+        assertEquals(26, recorder.bytes());
+    }
+}
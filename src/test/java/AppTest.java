@@ -10,7 +10,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -106,12 +109,13 @@ public class AppTest {
         byte[] responseBodyBytes = argumentCaptor.getAllValues().get(1);
         String jsonResponse = new String(responseBodyBytes);
 
-        // Verificar el contenido del JSON
-        assertTrue(jsonResponse.contains("[{ \"id\": 1, \"status\": \"Dino received\", \"Dinosaurio\": \"Triceratops\" }]"));
+        // Verificar el contenido del JSON: solo el registro creado
+        assertTrue(jsonResponse.contains("{ \"id\": 1, \"status\": \"Dino received\", \"Dinosaurio\": \"Triceratops\" }"));
+        assertTrue(responseHeader.contains("Location: /api/dinosaurio/1"));
     }
     /**
      *Verifica que el método HandlePut actualice un dino y devuelva una respuesta JSON correcta para una solicitud PUT.
-     * Verifica que el servidor responda con un código de estado HTTP 200, pues devuelve los datos actualizados
+     * Verifica que el servidor responda con un código de estado HTTP 200, pues devuelve el registro actualizado
      * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
      */
     @Test
@@ -141,14 +145,14 @@ public class AppTest {
         // Obtener el cuerpo de la respuesta JSON (última llamada a write())
         byte[] responseBodyBytesPut = argumentCaptorPut.getAllValues().get(1);
         String jsonResponsePut = new String(responseBodyBytesPut);
-        assertTrue(jsonResponsePut.contains("[{ \"id\": 1, \"status\": \"Dino received\", \"Dinosaurio\": \"Brachiosaurus\" }]"));
+        assertTrue(jsonResponsePut.contains("{ \"id\": 1, \"status\": \"Dino received\", \"Dinosaurio\": \"Brachiosaurus\" }"));
 
 
     }
 
     /**
      *Verifica que el método HandleDelete elimine un dino y devuelva una respuesta JSON correcta para una solicitud DELETE.
-     * Verifica que el servidor responda con un código de estado HTTP 200, pues devuelve los datos actualizados
+     * Verifica que el servidor responda con un código de estado HTTP 200, pues devuelve el registro eliminado
      * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
      */
     @Test
@@ -178,9 +182,215 @@ public class AppTest {
         byte[] responseBodyBytesDelete = argumentCaptorDelete.getAllValues().get(1);
         String jsonResponseDelete = new String(responseBodyBytesDelete);
 
-        // Verificar que el JSON contiene el objeto actualizado (vacío después del DELETE)
+        // Verificar que el JSON contiene el objeto eliminado
+        assertTrue(jsonResponseDelete.contains("{ \"id\": 1, \"status\": \"Dino received\", \"Dinosaurio\": \"Brachiosaurus\" }"));
 
-        assertTrue(jsonResponseDelete.contains("[]"));
+        // Verificar que la colección queda vacía después del DELETE
+        OutputStream getOutputStream = mock(OutputStream.class);
+        restService.handleGet(new String[]{"GET", "/api/dinosaurio", "HTTP/1.1"}, new BufferedReader(new StringReader("\r\n")), getOutputStream, mock(Socket.class));
+        ArgumentCaptor<byte[]> argumentCaptorGet = ArgumentCaptor.forClass(byte[].class);
+        verify(getOutputStream, times(2)).write(argumentCaptorGet.capture());
+        assertTrue(new String(argumentCaptorGet.getAllValues().get(1)).contains("[]"));
 
     }
+
+    /**
+     * Verifica que un PUT sobre un id inexistente responde 404 Not Found.
+     * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
+     */
+    @Test
+    public void test05HandlePutMissingId() throws IOException {
+        String jsonInputPut = "{\"Dinosaurio\":\"Raptor\"}";
+        BufferedReader bufferedReaderPut = new BufferedReader(new StringReader(
+                "Content-Length: " + jsonInputPut.length() + "\r\n" +
+                        "\r\n" +
+                        jsonInputPut
+        ));
+
+        restService.handlePut(bufferedReaderPut, mockOutputStream, 999);
+
+        ArgumentCaptor<byte[]> argumentCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockOutputStream, times(2)).write(argumentCaptor.capture());
+        assertTrue(new String(argumentCaptor.getAllValues().get(0)).contains("HTTP/1.1 404 Not Found"));
+    }
+
+    /**
+     * Verifica la consulta de un solo registro, la paginación por cursor y el filtro por prefijo del nombre.
+     * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
+     */
+    @Test
+    public void test06HandleGetQueries() throws IOException {
+        RestServiceImpl service = new RestServiceImpl(new InMemoryDinosaurioRepository());
+        for (String name : new String[]{"Triceratops", "Tyrannosaurus", "Velociraptor"}) {
+            String json = "{\"Dinosaurio\":\"" + name + "\"}";
+            service.handlePost(new BufferedReader(new StringReader("Content-Length: " + json.length() + "\r\n\r\n" + json)), mock(OutputStream.class));
+        }
+
+        String single = getById(service, 2)[1];
+        assertTrue(single.startsWith("{ \"id\": 2,"));
+
+        String[] firstPage = get(service, "/api/dinosaurio?limit=2");
+        assertTrue(firstPage[1].contains("\"id\": 1") && firstPage[1].contains("\"id\": 2") && !firstPage[1].contains("\"id\": 3"));
+        assertTrue(firstPage[0].contains("Link: </api/dinosaurio?after=2&limit=2>; rel=\"next\""));
+        assertTrue(get(service, "/api/dinosaurio?after=2&limit=2")[1].contains("Velociraptor"));
+
+        String filtered = get(service, "/api/dinosaurio?name=ty")[1];
+        assertTrue(filtered.contains("Tyrannosaurus") && !filtered.contains("Triceratops"));
+
+        assertTrue(getById(service, 42)[0].contains("404 Not Found"));
+    }
+
+    private static String[] get(RestServiceImpl service, String resource) throws IOException {
+        OutputStream out = mock(OutputStream.class);
+        service.handleGet(new String[]{"GET", resource, "HTTP/1.1"}, new BufferedReader(new StringReader("\r\n")), out, mock(Socket.class));
+        return captured(out);
+    }
+
+    private static String[] getById(RestServiceImpl service, int id) throws IOException {
+        OutputStream out = mock(OutputStream.class);
+        service.handleGetById(out, id);
+        return captured(out);
+    }
+
+    private static String[] captured(OutputStream out) throws IOException {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(out, times(2)).write(captor.capture());
+        return new String[]{new String(captor.getAllValues().get(0)), new String(captor.getAllValues().get(1))};
+    }
+
+    /**
+     * Verifica que la colección se sirve desde una instantánea con ETag, que responde 304 si no cambió
+     * y que se reconstruye después de una escritura.
+     * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
+     */
+    @Test
+    public void test07HandleGetSnapshotETag() throws IOException {
+        RestServiceImpl service = new RestServiceImpl(new InMemoryDinosaurioRepository());
+        String json = "{\"Dinosaurio\":\"Ankylosaurus\"}";
+        service.handlePost(new BufferedReader(new StringReader("Content-Length: " + json.length() + "\r\n\r\n" + json)), mock(OutputStream.class));
+
+        String[] first = get(service, "/api/dinosaurio");
+        String etag = first[0].split("ETag: ")[1].split("\r\n")[0];
+        assertTrue(first[1].contains("Ankylosaurus"));
+
+        OutputStream out = mock(OutputStream.class);
+        service.handleGet(new String[]{"GET", "/api/dinosaurio", "HTTP/1.1"},
+                new BufferedReader(new StringReader("If-None-Match: " + etag + "\r\n\r\n")), out, mock(Socket.class));
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(out, times(1)).write(captor.capture());
+        assertTrue(new String(captor.getValue()).contains("HTTP/1.1 304 Not Modified"));
+
+        service.handleDelete(new BufferedReader(new StringReader("\r\n")), mock(OutputStream.class), 1);
+        String[] afterDelete = get(service, "/api/dinosaurio");
+        assertTrue(afterDelete[1].contains("[]"));
+        assertTrue(!afterDelete[0].contains(etag));
+    }
+
+    /**
+     * Verifica que el cuerpo se interpreta como JSON real (espacios, escapes y unicode), que la respuesta
+     * escapa el nombre y que un cuerpo sin el campo {@code Dinosaurio} responde 400 en lugar de fallar.
+     * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
+     */
+    @Test
+    public void test08HandlePostJsonParsing() throws IOException {
+        RestServiceImpl service = new RestServiceImpl(new InMemoryDinosaurioRepository());
+        String json = "{ \"otro\": [1, {\"a\": null}],\n  \"Dinosaurio\" : \"T. \\\"Rex\\\" \\u00d1and\u00fa\" }";
+        String[] created = post(service, json);
+        assertTrue(created[0].contains("HTTP/1.1 201 Created"));
+        assertTrue(created[1].contains("\"Dinosaurio\": \"T. \\\"Rex\\\" \u00d1and\u00fa\" }"));
+        assertTrue(getById(service, 1)[1].contains("T. \\\"Rex\\\""));
+
+        assertTrue(post(service, "{\"nombre\":\"Rex\"}")[0].contains("HTTP/1.1 400 Bad Request"));
+        assertTrue(post(service, "{\"Dinosaurio\": 5}")[0].contains("HTTP/1.1 400 Bad Request"));
+        assertTrue(post(service, "no es json")[0].contains("HTTP/1.1 400 Bad Request"));
+    }
+
+    private static String[] post(RestServiceImpl service, String json) throws IOException {
+        OutputStream out = mock(OutputStream.class);
+        int length = json.getBytes(StandardCharsets.UTF_8).length;
+        service.handlePost(new BufferedReader(new StringReader("Content-Length: " + length + "\r\n\r\n" + json)), out);
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(out, times(2)).write(captor.capture());
+        return new String[]{new String(captor.getAllValues().get(0), StandardCharsets.UTF_8),
+                new String(captor.getAllValues().get(1), StandardCharsets.UTF_8)};
+    }
+
+    /**
+     * Verifica la carga y el borrado en lote con arreglos JSON y NDJSON, y que un registro inválido
+     * responde 400 sin aplicar el lote en curso.
+     * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
+     */
+    @Test
+    public void test09BulkEndpoints() throws IOException {
+        RestServiceImpl service = new RestServiceImpl(new InMemoryDinosaurioRepository());
+
+        String created = bulk(service, true, "[{\"Dinosaurio\": \"Rex\"}, {\"Dinosaurio\": \"Raptor\"}]");
+        assertTrue(created.contains("HTTP/1.1 201 Created"));
+        assertTrue(created.contains("{ \"created\": 2, \"ids\": [1,2] }"));
+        assertTrue(bulk(service, true, "{\"Dinosaurio\": \"Trex\"}\n{\"Dinosaurio\": \"Stego\"}\n").contains("\"ids\": [3,4]"));
+
+        String invalid = bulk(service, true, "{\"Dinosaurio\": \"Uno\"}\n{\"nombre\": \"Dos\"}\n");
+        assertTrue(invalid.contains("HTTP/1.1 400 Bad Request"));
+        assertTrue(invalid.contains("\"created\": 0"));
+        assertTrue(get(service, "/api/dinosaurio")[1].contains("Stego") && !get(service, "/api/dinosaurio")[1].contains("Uno"));
+
+        String deleted = bulk(service, false, "[1, {\"id\": 3}, 42]");
+        assertTrue(deleted.contains("HTTP/1.1 200 OK"));
+        assertTrue(deleted.contains("{ \"deleted\": 2, \"ids\": [1,3] }"));
+        assertTrue(getById(service, 1)[0].contains("404 Not Found"));
+    }
+
+    private static String bulk(RestServiceImpl service, boolean create, String body) throws IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        java.io.InputStream in = new java.io.ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        if (create) {
+            service.handleBulkCreate(in, out);
+        } else {
+            service.handleBulkDelete(in, out);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Verifica la exportación en streaming: arreglo JSON con {@code Transfer-Encoding: chunked} y NDJSON sin trozos
+     * para clientes HTTP/1.0.
+     * @throws IOException  Si ocurre un error de entrada/salida durante la comunicación HTTP.
+     */
+    @Test
+    public void test10HandleExport() throws IOException {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        for (int i = 1; i <= 2500; i++) {
+            repository.create("Dino" + i);
+        }
+        repository.delete(1000);
+        RestServiceImpl service = new RestServiceImpl(repository);
+
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        service.handleExport("/api/dinosaurio/export", null, true, out);
+        String response = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        int bodyStart = response.indexOf("\r\n\r\n") + 4;
+        assertTrue(response.substring(0, bodyStart).contains("Transfer-Encoding: chunked"));
+        StringBuilder body = new StringBuilder();
+        for (int pos = bodyStart; ; ) {
+            int lineEnd = response.indexOf("\r\n", pos);
+            int size = Integer.parseInt(response.substring(pos, lineEnd), 16);
+            if (size == 0) {
+                assertEquals(lineEnd + 4, response.length());
+                break;
+            }
+            body.append(response, lineEnd + 2, lineEnd + 2 + size);
+            pos = lineEnd + 2 + size + 2;
+        }
+        assertTrue(body.toString().startsWith("[{ \"id\": 1, "));
+        assertTrue(body.toString().endsWith("\"Dinosaurio\": \"Dino2500\" }]"));
+        assertFalse(body.toString().contains("\"id\": 1000,"));
+
+        out.reset();
+        service.handleExport("/api/dinosaurio/export?format=ndjson", null, false, out);
+        response = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(response.contains("Connection: close\r\n"));
+        String[] lines = response.substring(response.indexOf("\r\n\r\n") + 4).split("\n");
+        assertEquals(2499, lines.length);
+        assertEquals("{ \"id\": 2500, \"status\": \"Dino received\", \"Dinosaurio\": \"Dino2500\" }", lines[2498]);
+    }
 }
@@ -0,0 +1,46 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas unitarias de la interpretación del encabezado Range.
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void testExplicitRange() {
+        ByteRange range = ByteRange.parse("bytes=0-499", 1000);
+        assertEquals(0, range.start);
+        assertEquals(499, range.end);
+        assertEquals(500, range.length());
+    }
+
+    @Test
+    public void testOpenEndedAndSuffixRanges() {
+        ByteRange open = ByteRange.parse("bytes=900-", 1000);
+        assertEquals(900, open.start);
+        assertEquals(999, open.end);
+
+        ByteRange suffix = ByteRange.parse("bytes=-100", 1000);
+        assertEquals(900, suffix.start);
+        assertEquals(999, suffix.end);
+
+        ByteRange clamped = ByteRange.parse("bytes=990-5000", 1000);
+        assertEquals(999, clamped.end);
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000));
+    }
+
+    @Test
+    public void testIgnoredRanges() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=0-1,5-6", 1000));
+        assertNull(ByteRange.parse("bytes=500-100", 1000));
+        assertNull(ByteRange.parse("bytes=abc-", 1000));
+    }
+}
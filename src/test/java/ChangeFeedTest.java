@@ -0,0 +1,124 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del flujo de cambios compartido y de los cursores de los suscriptores.
+ */
+public class ChangeFeedTest {
+
+    private static String pull(ChangeFeed.Subscription subscription) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(subscription.pull(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String lastId(String events) {
+        int start = events.lastIndexOf("id: ") + 4;
+        return events.substring(start, events.indexOf('\n', start));
+    }
+
+    /**
+     * Un suscriptor recibe solo los cambios posteriores a su suscripción, y al reconectarse con
+     * {@code Last-Event-ID} continúa después del último que recibió.
+     */
+    @Test
+    public void deliversNewEventsAndResumes() throws Exception {
+        ChangeFeed feed = new ChangeFeed(8, ChangeFeed.Overflow.DROP);
+        feed.publish("created", new Dinosaurio(1, "Rex"));
+        ChangeFeed.Subscription subscription = feed.subscribe(null);
+        feed.publish("updated", new Dinosaurio(1, "Raptor"));
+
+        String events = pull(subscription);
+        assertTrue(events, events.matches("id: \\w+-2\nevent: updated\ndata: \\{.*\"Raptor\" }\n\n"));
+        assertEquals("", pull(subscription));
+
+        feed.publish("deleted", new Dinosaurio(1, "Raptor"));
+        String resumed = pull(feed.subscribe(lastId(events)));
+        assertTrue(resumed.startsWith("id: ") && resumed.contains("event: deleted\n"));
+        assertFalse(resumed.contains("event: updated"));
+    }
+
+    /**
+     * Un id desconocido, o uno que ya salió del buffer, produce un evento {@code reset}.
+     */
+    @Test
+    public void resetsUnknownOrExpiredIds() throws Exception {
+        ChangeFeed feed = new ChangeFeed(4, ChangeFeed.Overflow.DROP);
+        feed.publish("created", new Dinosaurio(1, "Rex"));
+        String first = pull(feed.subscribe("0-0"));
+        assertEquals("event: reset\ndata: {}\n\n", first);
+
+        ChangeFeed.Subscription old = feed.subscribe(null);
+        for (int i = 2; i <= 6; i++) {
+            feed.publish("created", new Dinosaurio(i, "Rex"));
+        }
+        ChangeFeed.Subscription start = feed.subscribe(null);
+        assertEquals("", pull(start));
+        assertTrue(pull(old).startsWith("event: reset\n"));
+        assertEquals(1, feed.lapped());
+    }
+
+    /**
+     * Con la política {@code DISCONNECT} el suscriptor lento se desconecta, y al cerrar el flujo terminan todos.
+     */
+    @Test
+    public void disconnectsSlowSubscribers() throws Exception {
+        ChangeFeed feed = new ChangeFeed(2, ChangeFeed.Overflow.DISCONNECT);
+        ChangeFeed.Subscription slow = feed.subscribe(null);
+        ChangeFeed.Subscription fast = feed.subscribe(null);
+        feed.publish("created", new Dinosaurio(1, "Rex"));
+        assertTrue(pull(fast).contains("event: created"));
+        feed.publish("created", new Dinosaurio(2, "Rex"));
+        feed.publish("created", new Dinosaurio(3, "Rex"));
+        assertFalse(slow.pull(new ByteArrayOutputStream()));
+
+        feed.close();
+        assertFalse(fast.pull(new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Sin {@link PushSink} cada suscriptor ocupa el hilo que escribe; pasado el límite se responde 503, y el
+     * lugar se libera al terminar el flujo.
+     */
+    @Test
+    public void rejectsBlockingSubscribersOverLimit() throws Exception {
+        ChangeFeed feed = new ChangeFeed(8, ChangeFeed.Overflow.DROP, 1);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        Thread holder = new Thread(() -> {
+            try {
+                feed.subscribe(null).writeTo(first);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        holder.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (feed.subscribers() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, feed.subscribers());
+
+        ByteArrayOutputStream rejected = new ByteArrayOutputStream();
+        feed.subscribe(null).writeTo(rejected);
+        String response = new String(rejected.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(response, response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+        assertTrue(response.contains("Retry-After: 5\r\n"));
+        assertEquals(1, feed.rejected());
+
+        feed.close();
+        holder.join(5000);
+        assertFalse(holder.isAlive());
+        ByteArrayOutputStream after = new ByteArrayOutputStream();
+        feed.subscribe(null).writeTo(after);
+        assertTrue(new String(after.toByteArray(), StandardCharsets.UTF_8).startsWith("HTTP/1.1 200 OK\r\n"));
+        assertEquals(1, feed.rejected());
+    }
+}
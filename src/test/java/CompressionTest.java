@@ -0,0 +1,82 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Pruebas de la negociación y la compresión de respuestas.
+ */
+public class CompressionTest {
+
+    private static byte[] sample() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= 500; i++) {
+            json.append("{ \"id\": ").append(i).append(", \"Dinosaurio\": \"Dino").append(i).append("\" },");
+        }
+        return json.append("{}]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) >= 0; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Se prefiere gzip, se respeta {@code q=0} y sin codificaciones aceptables no se comprime.
+     */
+    @Test
+    public void negotiatesEncoding() {
+        assertEquals("gzip", Compression.negotiate("deflate, gzip;q=0.5"));
+        assertEquals("deflate", Compression.negotiate("gzip;q=0, deflate"));
+        assertEquals("gzip", Compression.negotiate("*"));
+        assertNull(Compression.negotiate("br, identity"));
+        assertNull(Compression.negotiate("gzip;q=0.0"));
+        assertNull(Compression.negotiate(null));
+    }
+
+    /**
+     * Los bloques comprimidos se leen con los decodificadores estándar de gzip y zlib.
+     */
+    @Test
+    public void compressesWholeBodies() throws IOException {
+        byte[] data = sample();
+        byte[] gzip = Compression.compress("gzip", data, 0, data.length);
+        assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+        byte[] deflate = Compression.compress("deflate", data, 0, data.length);
+        assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(deflate))));
+    }
+
+    /**
+     * El flujo compresor produce el mismo formato escribiendo en partes y registra los bytes enviados.
+     */
+    @Test
+    public void compressesStreams() throws IOException {
+        byte[] data = sample();
+        Metrics metrics = new Metrics();
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream gzip = Compression.compressingStream("gzip", sink, metrics);
+        for (int off = 0; off < data.length; off += 1000) {
+            gzip.write(data, off, Math.min(1000, data.length - off));
+            gzip.flush();
+        }
+        gzip.close();
+        assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(sink.toByteArray()))));
+        assertEquals(sink.size(), metrics.compressedBytes());
+        assertEquals(data.length, metrics.uncompressedBytes());
+        assertEquals(1, metrics.compressedResponses());
+    }
+}
@@ -0,0 +1,323 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del almacén persistente: recuperación desde el log, instantáneas y colas corruptas.
+ */
+public class DurableDinosaurioRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DurableDinosaurioRepository open(Path dir, WriteAheadLog.FsyncPolicy policy) throws IOException {
+        return new DurableDinosaurioRepository(dir, policy, 50, 0);
+    }
+
+    /**
+     * Verifica que las operaciones sobreviven a un reinicio reproduciendo el log.
+     */
+    @Test
+    public void testRecoversFromLog() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            repository.create("Triceratops");
+            repository.create("Stegosaurus");
+            repository.create("Raptor");
+            repository.update(2, "Ankylosaurus");
+            repository.delete(3);
+        }
+
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertEquals(2, repository.size());
+            assertEquals("Triceratops", repository.findById(1).getName());
+            assertEquals("Ankylosaurus", repository.findById(2).getName());
+            assertNull(repository.findById(3));
+            // El id eliminado no se reutiliza
+            assertEquals(4, repository.create("Diplodocus").getId());
+        }
+    }
+
+    /**
+     * Verifica que la instantánea más la cola del log reconstruyen el estado y que el log compactado se borra.
+     */
+    @Test
+    public void testRecoversFromSnapshotAndLogTail() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.GROUP)) {
+            for (int i = 0; i < 10; i++) {
+                repository.create("Dino" + i);
+            }
+            repository.delete(10);
+            repository.compact();
+            repository.update(1, "Brachiosaurus");
+            repository.create("Iguanodon");
+        }
+        assertTrue(Files.exists(dir.resolve("snapshot.dat")));
+        assertEquals(1, walFiles(dir).size());
+
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.GROUP)) {
+            assertEquals(10, repository.size());
+            assertEquals("Brachiosaurus", repository.findById(1).getName());
+            assertNull(repository.findById(10));
+            assertEquals("Iguanodon", repository.findById(11).getName());
+        }
+    }
+
+    /**
+     * Verifica que una escritura interrumpida al final del log se descarta sin perder las anteriores.
+     */
+    @Test
+    public void testTruncatesTornTail() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            repository.create("Triceratops");
+            repository.create("Stegosaurus");
+        }
+        Path wal = walFiles(dir).get(0);
+        long size = Files.size(wal);
+        try (FileChannel channel = FileChannel.open(wal, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertEquals(1, repository.size());
+            assertEquals("Triceratops", repository.findById(1).getName());
+        }
+    }
+
+    /**
+     * Verifica que las escrituras concurrentes con group commit quedan todas en el log.
+     */
+    @Test
+    public void testGroupCommitUnderConcurrency() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.GROUP)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Thread writer = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        repository.create("Dino");
+                    }
+                });
+                writer.start();
+                writers.add(writer);
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.GROUP)) {
+            assertEquals(400, repository.size());
+        }
+    }
+
+    /**
+     * Verifica que una escritura que falla a medio registro no queda visible en memoria, que el registro roto se
+     * quita del archivo y que las escrituras siguientes se recuperan al reiniciar.
+     */
+    @Test
+    public void testFailedAppendIsNotApplied() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        FailingLog log = new FailingLog(dir);
+        try (DurableDinosaurioRepository repository = new DurableDinosaurioRepository(dir, log, 0)) {
+            repository.create("Triceratops");
+            log.failWrites = true;
+            try {
+                repository.create("Stegosaurus");
+                fail("La creacion debia fallar");
+            } catch (UncheckedIOException expected) {
+                // el canal rechazo la escritura
+            }
+            try {
+                repository.delete(1);
+                fail("La eliminacion debia fallar");
+            } catch (UncheckedIOException expected) {
+                // el canal rechazo la escritura
+            }
+            assertNull(repository.findById(2));
+            assertEquals("Triceratops", repository.findById(1).getName());
+            assertEquals(1, repository.size());
+
+            log.failWrites = false;
+            assertEquals(2, repository.create("Raptor").getId());
+        }
+
+        try (DurableDinosaurioRepository repository = open(dir, WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertEquals(2, repository.size());
+            assertEquals("Triceratops", repository.findById(1).getName());
+            assertEquals("Raptor", repository.findById(2).getName());
+        }
+    }
+
+    /**
+     * Verifica que si no se puede quitar un registro roto el log rechaza las escrituras siguientes.
+     */
+    @Test
+    public void testRejectsAppendsWhenTruncateFails() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        FailingLog log = new FailingLog(dir);
+        try (DurableDinosaurioRepository repository = new DurableDinosaurioRepository(dir, log, 0)) {
+            repository.create("Triceratops");
+            log.failWrites = true;
+            log.failTruncate = true;
+            try {
+                repository.create("Stegosaurus");
+                fail("La creacion debia fallar");
+            } catch (UncheckedIOException expected) {
+                // el canal rechazo la escritura
+            }
+
+            log.failWrites = false;
+            log.failTruncate = false;
+            try {
+                repository.create("Raptor");
+                fail("El log fallido debia rechazar la escritura");
+            } catch (UncheckedIOException expected) {
+                // el log quedo inutilizable
+            }
+            assertEquals(1, repository.size());
+        }
+    }
+
+    private static List<Path> walFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("wal-")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // Log cuyo canal escribe unos pocos bytes y luego falla, como un disco lleno a medio registro
+    private static class FailingLog extends WriteAheadLog {
+
+        volatile boolean failWrites;
+        volatile boolean failTruncate;
+
+        FailingLog(Path dir) {
+            super(dir, FsyncPolicy.ALWAYS, 50);
+        }
+
+        @Override
+        FileChannel openGeneration(long gen) throws IOException {
+            return new FailingChannel(super.openGeneration(gen));
+        }
+
+        private class FailingChannel extends FileChannel {
+
+            private final FileChannel delegate;
+
+            FailingChannel(FileChannel delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (!failWrites) return delegate.write(src);
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + Math.min(5, part.remaining()));
+                delegate.write(part);
+                throw new IOException("No queda espacio en el dispositivo");
+            }
+
+            @Override
+            public FileChannel truncate(long size) throws IOException {
+                if (failTruncate) throw new IOException("No se pudo truncar");
+                delegate.truncate(size);
+                return this;
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return delegate.read(dst);
+            }
+
+            @Override
+            public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+                return delegate.read(dsts, offset, length);
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                return delegate.write(srcs, offset, length);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return delegate.position();
+            }
+
+            @Override
+            public FileChannel position(long newPosition) throws IOException {
+                delegate.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return delegate.size();
+            }
+
+            @Override
+            public void force(boolean metaData) throws IOException {
+                delegate.force(metaData);
+            }
+
+            @Override
+            public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+                return delegate.transferTo(position, count, target);
+            }
+
+            @Override
+            public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+                return delegate.transferFrom(src, position, count);
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return delegate.read(dst, position);
+            }
+
+            @Override
+            public int write(ByteBuffer src, long position) throws IOException {
+                return delegate.write(src, position);
+            }
+
+            @Override
+            public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+                return delegate.map(mode, position, size);
+            }
+
+            @Override
+            public FileLock lock(long position, long size, boolean shared) throws IOException {
+                return delegate.lock(position, size, shared);
+            }
+
+            @Override
+            public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+                return delegate.tryLock(position, size, shared);
+            }
+
+            @Override
+            protected void implCloseChannel() throws IOException {
+                delegate.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas del analizador de solicitudes HTTP a nivel de bytes.
+ */
+public class HttpRequestParserTest {
+
+    private static void feed(HttpRequestParser parser, String text) {
+        parser.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * La solicitud llega byte a byte y en pipeline; el cuerpo se cuenta en bytes aunque tenga caracteres multibyte.
+     */
+    @Test
+    public void parsesIncrementallyAndCountsBodyInBytes() {
+        String json = "{\"Dinosaurio\":\"\u00d1and\u00fa\"}";
+        int length = json.getBytes(StandardCharsets.UTF_8).length;
+        String requests = "POST /api/dinosaurio HTTP/1.1\r\ncontent-LENGTH: " + length + "\r\nX-Uno:  a \r\nx-uno: b\r\n\r\n" + json
+                + "\r\nGET /index.html HTTP/1.0\r\n\r\n";
+        byte[] bytes = requests.getBytes(StandardCharsets.UTF_8);
+
+        HttpRequestParser parser = new HttpRequestParser();
+        List<HttpRequestParser.Request> parsed = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i++) {
+            parser.feed(ByteBuffer.wrap(bytes, i, 1));
+            HttpRequestParser.Request request = parser.next();
+            if (request != null) parsed.add(request);
+        }
+        assertEquals(2, parsed.size());
+        HttpRequestParser.Request first = parsed.get(0);
+        assertEquals("POST", first.method());
+        assertEquals(String.valueOf(length), first.header("Content-Length"));
+        assertEquals("a, b", first.header("X-UNO"));
+        assertEquals(json, new String(first.body(), StandardCharsets.UTF_8));
+        assertTrue(first.keepAlive);
+
+        HttpRequestParser.Request second = parsed.get(1);
+        assertEquals("/index.html", second.target());
+        assertEquals(0, second.body().length);
+        assertFalse(second.keepAlive);
+        assertFalse(parser.hasBufferedData());
+    }
+
+    /**
+     * El cuerpo con {@code Transfer-Encoding: chunked} se decodifica, ignorando extensiones y encabezados finales.
+     */
+    @Test
+    public void decodesChunkedBody() throws IOException {
+        String request = "PUT /api/dinosaurio/1 HTTP/1.1\r\nTransfer-Encoding: chunked\r\nExpect: 100-continue\r\n\r\n";
+        HttpRequestParser parser = new HttpRequestParser();
+        feed(parser, request);
+        assertNull(parser.next());
+        assertTrue(parser.takeContinue());
+        assertFalse(parser.takeContinue());
+
+        parser.readFrom(new ByteArrayInputStream("5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nX-Fin: 1\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+        HttpRequestParser.Request parsed = parser.next();
+        assertArrayEquals("hello world".getBytes(StandardCharsets.US_ASCII), parsed.body());
+        assertNull(parsed.header("X-Fin"));
+    }
+
+    /**
+     * Las rutas que lo piden reciben la solicitud al llegar la cabecera y leen el cuerpo del flujo, sin límite de
+     * tamaño; los bytes de la siguiente solicitud quedan en el analizador.
+     */
+    @Test
+    public void streamsBodyWhenRequested() throws IOException {
+        HttpRequestParser parser = new HttpRequestParser(4, head -> head.target().endsWith("/bulk"));
+        feed(parser, "POST /api/dinosaurio/bulk HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n");
+        HttpRequestParser.Request request = parser.next();
+        assertTrue(request.streaming);
+        assertTrue(parser.isStreaming());
+
+        byte[] rest = "4\r\ndefg\r\n0\r\n\r\nGET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayInputStream connection = new ByteArrayInputStream(rest);
+        java.io.InputStream body = parser.openBody(p -> p.readFrom(connection));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        byte[] chunk = new byte[2];
+        for (int n; (n = body.read(chunk, 0, chunk.length)) >= 0; ) {
+            read.write(chunk, 0, n);
+        }
+        assertEquals("abcdefg", read.toString("US-ASCII"));
+        assertFalse(parser.isStreaming());
+        assertEquals("GET", parser.next().method());
+    }
+
+    /**
+     * Las solicitudes inválidas o que superan los límites se rechazan con el código adecuado.
+     */
+    @Test
+    public void enforcesLimitsAndRejectsInvalidRequests() {
+        assertStatus(413, new HttpRequestParser(10), "POST / HTTP/1.1\r\nContent-Length: 11\r\n\r\n");
+        assertStatus(413, new HttpRequestParser(10), "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n8\r\n12345678\r\n8\r\n");
+        assertStatus(400, new HttpRequestParser(), "POST / HTTP/1.1\r\nContent-Length: 3\r\nTransfer-Encoding: chunked\r\n\r\n");
+        assertStatus(400, new HttpRequestParser(), "POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        assertStatus(400, new HttpRequestParser(), "POST / HTTP/1.1\r\nContent-Length: 1\r\nContent-Length: 2\r\n\r\n");
+        assertStatus(400, new HttpRequestParser(), "GET /\r\n\r\n");
+        assertStatus(400, new HttpRequestParser(), "GET / HTTP/1.1\r\nSin dos puntos\r\n\r\n");
+        assertStatus(501, new HttpRequestParser(), "POST / HTTP/1.1\r\nTransfer-Encoding: gzip\r\n\r\n");
+
+        StringBuilder huge = new StringBuilder("GET / HTTP/1.1\r\n");
+        while (huge.length() <= HttpRequestParser.MAX_HEAD_SIZE) {
+            huge.append("X-Relleno: 0123456789012345678901234567890123456789\r\n");
+        }
+        assertStatus(431, new HttpRequestParser(), huge.toString());
+    }
+
+    private static void assertStatus(int status, HttpRequestParser parser, String request) {
+        try {
+            feed(parser, request);
+            parser.next();
+            fail("Se esperaba el estado " + status);
+        } catch (HttpRequestParser.BadRequestException e) {
+            assertEquals(status, e.status);
+            assertTrue(new String(e.toResponse(), StandardCharsets.US_ASCII).startsWith("HTTP/1.1 " + status + " "));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas unitarias del almacén en memoria de dinosaurios.
+ */
+public class InMemoryDinosaurioRepositoryTest {
+
+    /**
+     * Verifica que las operaciones por id no confunden ids con prefijos comunes (1 y 11).
+     */
+    @Test
+    public void testOperationsTargetExactId() {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        for (int i = 1; i <= 11; i++) {
+            repository.create("Dino" + i);
+        }
+
+        repository.update(1, "Triceratops");
+        repository.delete(11);
+
+        assertEquals("Triceratops", repository.findById(1).getName());
+        assertNull(repository.findById(11));
+        assertEquals("Dino10", repository.findById(10).getName());
+        assertEquals(10, repository.size());
+    }
+
+    /**
+     * Verifica que actualizar o eliminar un id inexistente no altera el almacén.
+     */
+    @Test
+    public void testMissingIds() {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        repository.create("Rex");
+
+        assertNull(repository.update(42, "Raptor"));
+        assertNull(repository.delete(42));
+        assertEquals(1, repository.size());
+    }
+
+    /**
+     * Verifica que los POST concurrentes generan ids únicos y consecutivos.
+     */
+    @Test
+    public void testConcurrentCreates() throws InterruptedException {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        int threads = 8;
+        int perThread = 1000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    repository.create("Dino");
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<Dinosaurio> all = repository.findAll();
+        assertEquals(threads * perThread, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i + 1, all.get(i).getId());
+        }
+    }
+
+    /**
+     * Verifica que el índice por nombre y la paginación por cursor siguen las actualizaciones y eliminaciones.
+     */
+    @Test
+    public void testIndexesFollowMutations() {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        repository.create("Triceratops");
+        repository.create("Stegosaurus");
+        repository.create("Tyrannosaurus");
+
+        repository.update(2, "Torosaurus");
+        repository.delete(1);
+
+        List<Dinosaurio> withT = repository.findByNamePrefix("T", 0, 10);
+        assertEquals(2, withT.size());
+        assertEquals("Torosaurus", withT.get(0).getName());
+        assertEquals("Tyrannosaurus", withT.get(1).getName());
+        assertTrue(repository.findByNamePrefix("st", 0, 10).isEmpty());
+
+        List<Dinosaurio> page = repository.findPage(0, 1);
+        assertEquals(2, page.get(0).getId());
+        assertEquals(3, repository.findPage(2, 10).get(0).getId());
+        assertEquals(3, repository.findRange(1, 10).get(0).getId());
+    }
+
+    /**
+     * Verifica que los lotes usan ids consecutivos, actualizan los índices y cambian la versión una sola vez.
+     */
+    @Test
+    public void testBatchOperations() {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        repository.create("Rex");
+        long version = repository.version();
+
+        List<Dinosaurio> created = repository.createAll(java.util.Arrays.asList("Ankylosaurus", "Allosaurus", "Brachiosaurus"));
+        assertEquals(3, created.size());
+        assertEquals(2, created.get(0).getId());
+        assertEquals(4, created.get(2).getId());
+        assertEquals(version + 1, repository.version());
+        assertEquals(2, repository.findByNamePrefix("a", 0, 10).size());
+
+        List<Dinosaurio> deleted = repository.deleteAll(new int[]{2, 99, 4, 0}, 3);
+        assertEquals(2, deleted.size());
+        assertEquals(version + 2, repository.version());
+        assertEquals(2, repository.size());
+        assertEquals(5, repository.create("Diplodocus").getId());
+    }
+}
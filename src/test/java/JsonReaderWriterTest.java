@@ -0,0 +1,103 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas del lector y el escritor JSON en streaming.
+ */
+public class JsonReaderWriterTest {
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * El escritor conserva el formato de la API y escapa comillas, control, unicode y sustitutos sueltos.
+     */
+    @Test
+    public void writerEscapesAndKeepsFormat() {
+        JsonWriter json = new JsonWriter(16);
+        json.beginArray();
+        json.beginObject().name("id").value(7).name("Dinosaurio").value("a\"b\\c\n\u0001\u00f1\ud83e\udd95").endObject();
+        json.beginObject().endObject();
+        json.value(-42).value(Long.MIN_VALUE).value((String) null);
+        json.endArray();
+
+        assertEquals("[{ \"id\": 7, \"Dinosaurio\": \"a\\\"b\\\\c\\n\\u0001\u00f1\ud83e\udd95\" },{},-42,-9223372036854775808,null]",
+                json.toString());
+        assertEquals("\"\\udc00\"", new JsonWriter().value("\udc00").toString());
+    }
+
+    /**
+     * El lector recorre objetos y arreglos anidados con espacios arbitrarios y decodifica los escapes.
+     */
+    @Test
+    public void readerParsesNestedDocument() throws IOException {
+        JsonReader reader = new JsonReader(utf8(
+                " { \"n\" : -12 ,\"ok\":true, \"skip\": {\"x\": [1, 2.5e3, \"}\"]}, \"s\": \"\\u00d1\\ud83e\\udd95\\/\u00e9\", \"z\": null, \"a\": [] } "));
+        reader.beginObject();
+        assertEquals("n", reader.nextName());
+        assertEquals(-12, reader.nextLong());
+        assertEquals("ok", reader.nextName());
+        assertEquals(true, reader.nextBoolean());
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("s", reader.nextName());
+        assertEquals("\u00d1\ud83e\udd95/\u00e9", reader.nextString());
+        assertEquals("z", reader.nextName());
+        reader.nextNull();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    /**
+     * {@code findString} devuelve {@code null} ante claves ausentes, valores que no son texto o JSON mal formado.
+     */
+    @Test
+    public void findStringToleratesBadInput() {
+        byte[] ok = utf8("{\"a\": 1, \"Dinosaurio\": \"Rex\"}");
+        assertEquals("Rex", JsonReader.findString(ok, 0, ok.length, "Dinosaurio"));
+        assertNull(JsonReader.findString(ok, 0, ok.length, "b"));
+        assertNull(JsonReader.findString(ok, 0, ok.length, "a"));
+        for (String bad : new String[]{"", "{", "{\"Dinosaurio\": \"Rex", "{\"Dinosaurio\" \"Rex\"}", "[\"Dinosaurio\"]", "{\"a\": 1,}"}) {
+            byte[] bytes = utf8(bad);
+            assertNull(bad, JsonReader.findString(bytes, 0, bytes.length, "Dinosaurio"));
+        }
+        assertEquals("Rex", RestServiceImpl.extractValue(new StringBuilder("{ \"Dinosaurio\" : \"Rex\" }"), "Dinosaurio"));
+        assertNull(RestServiceImpl.extractValue(new StringBuilder("{}"), "Dinosaurio"));
+    }
+
+    /**
+     * Los errores de sintaxis se informan como {@link JsonReader.MalformedJsonException}.
+     */
+    @Test
+    public void readerRejectsInvalidUtf8AndControlChars() {
+        byte[][] inputs = {
+                {'"', (byte) 0xC3, '"'},
+                {'"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"'},
+                {'"', 0x01, '"'},
+                utf8("\"\\x\""),
+        };
+        for (byte[] input : inputs) {
+            try {
+                new JsonReader(input).nextString();
+                fail("Se esperaba un error de sintaxis");
+            } catch (JsonReader.MalformedJsonException expected) {
+                // esperado
+            } catch (IOException e) {
+                fail(e.toString());
+            }
+        }
+    }
+}
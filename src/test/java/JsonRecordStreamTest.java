@@ -0,0 +1,72 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Pruebas de la separación incremental de registros JSON y NDJSON.
+ */
+public class JsonRecordStreamTest {
+
+    // Entrega un byte por lectura para ejercitar los cortes entre lecturas
+    private static InputStream slow(String text) {
+        ByteArrayInputStream in = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+        return new InputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, Math.min(1, len));
+            }
+        };
+    }
+
+    private static List<String> records(String text, int maxRecordSize) throws IOException {
+        JsonRecordStream stream = new JsonRecordStream(slow(text), maxRecordSize);
+        List<String> records = new ArrayList<>();
+        while (stream.next()) {
+            records.add(new String(stream.buffer(), stream.offset(), stream.length(), StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+
+    @Test
+    public void splitsArraysAndNdjson() throws IOException {
+        assertEquals(3, records(" [ {\"a\": \"x,]}\\\"\"}, {\"b\": [1, {\"c\": 2}]} ,7 ] ", 64).size());
+        assertEquals("{\"b\": [1, {\"c\": 2}]}", records("[{\"a\": 1},{\"b\": [1, {\"c\": 2}]}]", 64).get(1));
+        assertEquals(new ArrayList<String>(), records(" [ ] ", 64));
+        List<String> lines = records("{\"a\": 1}\r\n\n  {\"b\": 2}", 64);
+        assertEquals(2, lines.size());
+        assertEquals("{\"b\": 2}", lines.get(1));
+    }
+
+    @Test
+    public void rejectsMalformedOrOversizedInput() throws IOException {
+        for (String bad : new String[]{"[{\"a\": 1}", "[1,]", "[1 ,, 2]", "[1] 2"}) {
+            try {
+                records(bad, 64);
+                fail("Se esperaba un error: " + bad);
+            } catch (JsonReader.MalformedJsonException expected) {
+                // esperado
+            }
+        }
+        StringBuilder big = new StringBuilder("[\"");
+        for (int i = 0; i < 20000; i++) big.append('x');
+        try {
+            records(big.append("\"]").toString(), 16 * 1024);
+            fail("Se esperaba un error por tamano");
+        } catch (JsonReader.MalformedJsonException expected) {
+            // esperado
+        }
+    }
+}
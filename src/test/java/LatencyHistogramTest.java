@@ -0,0 +1,44 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del histograma de latencias.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Cada valor cae en una cubeta cuyo límite superior está a menos de 1/16 de él, en cualquier escala.
+     */
+    @Test
+    public void bucketsKeepRelativePrecision() {
+        long[] values = {0, 1, 15, 16, 17, 1000, 123_456, 5_000_000_000L, Long.MAX_VALUE};
+        for (long value : values) {
+            long upper = LatencyHistogram.highestEquivalent(LatencyHistogram.bucket(value));
+            assertTrue(value + " -> " + upper, upper >= value);
+            assertTrue(value + " -> " + upper, upper - value <= value / 16);
+        }
+        assertEquals(LatencyHistogram.bucket(1000) + 1, LatencyHistogram.bucket(LatencyHistogram.highestEquivalent(LatencyHistogram.bucket(1000)) + 1));
+    }
+
+    /**
+     * Los percentiles salen de las cubetas y no superan el máximo registrado.
+     */
+    @Test
+    public void computesPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(500_500_000L, histogram.sum());
+        long median = histogram.percentile(0.5);
+        assertTrue(String.valueOf(median), median >= 500_000 && median <= 500_000 + 500_000 / 16);
+        assertEquals(1_000_000, histogram.percentile(1.0));
+    }
+}
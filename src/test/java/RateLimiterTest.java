@@ -0,0 +1,72 @@
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas del limitador de tasa por cliente y del control de admisión de conexiones.
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Se admite una ráfaga del tamaño de la cubeta y después un token por intervalo, con cubetas separadas por clave.
+     */
+    @Test
+    public void admitsBurstThenSteadyRate() {
+        RateLimiter limiter = new RateLimiter(10, 3);
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a", now));
+        }
+        long wait = limiter.tryAcquire("a", now);
+        assertEquals(SECOND / 10, wait);
+        assertEquals(1, RateLimiter.retryAfterSeconds(wait));
+        assertEquals(0, limiter.tryAcquire("b", now));
+
+        assertEquals(0, limiter.tryAcquire("a", now + wait));
+        assertTrue(limiter.tryAcquire("a", now + wait) > 0);
+    }
+
+    /**
+     * Las cubetas que ya se recargaron por completo se eliminan en el barrido periódico.
+     */
+    @Test
+    public void evictsIdleBuckets() {
+        RateLimiter limiter = new RateLimiter(1, 1);
+        long now = System.nanoTime();
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+        assertEquals(2, limiter.size());
+
+        limiter.tryAcquire("c", now + 11 * SECOND);
+        assertEquals(1, limiter.size());
+    }
+
+    /**
+     * Las conexiones se limitan por cliente (429) y en total (503), y liberarlas vuelve a admitir.
+     */
+    @Test
+    public void limitsConnectionsPerClientAndInTotal() throws Exception {
+        ConnectionLimiter limiter = new ConnectionLimiter(3, 2);
+        InetAddress a = InetAddress.getByName("10.0.0.1");
+        InetAddress b = InetAddress.getByName("10.0.0.2");
+
+        assertEquals(0, limiter.tryAcquire(a));
+        assertEquals(0, limiter.tryAcquire(a));
+        assertEquals(429, limiter.tryAcquire(a));
+        assertEquals(0, limiter.tryAcquire(b));
+        assertEquals(503, limiter.tryAcquire(b));
+        assertEquals(3, limiter.open());
+
+        limiter.release(a);
+        limiter.release(a);
+        assertEquals(1, limiter.clients());
+        assertEquals(0, limiter.tryAcquire(b));
+        assertTrue(new String(ConnectionLimiter.rejection(429), "US-ASCII").startsWith("HTTP/1.1 429 Too Many Requests\r\n"));
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas de las cabeceras precodificadas y del envío de respuestas con escrituras agrupadas.
+ */
+public class ResponseWriterTest {
+
+    /**
+     * Las cabeceras armadas con fragmentos precodificados son las mismas que con cadenas, y las de error sin
+     * encabezados adicionales se comparten.
+     */
+    @Test
+    public void encodesJsonHeaders() {
+        byte[] header = ResponseHeaders.json(201, "Created", 1234, "ETag: \"7\"\r\n");
+        assertEquals("HTTP/1.1 201 Created\r\n" +
+                "Content-Type: application/json; charset=utf-8\r\n" +
+                "Content-Length: 1234\r\n" +
+                "ETag: \"7\"\r\n" +
+                "\r\n", new String(header, StandardCharsets.US_ASCII));
+        assertEquals("HTTP/1.1 418 Teapot\r\n", new String(ResponseHeaders.json(418, "Teapot", 0, ""),
+                StandardCharsets.US_ASCII).substring(0, 21));
+
+        assertSame(ResponseHeaders.errorHeader(404, "Not Found", ""), ResponseHeaders.errorHeader(404, "Not Found", ""));
+        assertEquals("{\"error\": \"Not Found\"}", new String(ResponseHeaders.errorBody(404, "Not Found"), StandardCharsets.US_ASCII));
+        assertEquals("{\"error\": \"Gone\"}", new String(ResponseHeaders.errorBody(404, "Gone"), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * La cabecera y el cuerpo (aunque ocupe varios buffers) salen en una sola escritura agrupada al vaciar el flujo,
+     * y una escritura parcial se completa con otra.
+     */
+    @Test
+    public void sendsHeaderAndBodyInOneGatheringWrite() throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        GatheringByteChannel channel = mock(GatheringByteChannel.class);
+        boolean[] partial = {true};
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenAnswer(invocation -> {
+            ByteBuffer[] buffers = invocation.getArgument(0);
+            int offset = invocation.getArgument(1);
+            int length = invocation.getArgument(2);
+            // La primera llamada solo acepta 10 bytes, como un socket con el buffer de envio lleno
+            long limit = partial[0] ? 10 : Long.MAX_VALUE;
+            partial[0] = false;
+            long written = 0;
+            for (int i = offset; i < offset + length && written < limit; i++) {
+                while (buffers[i].hasRemaining() && written < limit) {
+                    sent.write(buffers[i].get());
+                    written++;
+                }
+            }
+            return written;
+        });
+
+        byte[] body = new byte[40 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        ChannelOutputStream out = new ChannelOutputStream(channel, new Metrics());
+        HttpResponse.json(200, body, "").writeTo(out);
+        verify(channel, times(0)).write(any(ByteBuffer[].class), anyInt(), anyInt());
+        out.flush();
+        verify(channel, times(2)).write(any(ByteBuffer[].class), anyInt(), anyInt());
+
+        byte[] header = ResponseHeaders.json(200, "OK", body.length, "");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(header);
+        expected.write(body);
+        assertEquals(expected.size(), sent.size());
+        assertEquals(ByteBuffer.wrap(expected.toByteArray()), ByteBuffer.wrap(sent.toByteArray()));
+        out.close();
+    }
+}
@@ -0,0 +1,195 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del enrutador por plantillas de ruta.
+ */
+public class RouterTest {
+
+    private static HttpRequestParser.Request request(String method, String target) {
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.feed(ByteBuffer.wrap((method + " " + target + " HTTP/1.1\r\n\r\n").getBytes(StandardCharsets.US_ASCII)));
+        return parser.next();
+    }
+
+    private static String route(Router router, String method, String target) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        router.route(request(method, target), out, null);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Los literales tienen prioridad sobre los parámetros y los parámetros se extraen y decodifican.
+     */
+    @Test
+    public void matchesLiteralsBeforeParameters() throws IOException {
+        RouteHandler echo = (route, request, out, clientSocket) ->
+                out.write((route.param("resource") + "|" + route.param("id")).getBytes(StandardCharsets.UTF_8));
+        Router router = new Router()
+                .add("GET", "/api/{resource}/{id}", echo)
+                .add("GET", "/api/dinosaurio/count", (route, request, out, clientSocket) -> out.write("count".getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals("count", route(router, "GET", "/api/dinosaurio/count"));
+        assertEquals("dinosaurio|7", route(router, "GET", "/api/dinosaurio/7?x=1"));
+        assertEquals("fosil|a b", route(router, "GET", "//api/fosil/a%20b/"));
+        assertEquals(Integer.valueOf(7), router.match("/api/x/7").intParam("id"));
+        assertNull(router.match("/api/x/siete").intParam("id"));
+        assertNull(router.match("/api/x"));
+    }
+
+    /**
+     * Las rutas desconocidas van al respaldo y los métodos no registrados responden 405 con {@code Allow}.
+     */
+    @Test
+    public void answers404And405() throws IOException {
+        Router router = new Router().resource("dinosaurio", new RestServiceImpl(new InMemoryDinosaurioRepository()));
+
+        String notAllowed = route(router, "PATCH", "/api/dinosaurio/1");
+        assertTrue(notAllowed.startsWith("HTTP/1.1 405 Method Not Allowed"));
+        assertTrue(notAllowed.contains("Allow: GET, PUT, DELETE\r\n"));
+        assertTrue(route(router, "GET", "/api/fosil").startsWith("HTTP/1.1 404 Not Found"));
+        assertTrue(route(router, "DELETE", "/api/dinosaurio/uno").startsWith("HTTP/1.1 400 Bad Request"));
+        assertTrue(route(router, "GET", "/api/dinosaurio").startsWith("HTTP/1.1 200 OK"));
+    }
+
+    /**
+     * Cada ruta registra su latencia y las excepciones de su manejador, y aparece en la salida de métricas.
+     */
+    @Test
+    public void recordsRouteMetrics() throws IOException {
+        Metrics metrics = new Metrics();
+        Router router = new Router(metrics)
+                .add("GET", "/metricas/ok", (route, request, out, clientSocket) -> out.write('x'))
+                .add("GET", "/metricas/falla", (route, request, out, clientSocket) -> {
+                    throw new IOException("falla");
+                });
+        route(router, "GET", "/metricas/ok");
+        route(router, "GET", "/metricas/ok");
+        try {
+            route(router, "GET", "/metricas/falla");
+        } catch (IOException expected) {
+            // Se cuenta y se propaga
+        }
+
+        assertEquals(2, metrics.route("GET", "/metricas/ok").latency.count());
+        assertEquals(1, metrics.route("GET", "/metricas/falla").errors.sum());
+        assertEquals(0, new Router().metrics().route("GET", "/metricas/ok").latency.count());
+        StringBuilder text = new StringBuilder();
+        metrics.render(text);
+        assertTrue(text.toString().contains("http_request_duration_seconds_count{method=\"GET\",route=\"/metricas/ok\"} 2\n"));
+        assertTrue(text.toString().contains("http_request_errors_total{method=\"GET\",route=\"/metricas/falla\"} 1\n"));
+    }
+
+    /**
+     * Una ruta con límite responde 429 con {@code Retry-After} cuando el cliente agota su cubeta, sin afectar
+     * a otros clientes ni a otras rutas.
+     */
+    @Test
+    public void rateLimitsPerClientAndRoute() throws IOException {
+        Router router = new Router()
+                .add("POST", "/limitada", (route, request, out, clientSocket) -> out.write('x'))
+                .add("GET", "/libre", (route, request, out, clientSocket) -> out.write('x'))
+                .rateLimit("POST", "/limitada", new RateLimiter(1, 2));
+        Socket a = client("10.0.0.1");
+        Socket b = client("10.0.0.2");
+
+        assertEquals("x", route(router, "POST", "/limitada", a));
+        assertEquals("x", route(router, "POST", "/limitada", a));
+        String limited = route(router, "POST", "/limitada", a);
+        assertTrue(limited.startsWith("HTTP/1.1 429 Too Many Requests"));
+        assertTrue(limited.contains("Retry-After: 1\r\n"));
+        assertEquals("x", route(router, "GET", "/libre", a));
+        assertEquals("x", route(router, "POST", "/limitada", b));
+    }
+
+    /**
+     * Una ruta asíncrona ya completada se escribe enseguida; una pendiente se devuelve sin escribir, y un error
+     * se convierte en 500.
+     */
+    @Test
+    public void writesAsyncResponsesWhenComplete() throws IOException {
+        CompletableFuture<HttpResponse> slow = new CompletableFuture<>();
+        Router router = new Router()
+                .async("GET", "/lista", (route, request, clientSocket) ->
+                        CompletableFuture.completedFuture(HttpResponse.json(200, "[]".getBytes(StandardCharsets.US_ASCII), "")))
+                .async("POST", "/lenta", (route, request, clientSocket) -> slow)
+                .async("GET", "/falla", (route, request, clientSocket) -> {
+                    throw new IllegalStateException("falla");
+                });
+
+        assertTrue(route(router, "GET", "/lista").endsWith("Content-Length: 2\r\n\r\n[]"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletionStage<HttpResponse> pending = router.route(request("POST", "/lenta"), out, null);
+        assertFalse(pending.toCompletableFuture().isDone());
+        assertEquals(0, out.size());
+        slow.complete(HttpResponse.error(201, "Created", ""));
+        pending.toCompletableFuture().join().writeTo(out);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).startsWith("HTTP/1.1 201 Created"));
+
+        assertTrue(route(router, "GET", "/falla").startsWith("HTTP/1.1 500 Internal Server Error"));
+    }
+
+    /**
+     * Un servicio bloqueante se registra con el adaptador y sigue escribiendo su respuesta como antes.
+     */
+    @Test
+    public void adaptsBlockingServices() throws IOException {
+        RESTService blocking = new RestServiceImpl(new InMemoryDinosaurioRepository());
+        Router router = new Router().resource("dinosaurio", AsyncRESTService.adapt(blocking));
+
+        String body = "{\"Dinosaurio\": \"Raptor\"}";
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.feed(ByteBuffer.wrap(("POST /api/dinosaurio HTTP/1.1\r\nContent-Length: " + body.length() + "\r\n\r\n"
+                + body).getBytes(StandardCharsets.US_ASCII)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        router.route(parser.next(), out, null);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).startsWith("HTTP/1.1 201 Created"));
+        assertTrue(route(router, "GET", "/api/dinosaurio/1").contains("Raptor"));
+    }
+
+    /**
+     * Por el adaptador, un GET con id devuelve solo ese registro, 404 si no existe y 400 si el id no es un número.
+     */
+    @Test
+    public void adaptsSingleRecordGet() throws IOException {
+        InMemoryDinosaurioRepository repository = new InMemoryDinosaurioRepository();
+        repository.create("Raptor");
+        repository.create("Rex");
+        Router router = new Router().resource("dinosaurio", AsyncRESTService.adapt(new RestServiceImpl(repository)));
+
+        String single = route(router, "GET", "/api/dinosaurio/2");
+        assertTrue(single, single.startsWith("HTTP/1.1 200 OK"));
+        String body = single.substring(single.indexOf("\r\n\r\n") + 4);
+        assertTrue(body, body.startsWith("{ \"id\": 2,") && body.contains("Rex") && !body.contains("Raptor"));
+        assertTrue(route(router, "GET", "/api/dinosaurio/9").startsWith("HTTP/1.1 404 Not Found"));
+        assertTrue(route(router, "GET", "/api/dinosaurio/siete").startsWith("HTTP/1.1 400 Bad Request"));
+    }
+
+    private static Socket client(String address) throws IOException {
+        Socket socket = mock(Socket.class);
+        when(socket.getInetAddress()).thenReturn(InetAddress.getByName(address));
+        return socket;
+    }
+
+    private static String route(Router router, String method, String target, Socket clientSocket) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        router.route(request(method, target), out, clientSocket);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
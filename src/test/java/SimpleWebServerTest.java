@@ -0,0 +1,162 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pruebas de extremo a extremo de servidores embebidos en puertos efímeros.
+ */
+public class SimpleWebServerTest {
+
+    private static String exchange(int port, String request) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) >= 0; ) {
+                response.write(buffer, 0, n);
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Dos servidores, uno por motor, corren a la vez en la misma JVM con almacenes y métricas independientes, y se detienen
+     * sin esperar a las conexiones persistentes inactivas.
+     */
+    @Test
+    public void runsIndependentInstances() throws Exception {
+        SimpleWebServer blocking = SimpleWebServer.builder().port(0).build().start();
+        SimpleWebServer nio = SimpleWebServer.builder().port(0).engine("nio").eventLoops(1).build().start();
+        try {
+            assertTrue(blocking.port() > 0 && nio.port() > 0 && blocking.port() != nio.port());
+            String body = "{\"Dinosaurio\": \"Triceratops\"}";
+            String created = exchange(blocking.port(), "POST /api/dinosaurio HTTP/1.1\r\nContent-Length: " + body.length()
+                    + "\r\nConnection: close\r\n\r\n" + body);
+            assertTrue(created.startsWith("HTTP/1.1 201 Created"));
+
+            String get = "GET /api/dinosaurio/1 HTTP/1.1\r\nConnection: close\r\n\r\n";
+            assertTrue(exchange(blocking.port(), get).contains("Triceratops"));
+            assertTrue(exchange(nio.port(), get).startsWith("HTTP/1.1 404"));
+            // Cada instancia tiene sus metricas: el POST solo se atendio en la bloqueante
+            String metrics = "GET /metrics HTTP/1.1\r\nConnection: close\r\n\r\n";
+            String post = "http_request_duration_seconds_count{method=\"POST\",route=\"/api/dinosaurio\"} ";
+            String blockingMetrics = exchange(blocking.port(), metrics);
+            assertTrue(blockingMetrics.contains(post + "1\n"));
+            assertTrue(blockingMetrics.contains("\nstatic_cache_bytes_saved_total "));
+            assertTrue(blockingMetrics.contains("\nstatic_cache_not_modified_total "));
+            assertTrue(exchange(nio.port(), metrics).contains(post + "0\n"));
+
+            // Conexiones abiertas sin solicitudes: stop() no espera el tiempo de inactividad
+            try (Socket idleBlocking = new Socket("localhost", blocking.port());
+                 Socket idleNio = new Socket("localhost", nio.port())) {
+                Thread.sleep(100);
+                long start = System.nanoTime();
+                blocking.stop();
+                nio.stop();
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+                assertEquals(-1, idleBlocking.getInputStream().read());
+                assertEquals(-1, idleNio.getInputStream().read());
+            }
+        } finally {
+            blocking.stop();
+            nio.stop();
+        }
+    }
+
+    /**
+     * Las solicitudes en curso al detener el servidor terminan con su respuesta completa.
+     */
+    @Test
+    public void drainsInFlightRequestsOnStop() throws Exception {
+        SimpleWebServer server = SimpleWebServer.builder().port(0).build();
+        server.router().add("GET", "/lento", (route, request, out, clientSocket) -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Router.sendError(out, 200, "OK", "");
+        });
+        server.start();
+        CompletableFuture<String> response = CompletableFuture.supplyAsync(() -> {
+            try {
+                return exchange(server.port(), "GET /lento HTTP/1.1\r\nConnection: close\r\n\r\n");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        server.stop();
+        assertTrue(response.get(5, TimeUnit.SECONDS).startsWith("HTTP/1.1 200 OK"));
+    }
+
+    /**
+     * Con el pool y su cola llenos, una conexión nueva se rechaza con 503 sin esperar a un hilo.
+     */
+    @Test
+    public void rejectsConnectionsWhenPoolIsSaturated() throws Exception {
+        SimpleWebServer server = SimpleWebServer.builder().port(0).threads("pool", 1, 1).build();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server.router().add("GET", "/lento", (route, request, out, clientSocket) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Router.sendError(out, 200, "OK", "");
+        });
+        server.start();
+        try (Socket busy = new Socket("localhost", server.port())) {
+            busy.getOutputStream().write("GET /lento HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            // La conexion en cola se abre cuando el unico hilo ya saco la primera de la cola
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // El unico hilo esta ocupado y la conexion en cola ocupa el unico lugar; esperar a que se encole
+            Socket queued = new Socket("localhost", server.port());
+            try {
+                Thread.sleep(200);
+                // El rechazo se envia al aceptar, sin leer la solicitud; si el cliente la enviara, cerrar con datos
+                // sin leer podria provocar un RST antes de que llegue la respuesta
+                String rejected = exchange(server.port(), "");
+                assertTrue(rejected, rejected.startsWith("HTTP/1.1 503 Service Unavailable"));
+            } finally {
+                queued.close();
+            }
+        } finally {
+            release.countDown();
+            server.stop();
+        }
+    }
+
+    /**
+     * El modo de hilos virtuales usa el pool acotado configurado si la JVM no ofrece
+     * {@code newVirtualThreadPerTaskExecutor}.
+     */
+    @Test
+    public void fallsBackToBoundedPoolWithoutVirtualThreads() {
+        ExecutorService executor = SimpleWebServer.createExecutor("virtual", 2, 3, Object.class);
+        try {
+            assertTrue(executor instanceof ThreadPoolExecutor);
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            assertEquals(2, pool.getMaximumPoolSize());
+            assertEquals(3, pool.getQueue().remainingCapacity());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas unitarias de la caché de archivos estáticos: aciertos, invalidación por cambios en disco,
+ * desalojo LRU y solicitudes condicionales.
+ */
+public class StaticFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        Files.write(root.resolve("index.html"), "<h1>Dinos</h1>".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("app.js"), "console.log('rawr');".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Verifica que la segunda búsqueda de un archivo se resuelve desde memoria.
+     */
+    @Test
+    public void testHitAfterFirstRead() throws IOException {
+        StaticFileCache cache = new StaticFileCache(root, 1024, 1024, 60_000);
+
+        StaticFileCache.Entry first = cache.get("/index.html");
+        StaticFileCache.Entry second = cache.get("/index.html");
+
+        assertSame(first, second);
+        assertEquals("text/html", first.contentType);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(first.size, cache.getBytesSaved());
+    }
+
+    /**
+     * Verifica que un archivo modificado en disco se vuelve a leer.
+     */
+    @Test
+    public void testInvalidatesChangedFile() throws IOException {
+        StaticFileCache cache = new StaticFileCache(root, 1024, 1024, 0);
+        StaticFileCache.Entry first = cache.get("/index.html");
+
+        Path file = root.resolve("index.html");
+        Files.write(file, "<h1>Mas dinos</h1>".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(first.lastModifiedMillis + 5000));
+
+        StaticFileCache.Entry second = cache.get("/index.html");
+        assertNotSame(first, second);
+        assertEquals("<h1>Mas dinos</h1>", new String(second.content, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Verifica que se desaloja la entrada menos usada al superar el límite de bytes.
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        StaticFileCache cache = new StaticFileCache(root, 25, 1024, 60_000);
+        cache.get("/index.html");
+        cache.get("/app.js");
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.getCachedBytes() <= 25);
+    }
+
+    /**
+     * Verifica las condiciones If-None-Match e If-Modified-Since.
+     */
+    @Test
+    public void testConditionalRequests() throws IOException {
+        StaticFileCache cache = new StaticFileCache(root, 1024, 1024, 60_000);
+        StaticFileCache.Entry entry = cache.get("/app.js");
+
+        assertTrue(entry.isNotModified(entry.etag, null));
+        assertFalse(entry.isNotModified("\"otro\"", null));
+        assertTrue(entry.isNotModified(null, entry.lastModified));
+        assertFalse(entry.isNotModified(null, "Thu, 01 Jan 1970 00:00:00 GMT"));
+    }
+
+    /**
+     * Verifica que no se sirven rutas fuera del webroot ni directorios.
+     */
+    @Test
+    public void testRejectsTraversalAndDirectories() throws IOException {
+        StaticFileCache cache = new StaticFileCache(root, 1024, 1024, 60_000);
+
+        assertNull(cache.get("/../secret.txt"));
+        assertNull(cache.get("/"));
+        assertNull(cache.get("/missing.css"));
+    }
+
+    /**
+     * Verifica que los archivos de texto grandes se precomprimen al cargarlos y que los pequeños o binarios no.
+     */
+    @Test
+    public void testPrecompressesTextAssets() throws IOException {
+        StringBuilder css = new StringBuilder();
+        while (css.length() < 4096) {
+            css.append(".dino { color: green; }\n");
+        }
+        Files.write(root.resolve("style.css"), css.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("logo.png"), css.toString().getBytes(StandardCharsets.UTF_8));
+        StaticFileCache cache = new StaticFileCache(root, 64 * 1024, 64 * 1024, 60_000);
+
+        StaticFileCache.Entry entry = cache.get("/style.css");
+        StaticFileCache.Variant gzip = entry.variant("gzip");
+        assertTrue(gzip.body.length < entry.size / 10);
+        assertTrue(new String(gzip.header, StandardCharsets.US_ASCII).contains("Content-Encoding: gzip\r\n"));
+        assertNotEquals(entry.etag, gzip.etag);
+        assertTrue(entry.isNotModified(gzip.etag, null));
+        assertNotNull(entry.variant("deflate"));
+        assertNull(entry.variant(null));
+        assertEquals(entry.size + gzip.body.length + entry.variant("deflate").body.length, cache.getCachedBytes());
+
+        assertNull(cache.get("/index.html").variant("gzip"));
+        assertNull(cache.get("/logo.png").variant("gzip"));
+    }
+
+    /**
+     * Las distintas formas de escribir la ruta de un archivo comparten una sola entrada, aunque el archivo sea
+     * mayor que el límite por archivo y su entrada no cuente bytes.
+     */
+    @Test
+    public void testSharesEntryAcrossSpellings() throws IOException {
+        Files.write(root.resolve("big.bin"), new byte[4096]);
+        StaticFileCache cache = new StaticFileCache(root, 1024, 1024, 60_000);
+
+        StaticFileCache.Entry entry = cache.get("/big.bin");
+        StringBuilder dots = new StringBuilder("/");
+        for (int i = 0; i < 200; i++) {
+            dots.append("./");
+            assertSame(entry, cache.get(dots + "big.bin"));
+            assertSame(entry, cache.get("/" + dots + "big.bin?v=" + i));
+        }
+        assertSame(entry, cache.get("//big.bin"));
+        assertSame(entry, cache.get("/x/../big.bin"));
+        assertEquals(1, cache.size());
+        assertFalse(entry.isCached());
+    }
+}
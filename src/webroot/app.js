@@ -1,11 +1,37 @@
-document.getElementById('fetchDataBtn').addEventListener('click', function() {
+// Copia local de la colección; los eventos del servidor la mantienen al día
+const dinosaurios = new Map();
+
+function render() {
+    const data = Array.from(dinosaurios.values()).sort((a, b) => a.id - b.id);
+    document.getElementById('dataOutput').textContent = JSON.stringify(data, null, 2);
+}
+
+function refreshData() {
     fetch('/api/dinosaurios')
         .then(response => response.json())
         .then(data => {
-            document.getElementById('dataOutput').textContent = JSON.stringify(data, null, 2);
+            dinosaurios.clear();
+            data.forEach(record => dinosaurios.set(record.id, record));
+            render();
         })
         .catch(error => console.error('Error:', error));
+}
+
+const events = new EventSource('/api/dinosaurio/events');
+['created', 'updated'].forEach(type => events.addEventListener(type, event => {
+    const record = JSON.parse(event.data);
+    dinosaurios.set(record.id, record);
+    render();
+}));
+events.addEventListener('deleted', event => {
+    dinosaurios.delete(JSON.parse(event.data).id);
+    render();
 });
+// Se perdieron eventos (reconexión tardía o cliente lento): se vuelve a pedir la colección
+events.addEventListener('reset', refreshData);
+refreshData();
+
+document.getElementById('fetchDataBtn').addEventListener('click', refreshData);
 
 document.getElementById('addMessageBtn').addEventListener('click', function() {
     const Dinosaurio = document.getElementById('newMessage').value;
@@ -22,8 +48,6 @@ document.getElementById('addMessageBtn').addEventListener('click', function() {
         .then(response => response.json())
         .then(data => {
             console.log('Success:', data);
-            // Actualiza los datos después de agregar el mensaje
-            document.getElementById('dataOutput').textContent = JSON.stringify(data, null, 2);
         })
         .catch(error => console.error('Error:', error));
 });
@@ -38,8 +62,6 @@ document.getElementById('deleteMessageBtn').addEventListener('click', function()
         .then(response => response.json())
         .then(data => {
             console.log('Deleted:', data);
-            document.getElementById('dataOutput').textContent = JSON.stringify(data, null, 2);
-
         })
         .catch(error => console.error('Error:', error));
 });
@@ -61,8 +83,6 @@ document.getElementById('updateMessageBtn').addEventListener('click', function()
         .then(response => response.json())
         .then(data => {
             console.log('UPdate:', data);
-            document.getElementById('dataOutput').textContent = JSON.stringify(data, null, 2);
-
         })
         .catch(error => console.error('Error:', error));
 });